@@ -3,12 +3,11 @@ package cn.edu.hitsz.compiler;
 import cn.edu.hitsz.compiler.asm.AssemblyGenerator;
 import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
 import cn.edu.hitsz.compiler.lexer.TokenKind;
-import cn.edu.hitsz.compiler.parser.IRGenerator;
 import cn.edu.hitsz.compiler.parser.ProductionCollector;
-import cn.edu.hitsz.compiler.parser.SemanticAnalyzer;
 import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.sdt.SyntaxDirectedTranslator;
 import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
-import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.parser.table.TableCache;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
 import cn.edu.hitsz.compiler.utils.FilePathConfig;
 import cn.edu.hitsz.compiler.utils.FileUtils;
@@ -25,46 +24,57 @@ public class Main {
         // 词法分析
         final var lexer = new LexicalAnalyzer(symbolTable);
         lexer.loadFile(FilePathConfig.SRC_CODE_PATH);
+        // 或以内存映射方式载入, 直接在字节上扫描:
+        // lexer.loadFileMapped(FilePathConfig.SRC_CODE_PATH);
+        // 对缩进与对齐空白很多的源文件, 可开启一次比较 8 个字节的逐字跳过: lexer.setRunSkipping(true);
         lexer.run();
+        // 对于非常大的源文件, 也可以改为并行分析: lexer.runParallel(ForkJoinPool.commonPool());
         lexer.dumpTokens(FilePathConfig.TOKEN_PATH);
+        // 若不调用 run, getTokens 将返回按需分析的序列, 语法分析器每取一个 token 才向前扫描一个
         final var tokens = lexer.getTokens();
         symbolTable.dumpTable(FilePathConfig.OLD_SYMBOL_TABLE);
 
-        // 读取第三方程序构造的 LR 分析表
-        final var tableLoader = new TableLoader();
-        final var lrTable = tableLoader.load(FilePathConfig.LR1_TABLE_PATH);
+        // 读取第三方程序构造的 LR 分析表, 第一次读取后会写入二进制缓存, 此后直接以内存映射读入缓存
+        final var lrTable = TableCache.load();
 
-        // // 或使用框架自带部分直接从 grammar.txt 构造 LR 分析表
-        // final var tableGenerator = new TableGenerator();
+        // // 或使用框架自带部分直接从 grammar.txt 构造 LR 分析表, 可选 SLR, LALR 或 LR1
+        // final var tableGenerator = new TableGenerator(TableGenerator.TableKind.LALR);
         // tableGenerator.run();
         // final var lrTable = tableGenerator.getTable();
         // lrTable.dumpTable("data/out/lrTable.csv");
 
         // 加载 LR 分析驱动程序
+        // 也可以改用根据分析表生成的直接编码的分析器 (需运行在 JDK 上), 其余用法相同:
+        // final var parser = ParserGenerator.load(lrTable, symbolTable);
+        // parser.loadTokens(lexer.getTokenBuffer());
         final var parser = new SyntaxAnalyzer(symbolTable);
         parser.loadTokens(tokens);
         parser.loadLRTable(lrTable);
+        // 可以在分析表中加入默认规约并消去单位产生式链 (如 E -> A -> B -> id), 减少分析步数, 各 Observer 的结果不变:
+        // parser.useDefaultReductions(true);
 
-        // 加入生成规约列表的 Observer
-        final var productionCollector = new ProductionCollector(GrammarInfo.getBeginProduction());
+        // 加入生成规约列表的 Observer, 规约列表边分析边写入文件
+        final var productionCollector = new ProductionCollector(GrammarInfo.getBeginProduction(), FilePathConfig.PARSER_PATH);
         parser.registerObserver(productionCollector);
 
-        // 加入用作语义检查的 Observer
-        final var semanticAnalyzer = new SemanticAnalyzer();
-        parser.registerObserver(semanticAnalyzer);
-
-        // 加入用作 IR 生成的 Observer
-        final var irGenerator = new IRGenerator();
-        parser.registerObserver(irGenerator);
+        // 加入按翻译方案进行语义检查与 IR 生成的 Observer, 两个阶段共用同一个属性栈
+        // 也可以分别注册只执行其中一个阶段的 SemanticAnalyzer 与 IRGenerator
+        final var translator = new SyntaxDirectedTranslator();
+        parser.registerObserver(translator);
 
         // 执行语法解析并在解析过程中依次调用各 Observer
+        // 也可以先只记录事件日志, 再让各 Observer 在各自的线程上同时重放: parser.runReplayed(ForkJoinPool.commonPool());
+        // 或在顶层 Semicolon 处切分 token 序列, 并行分析各段后再重放: parser.runParallel(ForkJoinPool.commonPool());
+        // 或只注册一个 SyntaxTreeBuilder 建立语法树, 分析结束后再让各 Observer 依次在树上重放, 需要时可以多次遍历:
+        // final var builder = new SyntaxTreeBuilder(GrammarInfo.getBeginProduction()); parser.registerObserver(builder);
+        // parser.run(); translator.setSymbolTable(symbolTable); builder.getTree().replay(translator);
         parser.run();
 
         // 各 Observer 输出结果
         productionCollector.dumpToFile(FilePathConfig.PARSER_PATH);
         symbolTable.dumpTable(FilePathConfig.NEW_SYMBOL_TABLE);
-        final var instructions = irGenerator.getIR();
-        irGenerator.dumpIR(FilePathConfig.INTERMEDIATE_CODE_PATH);
+        final var instructions = translator.getIR();
+        translator.dumpIR(FilePathConfig.INTERMEDIATE_CODE_PATH);
 
         // 模拟执行 IR 并输出结果
         final var emulator = IREmulator.load(instructions);
@@ -5,7 +5,6 @@ import cn.edu.hitsz.compiler.ir.*;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -32,13 +31,13 @@ public class AssemblyGenerator {
      *     <li>中间代码 instructions : list (预处理后)</li>
      *     <li>汇编代码 assembly : list</li>
      *     <li>寄存器分配表 allocMap : BMap</li>
-     *     <li>变量最后出现位置表 lastOccur: HashMap<IRVariable, Integer></li>
+     *     <li>变量最后出现位置表 lastOccur: IRVariableIntMap, 以变量的编号为下标</li>
      *     <li>寄存器 regs : list</li>
      *
      */
 
     private List<Instruction> instructions;
-    private HashMap<IRVariable, Integer> lastOccur = new HashMap<>();
+    private IRVariableIntMap lastOccur = new IRVariableIntMap(-1);
     private List<String>  assembly = new LinkedList<>();
     private BMap<ASMReg, IRVariable> allocMap = new BMap<>();
     private List<ASMReg> regs = new ArrayList<>();
@@ -49,14 +48,9 @@ public class AssemblyGenerator {
      * @param position
      */
     public void addEntry( IRVariable var, int position){
-        if(!(lastOccur.containsKey(var))){
+        if(lastOccur.get(var) < position){
             lastOccur.put(var, position);
         }
-        else{
-            if(lastOccur.get(var) < position){
-                lastOccur.put(var, position);
-            }
-        }
     }
 
     /**
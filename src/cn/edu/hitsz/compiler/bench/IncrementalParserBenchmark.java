@@ -0,0 +1,98 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.IncrementalParser;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 增量语法分析的性能测试: 单条语句的编辑从词法分析到得到新的规约列表与 IR 的延迟
+ * <br>
+ * 以 {@link LexerBenchmark} 的紧凑输入 (默认 1 MB, 每行一条语句) 为程序, 随机选取一行赋值语句替换为另一条随机的赋值语句,
+ * 依次调用 {@link LexicalAnalyzer#relex} 与 {@link IncrementalParser#update}, 统计每次编辑的耗时. 最后与对编辑后的程序
+ * 完整分析的结果比较, 确认二者相同. 需在项目根目录下运行:
+ * <pre>
+ * java cn.edu.hitsz.compiler.bench.IncrementalParserBenchmark [输入大小 (MB)] [编辑次数]
+ * </pre>
+ */
+public class IncrementalParserBenchmark {
+    public static void main(String[] args) throws IOException {
+        final var megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        final var edits = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+        TokenKind.loadTokenKinds();
+        final var table = new TableLoader().load(FilePathConfig.LR1_TABLE_PATH);
+
+        final var input = Files.createTempFile("incremental-bench", ".txt");
+        final LexicalAnalyzer lexer;
+        final int lineCount;
+        try {
+            LexerBenchmark.generateInput(input, megabytes * 1024L * 1024L, false);
+            lineCount = Files.readAllLines(input).size();
+            lexer = new LexicalAnalyzer(new SymbolTable());
+            lexer.loadFile(input.toString());
+            lexer.run();
+        } finally {
+            Files.deleteIfExists(input);
+        }
+
+        final var parser = new IncrementalParser(table, lexer.getTokenBuffer(), GrammarInfo.getBeginProduction());
+        final var start = System.nanoTime();
+        parser.parse();
+        System.out.printf("%d statements, full parse %.1f ms%n", parser.getStatementCount(), (System.nanoTime() - start) / 1e6);
+
+        // 前 512 行是声明, 最后一行是 return, 只替换其间的赋值语句
+        final var random = new Random(42);
+        final var latencies = new long[edits];
+        final var parseLatencies = new long[edits];
+        for (int round = -WARMUP_EDITS; round < edits; round++) {
+            final var line = VARIABLES + random.nextInt(lineCount - VARIABLES - 1);
+            final var replacement = random.nextBoolean()
+                ? "f%d = f%d + %d;\n".formatted(random.nextInt(VARIABLES), random.nextInt(VARIABLES), random.nextInt(1000))
+                : "f%d = (f%d + f%d) * %d - f%d;\n".formatted(random.nextInt(VARIABLES), random.nextInt(VARIABLES),
+                random.nextInt(VARIABLES), 1 + random.nextInt(1000), random.nextInt(VARIABLES));
+
+            final var begin = System.nanoTime();
+            final var edit = lexer.relex(line, line + 1, replacement);
+            final var lexed = System.nanoTime();
+            parser.update(edit);
+            final var end = System.nanoTime();
+            if (round >= 0) {
+                latencies[round] = end - begin;
+                parseLatencies[round] = end - lexed;
+            }
+        }
+
+        System.out.printf("%d single-statement edits:%n", edits);
+        report("relex + update", latencies);
+        report("update only", parseLatencies);
+
+        final var reference = new IncrementalParser(table, lexer.getTokenBuffer(), GrammarInfo.getBeginProduction());
+        reference.parse();
+        if (!reference.getReducedProductions().equals(parser.getReducedProductions())
+            || !reference.getIR().toString().equals(parser.getIR().toString())) {
+            throw new RuntimeException("Incremental result differs from a full reparse");
+        }
+    }
+
+    private static void report(String name, long[] latencies) {
+        Arrays.sort(latencies);
+        final var count = latencies.length;
+        System.out.printf("  %-15s median %8.1f us, p99 %8.1f us, max %8.1f us%n", name,
+            latencies[count / 2] / 1e3, latencies[(int) (count * 0.99)] / 1e3, latencies[count - 1] / 1e3);
+    }
+
+    /**
+     * 与 {@link LexerBenchmark#generateInput} 中声明的变量数相同
+     */
+    private static final int VARIABLES = 512;
+    private static final int WARMUP_EDITS = 2000;
+}
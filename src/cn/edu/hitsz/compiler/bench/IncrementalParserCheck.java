@@ -0,0 +1,202 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.ir.Instruction;
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.IRGenerator;
+import cn.edu.hitsz.compiler.parser.IncrementalParser;
+import cn.edu.hitsz.compiler.parser.ProductionCollector;
+import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * 增量语法分析的正确性检查: 随机编辑之后增量分析的规约列表与 IR 应与对编辑后的程序完整串行分析的结果相同
+ * <br>
+ * 以随机生成的程序 (每行一条语句) 为输入, 反复随机选取几行替换为随机的语句, 依次调用 {@link LexicalAnalyzer#relex} 与
+ * {@link IncrementalParser#update}. 随机的行包括空行, 一行两条语句, 以及缺少分号的语句 (使程序出现语法错误, 或与下一行连成一条语句);
+ * 出现语法错误之后, 下一次编辑将出错的几行改回一条正确的语句. 每次编辑之后, 将程序写入临时文件, 由新的词法分析器完整分析,
+ * 再交给注册了 {@link ProductionCollector} 与 {@link IRGenerator} 的 {@link SyntaxAnalyzer} 串行分析, 比较二者是否都报告语法错误,
+ * 以及规约列表与 IR 是否相同; 不同时抛出异常. 需在项目根目录下运行:
+ * <pre>
+ * java cn.edu.hitsz.compiler.bench.IncrementalParserCheck [语句数] [编辑次数] [随机种子]
+ * </pre>
+ */
+public class IncrementalParserCheck {
+    public static void main(String[] args) throws IOException {
+        final var statementCount = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        final var edits = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        final var random = new Random(args.length > 2 ? Long.parseLong(args[2]) : 42);
+
+        TokenKind.loadTokenKinds();
+        final var table = new TableLoader().load(FilePathConfig.LR1_TABLE_PATH);
+
+        final var lines = new ArrayList<String>();
+        for (int i = 0; i < statementCount; i++) {
+            lines.add(randomStatement(random));
+        }
+        final var file = Files.createTempFile("incremental-check", ".txt");
+        try {
+            Files.write(file, lines);
+            final var lexer = new LexicalAnalyzer(new SymbolTable());
+            lexer.loadFile(file.toString());
+            lexer.run();
+            final var parser = new IncrementalParser(table, lexer.getTokenBuffer(), GrammarInfo.getBeginProduction());
+            parser.parse();
+
+            var errors = 0;
+            var brokenFrom = -1;
+            var brokenTo = -1;
+            for (int round = 1; round <= edits; round++) {
+                final int fromLine;
+                final int toLine;
+                final var replacement = new ArrayList<String>();
+                if (brokenFrom >= 0) {
+                    fromLine = brokenFrom;
+                    toLine = brokenTo;
+                    replacement.add(randomStatement(random));
+                } else {
+                    fromLine = random.nextInt(lines.size() + 1);
+                    toLine = Math.min(lines.size(), fromLine + random.nextInt(3));
+                    for (int i = random.nextInt(3); i > 0; i--) {
+                        replacement.add(randomLine(random));
+                    }
+                }
+
+                final var edit = lexer.relex(fromLine, toLine, replacement.isEmpty() ? "" : String.join("\n", replacement) + "\n");
+                var failed = false;
+                try {
+                    parser.update(edit);
+                } catch (RuntimeException e) {
+                    failed = true;
+                }
+                lines.subList(fromLine, toLine).clear();
+                lines.addAll(fromLine, replacement);
+
+                Files.write(file, lines);
+                if (compare(table, parser, file, failed, round)) {
+                    brokenFrom = -1;
+                } else {
+                    errors++;
+                    brokenFrom = fromLine;
+                    brokenTo = fromLine + replacement.size();
+                }
+            }
+            System.out.printf("%d edits checked (%d with syntax errors), %d statements%n", edits, errors, parser.getStatementCount());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * @return 程序是否没有语法错误
+     */
+    private static boolean compare(LRTable table, IncrementalParser parser, Path file, boolean failed, int round)
+        throws IOException {
+        final var symbolTable = new SymbolTable();
+        final var lexer = new LexicalAnalyzer(symbolTable);
+        lexer.loadFile(file.toString());
+        lexer.run();
+        final var serial = new SyntaxAnalyzer(symbolTable);
+        serial.loadTokens(lexer.getTokenBuffer());
+        serial.loadLRTable(table);
+        final var productions = new ProductionCollector(GrammarInfo.getBeginProduction());
+        final var generator = new IRGenerator();
+        serial.registerObserver(productions);
+        serial.registerObserver(generator);
+
+        var serialFailed = false;
+        try {
+            serial.run();
+        } catch (RuntimeException e) {
+            serialFailed = true;
+        }
+        if (failed != serialFailed) {
+            throw new RuntimeException("Edit %d: incremental parse %s, serial parse %s".formatted(round,
+                failed ? "failed" : "succeeded", serialFailed ? "failed" : "succeeded"));
+        }
+        if (failed) {
+            return false;
+        }
+
+        // 规约列表只能输出到文件, 比较两个输出文件的各行
+        final var expected = Path.of(file + ".expected");
+        final var actual = Path.of(file + ".actual");
+        try {
+            productions.dumpToFile(expected.toString());
+            parser.dumpProductions(actual.toString());
+            if (!Files.readAllLines(expected).equals(Files.readAllLines(actual))) {
+                throw new RuntimeException("Edit %d: reductions differ from a serial parse".formatted(round));
+            }
+        } finally {
+            Files.deleteIfExists(expected);
+            Files.deleteIfExists(actual);
+        }
+        if (!toStrings(parser.getIR()).equals(toStrings(generator.getIR()))) {
+            throw new RuntimeException("Edit %d: IR differs from a serial parse".formatted(round));
+        }
+        return true;
+    }
+
+    /**
+     * 临时变量的编号来自进程内全局的计数器, 每次串行分析都从不同的编号开始, 因此按第一次出现的顺序重新从 $0 编号之后再比较
+     */
+    private static List<String> toStrings(List<Instruction> instructions) {
+        final var numbers = new HashMap<String, Integer>();
+        return instructions.stream()
+            .map(instruction -> TEMP.matcher(instruction.toString())
+                .replaceAll(match -> "\\$" + numbers.computeIfAbsent(match.group(), temp -> numbers.size())))
+            .toList();
+    }
+
+    private static final Pattern TEMP = Pattern.compile("\\$\\d+");
+
+    /**
+     * @return 一行随机的文本, 可能不是一条正确的语句
+     */
+    private static String randomLine(Random random) {
+        return switch (random.nextInt(12)) {
+            case 0 -> "";
+            case 1 -> randomStatement(random) + " " + randomStatement(random);
+            case 2 -> "v%d = %s".formatted(random.nextInt(VARIABLES), randomExpression(random, 2));
+            default -> randomStatement(random);
+        };
+    }
+
+    /**
+     * @return 一条随机的正确语句: 声明, 赋值或 return
+     */
+    static String randomStatement(Random random) {
+        return switch (random.nextInt(10)) {
+            case 0 -> "int v%d;".formatted(random.nextInt(VARIABLES));
+            case 1 -> "return %s;".formatted(randomExpression(random, 2));
+            default -> "v%d = %s;".formatted(random.nextInt(VARIABLES), randomExpression(random, 3));
+        };
+    }
+
+    private static String randomExpression(Random random, int depth) {
+        if (depth == 0 || random.nextInt(3) == 0) {
+            return random.nextBoolean() ? "v" + random.nextInt(VARIABLES) : String.valueOf(random.nextInt(100));
+        }
+        return switch (random.nextInt(4)) {
+            case 0 -> randomExpression(random, depth - 1) + " + " + randomExpression(random, depth - 1);
+            case 1 -> randomExpression(random, depth - 1) + " - " + randomExpression(random, depth - 1);
+            case 2 -> randomExpression(random, depth - 1) + " * " + randomExpression(random, depth - 1);
+            default -> "(" + randomExpression(random, depth - 1) + ")";
+        };
+    }
+
+    private static final int VARIABLES = 50;
+}
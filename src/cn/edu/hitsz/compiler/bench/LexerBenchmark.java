@@ -0,0 +1,129 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 词法分析的性能测试: 比较逐字跳过与逐字节查表两种扫描方式
+ * <br>
+ * 测试输入仿照 reg-alloc.txt 生成大量的变量声明与赋值语句, 默认放大到 100 MB, 分为两种形式:
+ * 紧凑的 (短变量名, 单个空格) 与宽松的 (长变量名, 深缩进与对齐用的连续空格).
+ * 每种方式在单独的 JVM 中先预热若干轮, 再取若干轮的最好成绩. 需在项目根目录下运行 (需要读取 data/in/coding_map.csv):
+ * <pre>
+ * java cn.edu.hitsz.compiler.bench.LexerBenchmark [输入大小 (MB)] [轮数]
+ * </pre>
+ */
+public class LexerBenchmark {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals(FORKED)) {
+            // 子进程: 只测一种方式, 避免两种方式的 JIT 编译结果互相干扰
+            TokenKind.loadTokenKinds();
+            final var runSkipping = Boolean.parseBoolean(args[2]);
+            final var best = measure(args[1], runSkipping, Integer.parseInt(args[3]));
+            final var megabytes = Files.size(Path.of(args[1])) / (1024.0 * 1024.0);
+            System.out.printf("  %-14s best %8.1f ms, %8.1f MB/s%n",
+                runSkipping ? "run skipping" : "scalar DFA", best / 1e6, megabytes / (best / 1e9));
+            return;
+        }
+
+        final var megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        final var rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        for (final var wide : new boolean[]{false, true}) {
+            final var input = Files.createTempFile("lexer-bench", ".txt");
+            try {
+                generateInput(input, megabytes * 1024L * 1024L, wide);
+                System.out.printf("%s input (%d bytes):%n", wide ? "wide" : "compact", Files.size(input));
+
+                for (final var runSkipping : new boolean[]{false, true}) {
+                    fork(input.toString(), String.valueOf(runSkipping), String.valueOf(rounds));
+                }
+            } finally {
+                Files.deleteIfExists(input);
+            }
+        }
+    }
+
+    /**
+     * 以 reg-alloc.txt 的风格生成约 size 字节的源程序
+     *
+     * @param wide 是否使用长变量名与大量连续空格
+     */
+    static void generateInput(Path path, long size, boolean wide) throws IOException {
+        final var random = new Random(42);
+        final var variables = 512;
+        final var name = wide ? "accumulator_value_" : "f";
+        final var format = wide
+            ? " ".repeat(40) + name + "%d      =      ( " + name + "%d   +   " + name + "%d )      *      %d      -      " + name + "%d ;\n"
+            : name + "%d = (" + name + "%d + " + name + "%d) * %d - " + name + "%d;\n";
+
+        try (final BufferedWriter writer = Files.newBufferedWriter(path)) {
+            long written = 0;
+            for (int i = 0; i < variables; i++) {
+                final var line = "int %s%d;\n".formatted(name, i);
+                writer.write(line);
+                written += line.length();
+            }
+
+            while (written < size) {
+                final var line = format.formatted(
+                    random.nextInt(variables), random.nextInt(variables), random.nextInt(variables),
+                    1 + random.nextInt(1000), random.nextInt(variables));
+                writer.write(line);
+                written += line.length();
+            }
+            writer.write("return %s0;\n".formatted(name));
+        }
+    }
+
+    /**
+     * @return 若干轮中最快一轮所用的纳秒数
+     */
+    private static long measure(String path, boolean runSkipping, int rounds) {
+        long best = Long.MAX_VALUE;
+        for (int round = -WARMUP_ROUNDS; round < rounds; round++) {
+            final var lexer = new LexicalAnalyzer(new SymbolTable());
+            lexer.setRunSkipping(runSkipping);
+            lexer.loadFileMapped(path);
+
+            final var begin = System.nanoTime();
+            lexer.run();
+            final var elapsed = System.nanoTime() - begin;
+
+            if (round >= 0) {
+                best = Math.min(best, elapsed);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 在新的 JVM 中以相同的类路径运行本类的一种测试, 输出直接转发到当前进程
+     */
+    private static void fork(String... args) throws IOException, InterruptedException {
+        final var command = new ArrayList<String>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(LexerBenchmark.class.getName());
+        command.add(FORKED);
+        command.addAll(List.of(args));
+
+        final var process = new ProcessBuilder(command).inheritIO().start();
+        if (process.waitFor() != 0) {
+            throw new RuntimeException("Benchmark fork failed with exit code " + process.exitValue());
+        }
+    }
+
+    private static final int WARMUP_ROUNDS = 2;
+    private static final String FORKED = "--forked";
+}
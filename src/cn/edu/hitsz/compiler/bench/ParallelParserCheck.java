@@ -0,0 +1,142 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.ActionObserver;
+import cn.edu.hitsz.compiler.parser.ParseEventLog;
+import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 并行语法分析的正确性检查: 以任意大小的段切分时, 并行分析的事件日志应与串行分析的完全相同
+ * <br>
+ * 反复随机生成一个程序 (与 {@link IncrementalParserCheck} 的语句相同), 并随机选取每段的 token 数 (小至一个 token),
+ * 使切分点落在各种语句之后. 以 {@link SyntaxAnalyzer#recordParallel(ForkJoinPool, int)} 并行分析, 与 {@link SyntaxAnalyzer#record()}
+ * 的串行结果逐个事件比较 (动作, 状态, token 与产生式). 能切分为多段的正确程序不允许放弃并行分析.
+ * 部分程序中的某条语句会被去掉分号或多出一个运算符: 此时串行分析应报告语法错误, 而并行分析应放弃, 不得给出结果. 需在项目根目录下运行:
+ * <pre>
+ * java cn.edu.hitsz.compiler.bench.ParallelParserCheck [程序数] [随机种子]
+ * </pre>
+ */
+public class ParallelParserCheck {
+    public static void main(String[] args) throws IOException {
+        final var programs = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        final var random = new Random(args.length > 1 ? Long.parseLong(args[1]) : 42);
+
+        TokenKind.loadTokenKinds();
+        final var table = new TableLoader().load(FilePathConfig.LR1_TABLE_PATH);
+        final var pool = new ForkJoinPool(4);
+        final var file = Files.createTempFile("parallel-check", ".txt");
+        try {
+            var broken = 0;
+            for (int round = 1; round <= programs; round++) {
+                final var lines = new ArrayList<String>();
+                for (int i = 1 + random.nextInt(200); i > 0; i--) {
+                    lines.add(IncrementalParserCheck.randomStatement(random));
+                }
+                final var valid = random.nextInt(4) != 0;
+                if (!valid) {
+                    final var line = random.nextInt(lines.size());
+                    final var statement = lines.get(line);
+                    lines.set(line, random.nextBoolean() ? statement.substring(0, statement.length() - 1) : statement + " +");
+                    broken++;
+                }
+                Files.write(file, lines);
+
+                final var lexer = new LexicalAnalyzer(new SymbolTable());
+                lexer.loadFile(file.toString());
+                lexer.run();
+                final var tokens = lexer.getTokenBuffer();
+                final var parser = new SyntaxAnalyzer(new SymbolTable());
+                parser.loadTokens(tokens);
+                parser.loadLRTable(table);
+
+                final var chunkTokens = 1 + random.nextInt(random.nextBoolean() ? 8 : 64);
+                final var parallel = parser.recordParallel(pool, chunkTokens);
+                ParseEventLog serial;
+                try {
+                    serial = parser.record();
+                } catch (RuntimeException e) {
+                    serial = null;
+                }
+
+                if (serial == null) {
+                    if (valid) {
+                        throw new RuntimeException("Program %d: serial parse failed on a valid program".formatted(round));
+                    }
+                    if (parallel != null) {
+                        throw new RuntimeException("Program %d: parallel parse accepted a program with a syntax error".formatted(round));
+                    }
+                    continue;
+                }
+                if (parallel == null) {
+                    if (splits(tokens, chunkTokens)) {
+                        throw new RuntimeException("Program %d: parallel parse gave up with %d-token chunks".formatted(round, chunkTokens));
+                    }
+                    continue;
+                }
+                if (!events(parallel).equals(events(serial))) {
+                    throw new RuntimeException("Program %d: parallel events differ with %d-token chunks".formatted(round, chunkTokens));
+                }
+            }
+            System.out.printf("%d programs checked (%d with syntax errors)%n", programs, broken);
+        } finally {
+            Files.deleteIfExists(file);
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @return 以该大小切分时是否至少有两段: 从 chunkTokens 处开始有一个 Semicolon, 且它之后还有 EOF 以外的 token
+     */
+    private static boolean splits(TokenBuffer tokens, int chunkTokens) {
+        final var separator = TokenKind.fromString("Semicolon").getCode();
+        for (int i = chunkTokens; i < tokens.size() - 2; i++) {
+            if (tokens.kindCode(i) == separator) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return 日志中的各个事件, 每个一行
+     */
+    private static List<String> events(ParseEventLog log) {
+        final var events = new ArrayList<String>(log.size());
+        log.replay(new ActionObserver() {
+            @Override
+            public void whenShift(Status currentStatus, Token currentToken) {
+                events.add("shift " + currentStatus.index() + " " + currentToken);
+            }
+
+            @Override
+            public void whenReduce(Status currentStatus, Production production) {
+                events.add("reduce " + currentStatus.index() + " " + production);
+            }
+
+            @Override
+            public void whenAccept(Status currentStatus) {
+                events.add("accept " + currentStatus.index());
+            }
+
+            @Override
+            public void setSymbolTable(SymbolTable table) {
+            }
+        });
+        return events;
+    }
+}
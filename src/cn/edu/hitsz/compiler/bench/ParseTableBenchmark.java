@@ -0,0 +1,91 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.PackedLRTable;
+import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+
+import java.util.Random;
+
+/**
+ * LR 分析表查表的性能测试: 比较稠密表与行位移压缩表
+ * <br>
+ * 先检查两种形式的表逐格一致并输出压缩比, 再分别对同一串随机的 (状态, 列) 序列查表若干轮, 取最好成绩.
+ * 需在项目根目录下运行:
+ * <pre>
+ * java cn.edu.hitsz.compiler.bench.ParseTableBenchmark [LR 分析表路径] [查表次数 (百万)] [轮数]
+ * </pre>
+ */
+public class ParseTableBenchmark {
+    public static void main(String[] args) {
+        final var path = args.length > 0 ? args[0] : FilePathConfig.LR1_TABLE_PATH;
+        final var lookups = (args.length > 1 ? Integer.parseInt(args[1]) : 50) * 1_000_000;
+        final var rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        TokenKind.loadTokenKinds();
+        final var table = new TableLoader().load(path).pack();
+        final var dense = table.dense();
+        final var compressed = table.compressed();
+        checkEquivalent(dense, compressed);
+
+        final var denseInts = (long) dense.stateCount() * (dense.terminalCount() + dense.nonTerminalCount());
+        System.out.printf("%d states, %d terminals, %d non-terminals, chosen automatically: %s%n",
+            table.stateCount(), table.terminalCount(), table.nonTerminalCount(), table.isCompressed() ? "compressed" : "dense");
+        System.out.printf("dense %d ints, compressed %d ints, compression ratio %.2f%n",
+            denseInts, Math.round(denseInts / compressed.compressionRatio()), compressed.compressionRatio());
+
+        // 一半查 ACTION, 一半查 GOTO
+        final var random = new Random(42);
+        final var states = new int[lookups];
+        final var columns = new int[lookups];
+        for (int i = 0; i < lookups; i++) {
+            states[i] = random.nextInt(table.stateCount());
+            columns[i] = (i & 1) == 0 ? random.nextInt(table.terminalCount()) : random.nextInt(table.nonTerminalCount());
+        }
+
+        for (int round = -WARMUP_ROUNDS; round < rounds; round++) {
+            final var denseTime = measure(dense, states, columns);
+            final var compressedTime = measure(compressed, states, columns);
+            if (round >= 0) {
+                System.out.printf("round %d: dense %6.2f ns/lookup, compressed %6.2f ns/lookup%n",
+                    round, (double) denseTime / lookups, (double) compressedTime / lookups);
+            }
+        }
+    }
+
+    private static void checkEquivalent(PackedLRTable dense, PackedLRTable compressed) {
+        for (int state = 0; state < dense.stateCount(); state++) {
+            for (int column = 0; column < dense.terminalCount(); column++) {
+                if (dense.action(state, column) != compressed.action(state, column)) {
+                    throw new RuntimeException("Action mismatch at state %d column %d".formatted(state, column));
+                }
+            }
+            for (int column = 0; column < dense.nonTerminalCount(); column++) {
+                if (dense.gotoOf(state, column) != compressed.gotoOf(state, column)) {
+                    throw new RuntimeException("Goto mismatch at state %d column %d".formatted(state, column));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 查完整个序列所用的纳秒数
+     */
+    private static long measure(PackedLRTable table, int[] states, int[] columns) {
+        final var begin = System.nanoTime();
+        var sum = 0;
+        for (int i = 0; i < states.length; i += 2) {
+            sum += table.action(states[i], columns[i]);
+            sum += table.gotoOf(states[i + 1], columns[i + 1]);
+        }
+        final var elapsed = System.nanoTime() - begin;
+
+        // 防止查表被当作无用代码消除
+        if (sum == 42) {
+            System.out.println();
+        }
+        return elapsed;
+    }
+
+    private static final int WARMUP_ROUNDS = 2;
+}
@@ -0,0 +1,334 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.ActionObserver;
+import cn.edu.hitsz.compiler.parser.IRGenerator;
+import cn.edu.hitsz.compiler.parser.ParserGenerator;
+import cn.edu.hitsz.compiler.parser.ProductionCollector;
+import cn.edu.hitsz.compiler.parser.SemanticAnalyzer;
+import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.ast.SyntaxTree;
+import cn.edu.hitsz.compiler.parser.ast.SyntaxTreeBuilder;
+import cn.edu.hitsz.compiler.parser.ast.SyntaxTreeVisitor;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 语法分析驱动程序的性能测试: 每个 token 的耗时与堆分配量
+ * <br>
+ * 以 {@link LexerBenchmark} 的紧凑输入 (默认 20 MB 的长语句列表) 预先完成词法分析, 再对同一个 token 序列反复运行分析器.
+ * 分别测量查表的 {@link SyntaxAnalyzer} 与 {@link ParserGenerator} 生成的直接编码的分析器, 各自又分为不注册观察者与注册一个什么也不做的观察者两种情况. 分配量由 {@link com.sun.management.ThreadMXBean} 统计当前线程得到,
+ * 不注册观察者时稳定分析应当不分配任何对象; 注册观察者时只有移入带文本的 token (标识符与常量) 需要构造 Token 对象.
+ * 接着比较原表, 加入默认规约, 以及同时消去单位产生式链 ({@link SyntaxAnalyzer#useDefaultReductions}) 三种分析表的耗时与实际执行的规约数.
+ * 之后比较串行与切分后并行 ({@link SyntaxAnalyzer#recordParallel}) 记录事件日志的耗时.
+ * 最后注册编译器实际使用的三个观察者, 比较直接依次通知与记录事件日志后并行重放 ({@link SyntaxAnalyzer#runReplayed}) 的耗时.
+ * 需在项目根目录下运行:
+ * <pre>
+ * java cn.edu.hitsz.compiler.bench.ParserBenchmark [输入大小 (MB)] [轮数]
+ * </pre>
+ */
+public class ParserBenchmark {
+    public static void main(String[] args) throws IOException {
+        final var megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        final var rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        TokenKind.loadTokenKinds();
+        final var table = new TableLoader().load(FilePathConfig.LR1_TABLE_PATH);
+
+        final var input = Files.createTempFile("parser-bench", ".txt");
+        final TokenBuffer tokens;
+        try {
+            LexerBenchmark.generateInput(input, megabytes * 1024L * 1024L, false);
+            final var lexer = new LexicalAnalyzer(new SymbolTable());
+            lexer.loadFile(input.toString());
+            lexer.run();
+            tokens = lexer.getTokenBuffer();
+        } finally {
+            Files.deleteIfExists(input);
+        }
+        System.out.printf("%d tokens%n", tokens.size());
+
+        for (final var directCoded : new boolean[]{false, true}) {
+            for (final var withObserver : new boolean[]{false, true}) {
+                // 各轮复用同一个分析器: 文法的语句列表是右递归的, 状态栈会随语句数增长, 预热后即不再扩容
+                final Runnable parse;
+                if (directCoded) {
+                    final var parser = ParserGenerator.load(table, new SymbolTable());
+                    if (withObserver) {
+                        parser.registerObserver(new NoOpObserver());
+                    }
+                    parser.loadTokens(tokens);
+                    parse = parser::run;
+                } else {
+                    final var parser = new SyntaxAnalyzer(new SymbolTable());
+                    parser.loadLRTable(table);
+                    if (withObserver) {
+                        parser.registerObserver(new NoOpObserver());
+                    }
+                    parse = () -> {
+                        parser.loadTokens(tokens);
+                        parser.run();
+                    };
+                }
+
+                var bestTime = Long.MAX_VALUE;
+                var bestBytes = Long.MAX_VALUE;
+                for (int round = -WARMUP_ROUNDS; round < rounds; round++) {
+                    final var bytesBefore = allocatedBytes();
+                    final var start = System.nanoTime();
+                    parse.run();
+                    final var time = System.nanoTime() - start;
+                    final var bytes = allocatedBytes() - bytesBefore;
+                    if (round >= 0) {
+                        bestTime = Math.min(bestTime, time);
+                        bestBytes = Math.min(bestBytes, bytes);
+                    }
+                }
+
+                System.out.printf("  %-13s %-14s best %8.1f ms, %6.2f ns/token, %10d bytes allocated (%.3f bytes/token)%n",
+                    directCoded ? "direct-coded" : "table-driven", withObserver ? "with observer" : "no observer",
+                    bestTime / 1e6, (double) bestTime / tokens.size(), bestBytes, (double) bestBytes / tokens.size());
+            }
+        }
+
+        // 默认规约与单位产生式链的消去: 注册一个不需要单位规约的计数观察者, 统计驱动程序实际执行的规约数
+        System.out.println("default reductions and unit-chain collapse:");
+        for (final var variant : new String[]{"original", "defaults", "collapsed"}) {
+            final var parser = new SyntaxAnalyzer(new SymbolTable());
+            parser.loadLRTable(table);
+            if (!"original".equals(variant)) {
+                parser.useDefaultReductions("collapsed".equals(variant));
+            }
+            final var counter = new ReductionCounter();
+            parser.registerObserver(counter);
+            var bestTime = Long.MAX_VALUE;
+            for (int round = -WARMUP_ROUNDS; round < rounds; round++) {
+                counter.reductions = 0;
+                parser.loadTokens(tokens);
+                final var start = System.nanoTime();
+                parser.run();
+                final var time = System.nanoTime() - start;
+                if (round >= 0) {
+                    bestTime = Math.min(bestTime, time);
+                }
+            }
+
+            System.out.printf("  %-13s best %8.1f ms, %6.2f ns/token, %.3f reductions/token%n",
+                variant, bestTime / 1e6, (double) bestTime / tokens.size(), (double) counter.reductions / tokens.size());
+        }
+
+        // 只记录事件日志: 串行分析与在顶层 Semicolon 处切分后的并行分析
+        System.out.printf("recording the event log (%d threads):%n", ForkJoinPool.commonPool().getParallelism());
+        for (final var parallel : new boolean[]{false, true}) {
+            final var parser = new SyntaxAnalyzer(new SymbolTable());
+            parser.loadLRTable(table);
+            parser.loadTokens(tokens);
+            var bestTime = Long.MAX_VALUE;
+            for (int round = -WARMUP_ROUNDS; round < rounds; round++) {
+                final var start = System.nanoTime();
+                if (parallel) {
+                    parser.recordParallel(ForkJoinPool.commonPool());
+                } else {
+                    parser.record();
+                }
+                final var time = System.nanoTime() - start;
+                if (round >= 0) {
+                    bestTime = Math.min(bestTime, time);
+                }
+            }
+
+            System.out.printf("  %-13s best %8.1f ms, %6.2f ns/token%n",
+                parallel ? "parallel" : "serial", bestTime / 1e6, (double) bestTime / tokens.size());
+        }
+
+        // 注册实际的三个观察者, 比较依次直接通知与记录日志后各自并行重放.
+        // 条目的类型只能设置一次, 因此每轮都使用一个新的符号表, 其中含有输入中的所有标识符
+        // 规约列表边分析边写入同一个临时文件, 每轮覆盖
+        final var productionFile = Files.createTempFile("parser_list", ".txt");
+        System.out.printf("with ProductionCollector, SemanticAnalyzer and IRGenerator (%d threads):%n",
+            ForkJoinPool.commonPool().getParallelism());
+        for (final var replayed : new boolean[]{false, true}) {
+            var bestTime = Long.MAX_VALUE;
+            for (int round = -WARMUP_ROUNDS; round < rounds; round++) {
+                final var parser = new SyntaxAnalyzer(symbolsOf(tokens));
+                parser.loadLRTable(table);
+                parser.loadTokens(tokens);
+                parser.registerObserver(new ProductionCollector(GrammarInfo.getBeginProduction(), productionFile.toString()));
+                parser.registerObserver(new SemanticAnalyzer());
+                parser.registerObserver(new IRGenerator());
+
+                final var start = System.nanoTime();
+                if (replayed) {
+                    parser.runReplayed(ForkJoinPool.commonPool());
+                } else {
+                    parser.run();
+                }
+                final var time = System.nanoTime() - start;
+                if (round >= 0) {
+                    bestTime = Math.min(bestTime, time);
+                }
+            }
+
+            System.out.printf("  %-13s best %8.1f ms, %6.2f ns/token%n",
+                replayed ? "replayed" : "inline", bestTime / 1e6, (double) bestTime / tokens.size());
+        }
+
+        // 规约列表只在固定大小的缓冲区中暂存, 分配的内存不随规约数增长
+        // 各轮复用同一个分析器, 只替换其中转发到的收集器, 使分配的字节数中只含收集器的部分
+        System.out.println("ProductionCollector streaming to file:");
+        final var slot = new CollectorSlot();
+        final var collectingParser = new SyntaxAnalyzer(new SymbolTable());
+        collectingParser.loadLRTable(table);
+        collectingParser.registerObserver(slot);
+        var bestTime = Long.MAX_VALUE;
+        var bestBytes = Long.MAX_VALUE;
+        for (int round = -WARMUP_ROUNDS; round < rounds; round++) {
+            collectingParser.loadTokens(tokens);
+
+            final var start = System.nanoTime();
+            final var bytesBefore = allocatedBytes();
+            slot.collector = new ProductionCollector(GrammarInfo.getBeginProduction(), productionFile.toString());
+            collectingParser.run();
+            slot.collector.dumpToFile(productionFile.toString());
+            final var bytes = allocatedBytes() - bytesBefore;
+            final var time = System.nanoTime() - start;
+            if (round >= 0) {
+                bestTime = Math.min(bestTime, time);
+                bestBytes = Math.min(bestBytes, bytes);
+            }
+        }
+        System.out.printf("  best %8.1f ms, %6.2f ns/token, %d bytes allocated, %d bytes written%n",
+            bestTime / 1e6, (double) bestTime / tokens.size(), bestBytes, Files.size(productionFile));
+        Files.delete(productionFile);
+
+        // 建树器在各轮之间复用, 容量足够后建树不再分配, 分配的字节数应与上面 "with observer" 的相同
+        System.out.println("SyntaxTreeBuilder reused across parses:");
+        final var builder = new SyntaxTreeBuilder(GrammarInfo.getBeginProduction());
+        final var treeParser = new SyntaxAnalyzer(new SymbolTable());
+        treeParser.loadLRTable(table);
+        treeParser.registerObserver(builder);
+        var bestBuild = Long.MAX_VALUE;
+        var bestBuildBytes = Long.MAX_VALUE;
+        var bestWalk = Long.MAX_VALUE;
+        final var leaves = new long[1];
+        final var visitor = new SyntaxTreeVisitor() {
+            @Override
+            public void visitToken(SyntaxTree tree, int node) {
+                leaves[0]++;
+            }
+        };
+        for (int round = -WARMUP_ROUNDS; round < rounds; round++) {
+            builder.reset();
+            treeParser.loadTokens(tokens);
+
+            final var bytesBefore = allocatedBytes();
+            final var start = System.nanoTime();
+            treeParser.run();
+            final var built = System.nanoTime();
+            final var bytes = allocatedBytes() - bytesBefore;
+            leaves[0] = 0;
+            builder.getTree().walk(visitor);
+            final var walked = System.nanoTime();
+            if (round >= 0) {
+                bestBuild = Math.min(bestBuild, built - start);
+                bestBuildBytes = Math.min(bestBuildBytes, bytes);
+                bestWalk = Math.min(bestWalk, walked - built);
+            }
+        }
+        System.out.printf("  parse + build best %8.1f ms, %6.2f ns/token, %d bytes allocated; %d nodes%n",
+            bestBuild / 1e6, (double) bestBuild / tokens.size(), bestBuildBytes, builder.getTree().size());
+        System.out.printf("  walk          best %8.1f ms, %6.2f ns/node (%d leaves visited)%n",
+            bestWalk / 1e6, (double) bestWalk / builder.getTree().size(), leaves[0]);
+    }
+
+    /**
+     * 按 token 的顺序加入标识符, 因此各标识符的编号与词法分析时分配的相同
+     *
+     * @return 含有 tokens 中所有标识符的新符号表
+     */
+    private static SymbolTable symbolsOf(TokenBuffer tokens) {
+        final var table = new SymbolTable();
+        final var identifierCode = TokenKind.fromString("id").getCode();
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.kindCode(i) == identifierCode
+                && table.add(tokens.getSource(), tokens.start(i), tokens.length(i)).getId() != tokens.id(i)) {
+                throw new RuntimeException("Identifier ids differ from the lexer's at token " + i);
+            }
+        }
+        return table;
+    }
+
+    private static long allocatedBytes() {
+        final var bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * 什么也不做的观察者, 只用于让驱动程序构造通知所需的参数
+     */
+    private static class NoOpObserver implements ActionObserver {
+        @Override
+        public void whenShift(Status currentStatus, Token currentToken) {
+        }
+
+        @Override
+        public void whenReduce(Status currentStatus, Production production) {
+        }
+
+        @Override
+        public void whenAccept(Status currentStatus) {
+        }
+
+        @Override
+        public void setSymbolTable(SymbolTable table) {
+        }
+    }
+
+    /**
+     * 统计规约次数的观察者, 不需要单位规约的通知, 因此只计入驱动程序实际执行的规约
+     */
+    private static class ReductionCounter extends NoOpObserver {
+        @Override
+        public void whenReduce(Status currentStatus, Production production) {
+            reductions++;
+        }
+
+        @Override
+        public boolean wantsUnitReductions() {
+            return false;
+        }
+
+        private long reductions;
+    }
+
+    /**
+     * 将规约转发给当前收集器的观察者
+     */
+    private static class CollectorSlot extends NoOpObserver {
+        @Override
+        public void whenReduce(Status currentStatus, Production production) {
+            collector.whenReduce(currentStatus, production);
+        }
+
+        @Override
+        public void whenAccept(Status currentStatus) {
+            collector.whenAccept(currentStatus);
+        }
+
+        private ProductionCollector collector;
+    }
+
+    private static final int WARMUP_ROUNDS = 2;
+}
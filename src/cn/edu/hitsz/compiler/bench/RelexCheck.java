@@ -0,0 +1,130 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * 增量词法分析的正确性检查: 随机编辑后的 token 序列与符号表应与对编辑后的程序完整分析的结果相同
+ * <br>
+ * 以 {@link LexerBenchmark} 的紧凑输入 (默认 16 KB) 为程序, 反复随机选取几行, 以随机拼接的片段替换之, 调用
+ * {@link LexicalAnalyzer#relex}, 同时在字符串上做同样的编辑. 片段包括空串, 整行的语句, 不以换行结尾的半行 (与下一行连成一行),
+ * 多行文本与空行, 编辑也会落在文件末尾. 每隔若干次编辑, 将字符串写入临时文件并用一个新的词法分析器完整分析,
+ * 逐个比较 token 的类型, 文本与标识符的编号所指的符号, 并比较两张符号表的输出; 不同时抛出异常.
+ * 输入较小时编辑次数足以多次触发缓冲区的重新整理. 需在项目根目录下运行:
+ * <pre>
+ * java cn.edu.hitsz.compiler.bench.RelexCheck [输入大小 (KB)] [编辑次数] [检查间隔] [随机种子]
+ * </pre>
+ */
+public class RelexCheck {
+    public static void main(String[] args) throws IOException {
+        final var kilobytes = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        final var edits = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        final var interval = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        final var random = new Random(args.length > 3 ? Long.parseLong(args[3]) : 42);
+
+        TokenKind.loadTokenKinds();
+        final var input = Files.createTempFile("relex-check", ".txt");
+        try {
+            LexerBenchmark.generateInput(input, kilobytes * 1024L, false);
+            var text = Files.readString(input);
+            final var symbolTable = new SymbolTable();
+            final var lexer = new LexicalAnalyzer(symbolTable);
+            lexer.loadFile(input.toString());
+            lexer.run();
+
+            for (int round = 1; round <= edits; round++) {
+                final var lineCount = (int) text.chars().filter(c -> c == '\n').count() + 1;
+                final var fromLine = random.nextInt(lineCount + 1);
+                final var toLine = Math.min(lineCount, fromLine + random.nextInt(3));
+                final var replacement = new StringBuilder();
+                for (int i = random.nextInt(4); i > 0; i--) {
+                    replacement.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]
+                        .formatted(random.nextInt(600), random.nextInt(600)));
+                }
+
+                lexer.relex(fromLine, toLine, replacement.toString());
+                text = text.substring(0, lineStart(text, fromLine)) + replacement + text.substring(lineStart(text, toLine));
+                if (round % interval == 0 || round == edits) {
+                    compare(lexer.getTokenBuffer(), symbolTable, text, input, round);
+                }
+            }
+            System.out.printf("%d edits checked, final size %d bytes%n", edits, text.length());
+        } finally {
+            Files.deleteIfExists(input);
+        }
+    }
+
+    /**
+     * @return 第 line 行的起始位置; line 等于行数时为文本末尾
+     */
+    private static int lineStart(String text, int line) {
+        var position = 0;
+        for (int i = 0; i < line; i++) {
+            final var newline = text.indexOf('\n', position);
+            if (newline < 0) {
+                return text.length();
+            }
+            position = newline + 1;
+        }
+        return position;
+    }
+
+    private static void compare(TokenBuffer tokens, SymbolTable symbolTable, String text, Path file, int round) throws IOException {
+        Files.writeString(file, text);
+        final var freshTable = new SymbolTable();
+        final var fresh = new LexicalAnalyzer(freshTable);
+        fresh.loadFile(file.toString());
+        fresh.run();
+        final var expected = fresh.getTokenBuffer();
+
+        if (tokens.size() != expected.size()) {
+            throw new RuntimeException("Edit %d: %d tokens, a full run gives %d".formatted(round, tokens.size(), expected.size()));
+        }
+        final var identifierCode = TokenKind.fromString("id").getCode();
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.kindCode(i) != expected.kindCode(i) || !tokens.text(i).equals(expected.text(i))) {
+                throw new RuntimeException("Edit %d: token %d is %s, a full run gives %s"
+                    .formatted(round, i, tokens.token(i), expected.token(i)));
+            }
+            if (tokens.kindCode(i) == identifierCode && !symbolTable.nameOf(tokens.id(i)).equals(tokens.text(i))) {
+                throw new RuntimeException("Edit %d: token %d refers to symbol %s".formatted(round, i, symbolTable.nameOf(tokens.id(i))));
+            }
+        }
+
+        final var dump = Files.createTempFile("relex-check", ".old");
+        final var freshDump = Files.createTempFile("relex-check", ".new");
+        try {
+            symbolTable.dumpTable(dump.toString());
+            freshTable.dumpTable(freshDump.toString());
+            if (!Files.readString(dump).equals(Files.readString(freshDump))) {
+                throw new RuntimeException("Edit %d: symbol table differs from a full run".formatted(round));
+            }
+        } finally {
+            Files.deleteIfExists(dump);
+            Files.deleteIfExists(freshDump);
+        }
+    }
+
+    /**
+     * 替换文本的片段, 其中的 %1$d 与 %2$d 为随机的变量编号
+     */
+    private static final String[] FRAGMENTS = {
+        "",
+        "f%1$d = f%2$d + 1;\n",
+        "f%1$d = (f%2$d + f%1$d) * 7 - f%2$d;\n",
+        "f%1$d = f%2$d",
+        " * g%2$d;\n",
+        "int g%1$d;\n",
+        "\n",
+        "   ",
+        "h%1$d;\nh%2$d = 3;\n",
+        "return f%1$d;",
+    };
+}
@@ -0,0 +1,127 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.NonTerminal;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.TableGenerator;
+import cn.edu.hitsz.compiler.parser.table.Term;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 分析表构造的性能测试, 以文法规模为自变量
+ * <br>
+ * 文法仿照 grammar.txt 生成: 语句部分与 grammar.txt 相同, 表达式部分则复制为互不相同的若干组 (见 {@link #generateGrammar(int)}),
+ * 于是产生式数约为 10 * 组数. 对每种规模与每种分析表, 分别顺序与并行构造若干轮, 取最好成绩.
+ * 需在项目根目录下运行 (需要读取 data/in/coding_map.csv):
+ * <pre>
+ * java cn.edu.hitsz.compiler.bench.TableGeneratorBenchmark [各规模的表达式组数, 以逗号分隔] [轮数]
+ * </pre>
+ */
+public class TableGeneratorBenchmark {
+    public static void main(String[] args) {
+        final var sizes = Arrays.stream((args.length > 0 ? args[0] : "5,10,20,40").split(","))
+            .mapToInt(Integer::parseInt).toArray();
+        final var rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        TokenKind.loadTokenKinds();
+        final var pool = ForkJoinPool.commonPool();
+
+        for (final var copies : sizes) {
+            final var productions = generateGrammar(copies);
+            System.out.printf("%d expression copies, %d productions:%n", copies, productions.size());
+
+            for (final var kind : TableGenerator.TableKind.values()) {
+                var states = 0;
+                var sequential = Long.MAX_VALUE;
+                var parallel = Long.MAX_VALUE;
+                for (int round = -WARMUP_ROUNDS; round < rounds; round++) {
+                    final var sequentialGenerator = new TableGenerator(kind, productions);
+                    sequentialGenerator.setItemsPath(null);
+                    final var sequentialTime = measure(() -> sequentialGenerator.run());
+
+                    final var parallelGenerator = new TableGenerator(kind, productions);
+                    parallelGenerator.setItemsPath(null);
+                    final var parallelTime = measure(() -> parallelGenerator.runParallel(pool));
+
+                    if (parallelGenerator.getStatusCount() != sequentialGenerator.getStatusCount()) {
+                        throw new RuntimeException("Parallel construction produced a different number of states");
+                    }
+                    states = sequentialGenerator.getStatusCount();
+                    if (round >= 0) {
+                        sequential = Math.min(sequential, sequentialTime);
+                        parallel = Math.min(parallel, parallelTime);
+                    }
+                }
+
+                System.out.printf("  %-5s %6d states, sequential %9.1f ms, parallel %9.1f ms%n",
+                    kind, states, sequential / 1e6, parallel / 1e6);
+            }
+        }
+    }
+
+    /**
+     * 生成含 copies 组表达式的文法, 第一条产生式为增广文法的开始产生式
+     * <br>
+     * 第 i 组表达式 E_i, A_i, B_i 与 grammar.txt 中的 E, A, B 形式相同, 由语句 {@code id , ... , = E_i} (i 个逗号) 引用
+     */
+    static List<Production> generateGrammar(int copies) {
+        final var program = new NonTerminal("P");
+        final var statements = new NonTerminal("S_list");
+        final var statement = new NonTerminal("S");
+        final var declaration = new NonTerminal("D");
+
+        final var productions = new ArrayList<Production>();
+        add(productions, program, statements);
+        add(productions, statements, statement, token("Semicolon"), statements);
+        add(productions, statements, statement, token("Semicolon"));
+        add(productions, statement, declaration, token("id"));
+        add(productions, declaration, token("int"));
+        add(productions, statement, token("return"), new NonTerminal("E0"));
+
+        for (int i = 0; i < copies; i++) {
+            final var e = new NonTerminal("E" + i);
+            final var a = new NonTerminal("A" + i);
+            final var b = new NonTerminal("B" + i);
+
+            final var assignment = new ArrayList<Term>();
+            assignment.add(token("id"));
+            for (int j = 0; j < i; j++) {
+                assignment.add(token(","));
+            }
+            assignment.add(token("="));
+            assignment.add(e);
+            add(productions, statement, assignment.toArray(new Term[0]));
+
+            add(productions, e, e, token("+"), a);
+            add(productions, e, e, token("-"), a);
+            add(productions, e, a);
+            add(productions, a, a, token("*"), b);
+            add(productions, a, a, token("/"), b);
+            add(productions, a, b);
+            add(productions, b, token("("), e, token(")"));
+            add(productions, b, token("id"));
+            add(productions, b, token("IntConst"));
+        }
+        return productions;
+    }
+
+    private static void add(List<Production> productions, NonTerminal head, Term... body) {
+        productions.add(new Production(productions.size() + 1, head, List.of(body)));
+    }
+
+    private static TokenKind token(String id) {
+        return TokenKind.fromString(id);
+    }
+
+    private static long measure(Runnable action) {
+        final var start = System.nanoTime();
+        action.run();
+        return System.nanoTime() - start;
+    }
+
+    private static final int WARMUP_ROUNDS = 1;
+}
@@ -7,6 +7,12 @@ package cn.edu.hitsz.compiler.ir;
  * name 来表示. 临时变量的 name 都是 "$[0-9]+", 而非临时变量的 name 都是 "[a-zA-Z_][a-zA-Z0-9_]*"
  * <br>
  * IR 变量的等价性由 name 唯一确定.
+ * <br>
+ * 临时变量的 name 在第一次被访问时才构造. 其等价性直接由编号决定, 与由 name 决定的结果相同; 散列值即为其编号,
+ * 而不是 name 的散列值. 具名变量的等价性与散列值仍只由 name 决定, 与是否带有编号无关.
+ * <br>
+ * 此外每个变量还带有一个编号 ({@link #getId()}): 具名变量为其标识符在符号表中的编号, 临时变量为其临时变量编号. 两者各自从 0 开始连续,
+ * 其后的阶段可以借此以数组代替以变量为键的散列表, 见 {@link IRVariableIntMap}.
  */
 public class IRVariable implements IRValue {
     /**
@@ -14,22 +20,59 @@ public class IRVariable implements IRValue {
      * @return 一个对应于源语言中具体变量的 IRVariable
      */
     public static IRVariable named(String name) {
-        return new IRVariable(name);
+        return new IRVariable(name, NO_ID, false);
+    }
+
+    /**
+     * @param name 源语言中变量的名字
+     * @param id   该名字在符号表中的编号
+     * @return 一个对应于源语言中具体变量的 IRVariable
+     */
+    public static IRVariable named(String name, int id) {
+        return new IRVariable(name, id, false);
     }
 
     /**
      * @return 一个对应于源语言中的临时变量的新 IRVariable
      */
     public static IRVariable temp() {
-        return new IRVariable("$" + count++);
+        return temp(count++);
+    }
+
+    /**
+     * @param number 临时变量的编号
+     * @return 编号为 number 的临时变量, 用于需要自行为临时变量编号的场合 (如增量分析中的重新编号)
+     */
+    public static IRVariable temp(int number) {
+        return new IRVariable(null, number, true);
+    }
+
+    /**
+     * @return 临时变量的编号
+     */
+    public int getTempNumber() {
+        if (!isTemp()) {
+            throw new RuntimeException("Not a temporary variable: " + getName());
+        }
+        return id;
+    }
+
+    /**
+     * @return 具名变量的标识符编号 (未给出时为 {@link #NO_ID}), 或临时变量的编号
+     */
+    public int getId() {
+        return id;
     }
 
     public String getName() {
+        if (name == null) {
+            name = "$" + id;
+        }
         return name;
     }
 
     public boolean isTemp() {
-        return name.startsWith("$");
+        return temp;
     }
 
     public boolean isNamed() {
@@ -38,23 +81,32 @@ public class IRVariable implements IRValue {
 
     @Override
     public String toString() {
-        return name;
+        return getName();
     }
 
     @Override
     public boolean equals(Object obj) {
-        return obj instanceof IRVariable reg && name.equals(reg.name);
+        return obj instanceof IRVariable reg && temp == reg.temp && (temp ? id == reg.id : name.equals(reg.name));
     }
 
     @Override
     public int hashCode() {
-        return name.hashCode();
+        return temp ? id : name.hashCode();
     }
 
-    private IRVariable(String name) {
+    private IRVariable(String name, int id, boolean temp) {
         this.name = name;
+        this.id = id;
+        this.temp = temp;
     }
 
-    private final String name;
+    /**
+     * 没有编号的具名变量的编号
+     */
+    public static final int NO_ID = -1;
+
+    private String name;
+    private final int id;
+    private final boolean temp;
     private static int count = 0;
 }
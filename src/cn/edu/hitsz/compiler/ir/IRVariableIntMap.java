@@ -0,0 +1,116 @@
+package cn.edu.hitsz.compiler.ir;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 以 IR 变量为键, int 为值的映射, 键的等价性与 {@link IRVariable#equals} 相同
+ * <br>
+ * 临时变量按其编号存放在数组中. 具名变量按名字各占一格: 每个名字第一次出现时以散列表为其分配格, 带有编号
+ * ({@link IRVariable#getId()}) 的具名变量随后以编号为下标直接找到其格, 不需要求散列值. 因此同名的具名变量无论是否带有编号,
+ * 或来自哪个符号表, 都对应同一格.
+ */
+public final class IRVariableIntMap {
+    /**
+     * @param missing 键不存在时 {@link #get} 返回的值
+     */
+    public IRVariableIntMap(int missing) {
+        this.missing = missing;
+    }
+
+    public boolean containsKey(IRVariable variable) {
+        if (variable.isTemp()) {
+            return tempPresent.get(variable.getId());
+        }
+        final var slot = slotOf(variable, false);
+        return slot >= 0 && namedPresent.get(slot);
+    }
+
+    /**
+     * @return 键对应的值, 不存在时为构造时给出的 missing
+     */
+    public int get(IRVariable variable) {
+        if (variable.isTemp()) {
+            final var id = variable.getId();
+            return tempPresent.get(id) ? temps[id] : missing;
+        }
+        final var slot = slotOf(variable, false);
+        return slot >= 0 && namedPresent.get(slot) ? named[slot] : missing;
+    }
+
+    public void put(IRVariable variable, int value) {
+        if (variable.isTemp()) {
+            final var id = variable.getId();
+            temps = ensureCapacity(temps, id);
+            temps[id] = value;
+            tempPresent.set(id);
+            return;
+        }
+        final var slot = slotOf(variable, true);
+        named = ensureCapacity(named, slot);
+        named[slot] = value;
+        namedPresent.set(slot);
+    }
+
+    public void remove(IRVariable variable) {
+        if (variable.isTemp()) {
+            tempPresent.clear(variable.getId());
+            return;
+        }
+        final var slot = slotOf(variable, false);
+        if (slot >= 0) {
+            namedPresent.clear(slot);
+        }
+    }
+
+    /**
+     * @param create 名字第一次出现时是否为其分配格
+     * @return 具名变量的格, 不存在且不分配时为 -1
+     */
+    private int slotOf(IRVariable variable, boolean create) {
+        final var id = variable.getId();
+        final var name = variable.getName();
+        if (id != IRVariable.NO_ID && id < slotById.length) {
+            // 不同符号表可能为不同的名字分配相同的编号, 因此仍要核对名字; 通常是同一个字符串对象, 比较只需一次引用判等
+            final var slot = slotById[id] - 1;
+            if (slot >= 0 && names.get(slot).equals(name)) {
+                return slot;
+            }
+        }
+
+        var slot = slotByName.get(name);
+        if (slot == null) {
+            if (!create) {
+                return -1;
+            }
+            slot = names.size();
+            names.add(name);
+            slotByName.put(name, slot);
+        }
+        if (id != IRVariable.NO_ID) {
+            slotById = ensureCapacity(slotById, id);
+            slotById[id] = slot + 1;
+        }
+        return slot;
+    }
+
+    private static int[] ensureCapacity(int[] values, int id) {
+        return id < values.length ? values : Arrays.copyOf(values, Math.max(id + 1, values.length * 2));
+    }
+
+    private final int missing;
+    private int[] named = new int[64];
+    private int[] temps = new int[64];
+    private final BitSet namedPresent = new BitSet();
+    private final BitSet tempPresent = new BitSet();
+    /**
+     * 以编号为下标的格加一, 0 表示该编号尚未出现过
+     */
+    private int[] slotById = new int[64];
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> slotByName = new HashMap<>();
+}
@@ -0,0 +1,263 @@
+package cn.edu.hitsz.compiler.ir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * 以平行 int 数组紧凑存放的 IR
+ * <br>
+ * 每条指令占四个 int: 操作码, 结果, 左操作数与右操作数 (一元指令只用左操作数, RET 不使用结果). 操作码的低位为
+ * {@link InstructionKind} 的序号, 其上依次为三个位置各自 2 位的标记, 标记决定该位置上的 int 的含义:
+ * <ul>
+ *     <li>{@link #NAMED}: 具名变量的标识符编号, 名字记录在以编号为下标的数组中</li>
+ *     <li>{@link #TEMP}: 临时变量的编号</li>
+ *     <li>{@link #IMMEDIATE}: 立即数本身</li>
+ *     <li>{@link #OTHER}: 其余的值 (如没有编号的具名变量) 在附加列表中的下标</li>
+ * </ul>
+ * 因此每条指令只需 16 字节, 生成时也不必为操作数构造对象. {@link Instruction} 只在需要时才按下标构造,
+ * 见 {@link #instruction} 与 {@link #asList()}; {@link #dump} 直接由数组格式化, 不构造任何指令.
+ * <br>
+ * 各 add 方法中的操作数以 long 给出, 高 32 位为标记, 低 32 位为其值, 由 {@link #named}, {@link #temp}, {@link #immediate}
+ * 与 {@link #operandOf} 构造.
+ */
+public final class InstructionBuffer {
+    public static final int NAMED = 0;
+    public static final int TEMP = 1;
+    public static final int IMMEDIATE = 2;
+    public static final int OTHER = 3;
+
+    /**
+     * 不使用的操作数位置
+     */
+    public static final long UNUSED = immediate(0);
+
+    /**
+     * @return 编号为 id 的具名变量作为操作数, 其名字须已由 {@link #name} 登记
+     */
+    public static long named(int id) {
+        return operand(NAMED, id);
+    }
+
+    /**
+     * @return 编号为 number 的临时变量作为操作数
+     */
+    public static long temp(int number) {
+        return operand(TEMP, number);
+    }
+
+    /**
+     * @return 立即数 value 作为操作数
+     */
+    public static long immediate(int value) {
+        return operand(IMMEDIATE, value);
+    }
+
+    /**
+     * @return 操作数的标记
+     */
+    public static int tagOf(long operand) {
+        return (int) (operand >>> 32);
+    }
+
+    /**
+     * @return 操作数的值
+     */
+    public static int valueOf(long operand) {
+        return (int) operand;
+    }
+
+    /**
+     * 登记编号为 id 的具名变量的名字, 同一编号只需登记一次
+     *
+     * @return 以该具名变量作为操作数
+     */
+    public long name(int id, String name) {
+        if (id >= names.length) {
+            names = Arrays.copyOf(names, Math.max(id + 1, names.length * 2));
+        }
+        names[id] = name;
+        return named(id);
+    }
+
+    /**
+     * 将一个 IR 值转换为操作数
+     */
+    public long operandOf(IRValue value) {
+        if (value instanceof IRImmediate immediate) {
+            return immediate(immediate.getValue());
+        } else if (value instanceof IRVariable variable && variable.isTemp()) {
+            return temp(variable.getTempNumber());
+        } else if (value instanceof IRVariable variable && variable.getId() != IRVariable.NO_ID) {
+            return name(variable.getId(), variable.getName());
+        }
+        others.add(value);
+        return operand(OTHER, others.size() - 1);
+    }
+
+    //============================== 生成 ==============================
+    public void add(InstructionKind kind, long result, long lhs, long rhs) {
+        if (kind != InstructionKind.RET && tagOf(result) == IMMEDIATE) {
+            throw new RuntimeException("The result of an instruction must be a variable");
+        }
+
+        if (size == opcodes.length) {
+            final var capacity = size * 2;
+            opcodes = Arrays.copyOf(opcodes, capacity);
+            results = Arrays.copyOf(results, capacity);
+            lhses = Arrays.copyOf(lhses, capacity);
+            rhses = Arrays.copyOf(rhses, capacity);
+        }
+
+        opcodes[size] = kind.ordinal()
+            | tagOf(result) << RESULT_SHIFT | tagOf(lhs) << LHS_SHIFT | tagOf(rhs) << RHS_SHIFT;
+        results[size] = valueOf(result);
+        lhses[size] = valueOf(lhs);
+        rhses[size] = valueOf(rhs);
+        size++;
+    }
+
+    public void add(Instruction instruction) {
+        final var kind = instruction.getKind();
+        final var operands = instruction.getOperands();
+        final var result = kind.isReturn() ? UNUSED : operandOf(instruction.getResult());
+        final var rhs = kind.isBinary() ? operandOf(operands.get(1)) : UNUSED;
+        add(kind, result, operandOf(operands.get(0)), rhs);
+    }
+
+    /**
+     * 清空所有指令, 数组与已登记的名字都会保留
+     */
+    public void clear() {
+        size = 0;
+        others.clear();
+    }
+
+    //============================== 读取 ==============================
+    public int size() {
+        return size;
+    }
+
+    public InstructionKind kind(int index) {
+        return KINDS[opcodes[Objects.checkIndex(index, size)] & KIND_MASK];
+    }
+
+    /**
+     * @return 第 index 条指令
+     */
+    public Instruction instruction(int index) {
+        final var kind = kind(index);
+        final var opcode = opcodes[index];
+        final var lhs = value(opcode >>> LHS_SHIFT & TAG_MASK, lhses[index]);
+        if (kind.isReturn()) {
+            return Instruction.createRet(lhs);
+        }
+
+        final var result = (IRVariable) value(opcode >>> RESULT_SHIFT & TAG_MASK, results[index]);
+        if (kind.isUnary()) {
+            return Instruction.createMov(result, lhs);
+        }
+
+        final var rhs = value(opcode >>> RHS_SHIFT & TAG_MASK, rhses[index]);
+        return switch (kind) {
+            case ADD -> Instruction.createAdd(result, lhs, rhs);
+            case SUB -> Instruction.createSub(result, lhs, rhs);
+            case MUL -> Instruction.createMul(result, lhs, rhs);
+            default -> throw new RuntimeException("Unknown instruction kind: " + kind);
+        };
+    }
+
+    /**
+     * @return 以指令列表访问的视图, 每次访问时才构造对应的指令; 之后新增的指令也会反映在视图中
+     */
+    public List<Instruction> asList() {
+        return view;
+    }
+
+    /**
+     * 输出所有指令, 格式与 {@link Instruction#toString()} 相同
+     *
+     * @param path 文件路径
+     */
+    public void dump(String path) {
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8)) {
+            final var line = new StringBuilder();
+            for (int i = 0; i < size; i++) {
+                final var kind = kind(i);
+                final var opcode = opcodes[i];
+                line.setLength(0);
+                line.append('(').append(kind).append(", ");
+                if (!kind.isReturn()) {
+                    appendValue(line, opcode >>> RESULT_SHIFT & TAG_MASK, results[i]);
+                }
+                line.append(", ");
+                appendValue(line, opcode >>> LHS_SHIFT & TAG_MASK, lhses[i]);
+                if (kind.isBinary()) {
+                    line.append(", ");
+                    appendValue(line, opcode >>> RHS_SHIFT & TAG_MASK, rhses[i]);
+                }
+                writer.append(line.append(')')).append(System.lineSeparator());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for " + path);
+        }
+    }
+
+    private IRValue value(int tag, int value) {
+        return switch (tag) {
+            case NAMED -> IRVariable.named(names[value], value);
+            case TEMP -> IRVariable.temp(value);
+            case IMMEDIATE -> IRImmediate.of(value);
+            default -> others.get(value);
+        };
+    }
+
+    private void appendValue(StringBuilder line, int tag, int value) {
+        switch (tag) {
+            case NAMED -> line.append(names[value]);
+            case TEMP -> line.append('$').append(value);
+            case IMMEDIATE -> line.append(value);
+            default -> line.append(others.get(value));
+        }
+    }
+
+    private static long operand(int tag, int value) {
+        return (long) tag << 32 | value & 0xFFFFFFFFL;
+    }
+
+    private static final InstructionKind[] KINDS = InstructionKind.values();
+    private static final int KIND_MASK = 0xFF;
+    private static final int TAG_MASK = 0b11;
+    private static final int RESULT_SHIFT = 8;
+    private static final int LHS_SHIFT = 10;
+    private static final int RHS_SHIFT = 12;
+
+    private final class View extends AbstractList<Instruction> implements RandomAccess {
+        @Override
+        public Instruction get(int index) {
+            return instruction(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private final List<Instruction> view = new View();
+    private int[] opcodes = new int[64];
+    private int[] results = new int[64];
+    private int[] lhses = new int[64];
+    private int[] rhses = new int[64];
+    private String[] names = new String[32];
+    private final List<IRValue> others = new ArrayList<>();
+    private int size = 0;
+}
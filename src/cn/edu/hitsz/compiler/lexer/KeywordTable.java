@@ -0,0 +1,133 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * 关键字的完美哈希表
+ * <br>
+ * 形如标识符的关键字 (如 int, return) 不进入词法分析自动机, 而是在自动机识别出一个标识符之后, 直接以该词素在源文件缓冲区中的字节查表,
+ * 以决定它是关键字还是普通的标识符. 表在生成时搜索一个使所有关键字互不冲突的哈希种子, 因此查找时只需计算一次哈希,
+ * 再与唯一的候选逐字节比较, 既不构造字符串也不需要处理冲突.
+ */
+public final class KeywordTable {
+    /**
+     * 为给定的关键字构造完美哈希表
+     *
+     * @param keywords 关键字词素到其 token 类型的映射
+     * @return 哈希表
+     */
+    static KeywordTable build(Map<String, TokenKind> keywords) {
+        // 从不小于两倍关键字数的 2 的幂开始, 找不到合适的种子时将表扩大一倍再试
+        var size = Integer.highestOneBit(Math.max(1, keywords.size() * 2 - 1)) << 1;
+        while (true) {
+            for (int seed = 0; seed < MAX_SEED_ATTEMPTS; seed++) {
+                final var table = tryBuild(keywords, size, seed);
+                if (table != null) {
+                    return table;
+                }
+            }
+            size <<= 1;
+        }
+    }
+
+    private static KeywordTable tryBuild(Map<String, TokenKind> keywords, int size, int seed) {
+        final var lexemes = new byte[size][];
+        final var kinds = new TokenKind[size];
+        var minLength = Integer.MAX_VALUE;
+        var maxLength = 0;
+
+        for (final var entry : keywords.entrySet()) {
+            final var bytes = entry.getKey().getBytes(StandardCharsets.ISO_8859_1);
+            final var slot = hash(seed, bytes, 0, bytes.length) & (size - 1);
+            if (lexemes[slot] != null) {
+                return null;
+            }
+
+            lexemes[slot] = bytes;
+            kinds[slot] = entry.getValue();
+            minLength = Math.min(minLength, bytes.length);
+            maxLength = Math.max(maxLength, bytes.length);
+        }
+
+        return new KeywordTable(seed, lexemes, kinds, minLength, maxLength);
+    }
+
+    private KeywordTable(int seed, byte[][] lexemes, TokenKind[] kinds, int minLength, int maxLength) {
+        this.seed = seed;
+        this.lexemes = lexemes;
+        this.kinds = kinds;
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * 查找源文件中的一段词素是否为关键字
+     *
+     * @param source 源文件缓冲区
+     * @param start  词素的起始位置
+     * @param length 词素的字节数
+     * @return 该关键字的 token 类型; 不是关键字时为 null
+     */
+    public TokenKind lookup(ByteBuffer source, int start, int length) {
+        if (length < minLength || length > maxLength) {
+            return null;
+        }
+
+        final var slot = hash(seed, source, start, length) & (lexemes.length - 1);
+        final var candidate = lexemes[slot];
+        if (candidate == null || candidate.length != length) {
+            return null;
+        }
+        for (int i = 0; i < length; i++) {
+            if (candidate[i] != source.get(start + i)) {
+                return null;
+            }
+        }
+        return kinds[slot];
+    }
+
+    /**
+     * @return 关键字个数
+     */
+    public int size() {
+        var count = 0;
+        for (final var lexeme : lexemes) {
+            if (lexeme != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 带种子的 FNV-1a 哈希, 数组与缓冲区两个版本的结果必须一致
+     */
+    private static int hash(int seed, byte[] bytes, int start, int length) {
+        var hash = FNV_OFFSET ^ seed * SEED_MULTIPLIER;
+        for (int i = start; i < start + length; i++) {
+            hash = (hash ^ (bytes[i] & 0xFF)) * FNV_PRIME;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int hash(int seed, ByteBuffer source, int start, int length) {
+        var hash = FNV_OFFSET ^ seed * SEED_MULTIPLIER;
+        for (int i = start; i < start + length; i++) {
+            hash = (hash ^ (source.get(i) & 0xFF)) * FNV_PRIME;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final int FNV_OFFSET = 0x811C9DC5;
+    private static final int FNV_PRIME = 0x01000193;
+    private static final int SEED_MULTIPLIER = 0x9E3779B9;
+    private static final int MAX_SEED_ATTEMPTS = 1 << 16;
+
+    private final int seed;
+    private final byte[][] lexemes;
+    private final TokenKind[] kinds;
+    private final int minLength;
+    private final int maxLength;
+}
@@ -0,0 +1,469 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.lexer.LexerTable.TokenAction;
+
+import java.util.*;
+
+/**
+ * 根据码点文件中的 token 类型构造表驱动的词法分析自动机
+ * <br>
+ * 码点文件 (coding_map.csv) 中除标识符与常数之外的每个 token 类型都被视为一条字面量规则, 其词素就是它的标识符本身
+ * (个别如 Semicolon 这种用名字表示的分界符通过 {@code LITERAL_ALIASES} 给出词素); 标识符, 常数与空白则由正则表达式规则给出.
+ * 生成过程与理论课一致: 对每条规则用 Thompson 构造法得到 NFA, 合并后用子集构造法得到 DFA, 再按接受的规则划分进行最小化.
+ * <br>
+ * 多条规则同时接受同一词素时, 排在前面的规则优先, 因此字面量规则总是优先于标识符规则. 扫描时采用最长匹配.
+ * <br>
+ * 形如标识符的字面量 (关键字) 例外: 它们不生成规则, 而是放入 {@link KeywordTable} 完美哈希表中, 扫描器每识别出一个标识符就查一次表.
+ * 由于关键字本身就是合法的标识符, 这与将其作为优先的字面量规则得到的结果完全相同, 但自动机中不再需要为关键字的每个前缀保留状态.
+ * 新增 token 类型只需修改码点文件, 自动机会在下次启动时重新生成.
+ */
+public class LexerGenerator {
+    /**
+     * 以名字而不是以词素本身作为标识符的 token 类型
+     */
+    private static final Map<String, String> LITERAL_ALIASES = Map.of("Semicolon", ";");
+
+    /**
+     * 正则表达式规则, 排在所有字面量规则之后
+     */
+    private static final List<Rule> PATTERN_RULES = List.of(
+        new Rule("id", "[A-Za-z_][A-Za-z0-9_]*", TokenAction.IDENTIFIER),
+        new Rule("IntConst", "[0-9]+", TokenAction.CONSTANT),
+        new Rule(null, "[ \t\r\n]+", TokenAction.SKIP)
+    );
+
+    /**
+     * 一条词法规则
+     *
+     * @param kindId  对应的 token 类型的标识符, 被丢弃的规则为 null
+     * @param pattern 正则表达式
+     * @param action  接受后的动作
+     */
+    private record Rule(String kindId, String pattern, TokenAction action) {
+    }
+
+    public LexerGenerator() {
+        final var patternKinds = new HashSet<String>();
+        for (final var rule : PATTERN_RULES) {
+            patternKinds.add(rule.kindId());
+        }
+
+        // 按码点排序, 使生成的自动机与 HashMap 的遍历顺序无关
+        final var literalKinds = TokenKind.allAllowedTokenKinds().values().stream()
+            .filter(kind -> kind != TokenKind.eof() && !patternKinds.contains(kind.getIdentifier()))
+            .sorted(Comparator.comparingInt(TokenKind::getCode))
+            .toList();
+
+        // 形如标识符的字面量 (关键字) 不进入自动机, 而是在识别出标识符后查完美哈希表
+        final var identifierPattern = PATTERN_RULES.stream()
+            .filter(rule -> rule.action() == TokenAction.IDENTIFIER)
+            .map(Rule::pattern)
+            .findFirst()
+            .orElseThrow();
+        for (final var kind : literalKinds) {
+            final var lexeme = LITERAL_ALIASES.getOrDefault(kind.getIdentifier(), kind.getIdentifier());
+            if (lexeme.matches(identifierPattern)) {
+                keywords.put(lexeme, kind);
+            } else {
+                rules.add(new Rule(kind.getIdentifier(), quote(lexeme), TokenAction.SIMPLE));
+            }
+        }
+        rules.addAll(PATTERN_RULES);
+    }
+
+    /**
+     * 主体方法
+     */
+    public void run() {
+        constructNFA();
+        constructCharClasses();
+        constructDFA();
+        minimizeDFA();
+    }
+
+    /**
+     * @return 构造出的词法分析表
+     */
+    public LexerTable getTable() {
+        final var ruleKinds = new TokenKind[rules.size()];
+        final var ruleActions = new TokenAction[rules.size()];
+        for (int i = 0; i < rules.size(); i++) {
+            final var rule = rules.get(i);
+            ruleKinds[i] = rule.kindId() == null ? null : TokenKind.fromString(rule.kindId());
+            ruleActions[i] = rule.action();
+        }
+
+        return new LexerTable(charClass, unusedClass, minNext, minAccept, ruleKinds, ruleActions, KeywordTable.build(keywords));
+    }
+
+    private final List<Rule> rules = new ArrayList<>();
+    private final Map<String, TokenKind> keywords = new HashMap<>();
+
+    //============================== NFA ==============================
+
+    /**
+     * NFA 状态. 每个状态至多有一条字符集边, 以及任意条空边
+     */
+    private static final class NfaState {
+        final int id;
+        final List<NfaState> epsilon = new ArrayList<>();
+        BitSet chars = null;
+        NfaState target = null;
+        int rule = -1;
+
+        NfaState(int id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * Thompson 构造法中的 NFA 片段
+     */
+    private record Fragment(NfaState start, NfaState end) {
+    }
+
+    private final List<NfaState> nfaStates = new ArrayList<>();
+    private NfaState nfaStart;
+
+    private NfaState newNfaState() {
+        final var state = new NfaState(nfaStates.size());
+        nfaStates.add(state);
+        return state;
+    }
+
+    /**
+     * 为所有规则构造 NFA, 并用空边将它们并联到同一个起始状态上
+     */
+    private void constructNFA() {
+        nfaStart = newNfaState();
+        for (int idx = 0; idx < rules.size(); idx++) {
+            final var fragment = new RegexParser(rules.get(idx).pattern()).parse();
+            fragment.end().rule = idx;
+            nfaStart.epsilon.add(fragment.start());
+        }
+    }
+
+    /**
+     * 将字面量词素转义为正则表达式
+     */
+    private static String quote(String lexeme) {
+        final var builder = new StringBuilder();
+        for (final var ch : lexeme.toCharArray()) {
+            if ("\\[]()|*+?".indexOf(ch) >= 0) {
+                builder.append('\\');
+            }
+            builder.append(ch);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 正则表达式的递归下降解析器, 支持字符, 字符类 ([a-z0-9_]), 转义, 分组, 选择 (|) 以及 * + ? 三种重复
+     */
+    private final class RegexParser {
+        RegexParser(String pattern) {
+            this.pattern = pattern;
+        }
+
+        Fragment parse() {
+            final var result = alternation();
+            if (pos != pattern.length()) {
+                throw new RuntimeException("Illegal lexer pattern: " + pattern);
+            }
+            return result;
+        }
+
+        private Fragment alternation() {
+            var result = concatenation();
+            while (peek() == '|') {
+                pos++;
+                final var other = concatenation();
+                final var start = newNfaState();
+                final var end = newNfaState();
+                start.epsilon.add(result.start());
+                start.epsilon.add(other.start());
+                result.end().epsilon.add(end);
+                other.end().epsilon.add(end);
+                result = new Fragment(start, end);
+            }
+            return result;
+        }
+
+        private Fragment concatenation() {
+            Fragment result = null;
+            while (pos < pattern.length() && peek() != '|' && peek() != ')') {
+                final var next = repetition();
+                if (result == null) {
+                    result = next;
+                } else {
+                    result.end().epsilon.add(next.start());
+                    result = new Fragment(result.start(), next.end());
+                }
+            }
+
+            if (result == null) {
+                final var empty = newNfaState();
+                return new Fragment(empty, empty);
+            }
+            return result;
+        }
+
+        private Fragment repetition() {
+            var result = atom();
+            while (peek() == '*' || peek() == '+' || peek() == '?') {
+                final var op = pattern.charAt(pos++);
+                final var start = newNfaState();
+                final var end = newNfaState();
+                start.epsilon.add(result.start());
+                result.end().epsilon.add(end);
+                if (op != '+') {
+                    start.epsilon.add(end);
+                }
+                if (op != '?') {
+                    result.end().epsilon.add(result.start());
+                }
+                result = new Fragment(start, end);
+            }
+            return result;
+        }
+
+        private Fragment atom() {
+            final var ch = pattern.charAt(pos++);
+            if (ch == '(') {
+                final var inner = alternation();
+                expect(')');
+                return inner;
+            }
+
+            final var chars = new BitSet(128);
+            if (ch == '[') {
+                while (peek() != ']') {
+                    final var low = literal();
+                    if (peek() == '-') {
+                        pos++;
+                        chars.set(low, literal() + 1);
+                    } else {
+                        chars.set(low);
+                    }
+                }
+                expect(']');
+            } else {
+                pos--;
+                chars.set(literal());
+            }
+
+            final var start = newNfaState();
+            final var end = newNfaState();
+            start.chars = chars;
+            start.target = end;
+            return new Fragment(start, end);
+        }
+
+        private char literal() {
+            var ch = pattern.charAt(pos++);
+            if (ch == '\\') {
+                ch = pattern.charAt(pos++);
+            }
+            if (ch >= 128) {
+                throw new RuntimeException("Only ASCII is allowed in lexer pattern: " + pattern);
+            }
+            return ch;
+        }
+
+        private char peek() {
+            return pos < pattern.length() ? pattern.charAt(pos) : '\0';
+        }
+
+        private void expect(char ch) {
+            if (peek() != ch) {
+                throw new RuntimeException("Expect '%c' in lexer pattern: %s".formatted(ch, pattern));
+            }
+            pos++;
+        }
+
+        private final String pattern;
+        private int pos = 0;
+    }
+
+    //============================== 字符类 ==============================
+
+    private final byte[] charClass = new byte[128];
+    private int unusedClass;
+    private int classCount;
+
+    /**
+     * 对每个字符, 求出包含它的所有字符集边; 包含情况完全相同的字符归入同一个字符类.
+     * 这样 DFA 的列数就只取决于规则中出现的不同字符集的个数, 而不是 128
+     */
+    private void constructCharClasses() {
+        final var edgeSets = nfaStates.stream().map(state -> state.chars).filter(Objects::nonNull).toList();
+
+        final var classBySignature = new HashMap<BitSet, Integer>();
+        // 不出现在任何规则中的字符的签名为空集, 让它成为 0 号字符类
+        classBySignature.put(new BitSet(), 0);
+        for (int ch = 0; ch < 128; ch++) {
+            final var signature = new BitSet(edgeSets.size());
+            for (int i = 0; i < edgeSets.size(); i++) {
+                if (edgeSets.get(i).get(ch)) {
+                    signature.set(i);
+                }
+            }
+            final int cls = classBySignature.computeIfAbsent(signature, key -> classBySignature.size());
+            charClass[ch] = (byte) cls;
+        }
+
+        if (classBySignature.size() > Byte.MAX_VALUE) {
+            throw new RuntimeException("Too many character classes in lexer rules");
+        }
+        unusedClass = 0;
+        classCount = classBySignature.size();
+    }
+
+    //============================== DFA ==============================
+
+    private final List<int[]> dfaNext = new ArrayList<>();
+    private final List<Integer> dfaAccept = new ArrayList<>();
+
+    /**
+     * 求一组 NFA 状态的空闭包
+     */
+    private BitSet closure(BitSet states) {
+        final var result = (BitSet) states.clone();
+        final var unexpanded = new ArrayDeque<Integer>();
+        states.stream().forEach(unexpanded::add);
+        while (!unexpanded.isEmpty()) {
+            final var state = nfaStates.get(unexpanded.pollFirst());
+            for (final var next : state.epsilon) {
+                if (!result.get(next.id)) {
+                    result.set(next.id);
+                    unexpanded.add(next.id);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 子集构造法. 为了使状态 0 成为死状态, 空集被最先编号
+     */
+    private void constructDFA() {
+        final var representatives = new int[classCount];
+        for (int ch = 127; ch >= 0; ch--) {
+            representatives[charClass[ch]] = ch;
+        }
+
+        final var index = new HashMap<BitSet, Integer>();
+        final var unexpanded = new ArrayDeque<BitSet>();
+
+        final var dead = new BitSet();
+        index.put(dead, LexerTable.DEAD);
+        dfaNext.add(new int[classCount]);
+        dfaAccept.add(-1);
+
+        final var start = new BitSet();
+        start.set(nfaStart.id);
+        final var startClosure = closure(start);
+        index.put(startClosure, LexerTable.START);
+        dfaNext.add(new int[classCount]);
+        dfaAccept.add(acceptedRule(startClosure));
+        unexpanded.add(startClosure);
+
+        while (!unexpanded.isEmpty()) {
+            final var states = unexpanded.pollFirst();
+            final var row = dfaNext.get(index.get(states));
+
+            for (int cls = 0; cls < classCount; cls++) {
+                final var moved = new BitSet();
+                final int ch = representatives[cls];
+                // 0 号字符类可能没有任何字符 (所有 ASCII 字符都被规则使用), 此时它只代表非 ASCII 字符
+                if (cls != unusedClass || charClass[ch] == cls) {
+                    for (int s = states.nextSetBit(0); s >= 0; s = states.nextSetBit(s + 1)) {
+                        final var state = nfaStates.get(s);
+                        if (state.chars != null && state.chars.get(ch)) {
+                            moved.set(state.target.id);
+                        }
+                    }
+                }
+
+                final var to = closure(moved);
+                var toIndex = index.get(to);
+                if (toIndex == null) {
+                    toIndex = dfaNext.size();
+                    index.put(to, toIndex);
+                    dfaNext.add(new int[classCount]);
+                    dfaAccept.add(acceptedRule(to));
+                    unexpanded.add(to);
+                }
+                row[cls] = toIndex;
+            }
+        }
+    }
+
+    /**
+     * @return 该 NFA 状态集合接受的规则; 同时接受多条规则时取最靠前的一条, 不接受任何规则时为 -1
+     */
+    private int acceptedRule(BitSet states) {
+        int result = -1;
+        for (int s = states.nextSetBit(0); s >= 0; s = states.nextSetBit(s + 1)) {
+            final var rule = nfaStates.get(s).rule;
+            if (rule >= 0 && (result < 0 || rule < result)) {
+                result = rule;
+            }
+        }
+        return result;
+    }
+
+    private int[][] minNext;
+    private int[] minAccept;
+
+    /**
+     * 划分求精法最小化 DFA: 初始时按接受的规则划分状态, 随后反复按 "各字符类转移到的块" 细分, 直到不再变化
+     * <br>
+     * 死状态与初始状态在最小化后仍然分别是 0 号与 1 号状态
+     */
+    private void minimizeDFA() {
+        final var count = dfaNext.size();
+        var block = new int[count];
+        for (int s = 0; s < count; s++) {
+            // 死状态单独成块, 以保证它仍然是 0 号
+            block[s] = s == LexerTable.DEAD ? 0 : dfaAccept.get(s) + 2;
+        }
+
+        int blockCount;
+        while (true) {
+            final var signatures = new HashMap<List<Integer>, Integer>();
+            final var refined = new int[count];
+            // 按旧编号顺序重新编号, 保证死状态与初始状态依然排在最前面
+            for (int s = 0; s < count; s++) {
+                final var signature = new ArrayList<Integer>(classCount + 1);
+                signature.add(block[s]);
+                for (final var to : dfaNext.get(s)) {
+                    signature.add(block[to]);
+                }
+                refined[s] = signatures.computeIfAbsent(signature, key -> signatures.size());
+            }
+
+            blockCount = signatures.size();
+            final var stable = Arrays.equals(refined, block)
+                || blockCount == Arrays.stream(block).distinct().count();
+            block = refined;
+            if (stable) {
+                break;
+            }
+        }
+
+        minNext = new int[blockCount][];
+        minAccept = new int[blockCount];
+        for (int s = 0; s < count; s++) {
+            if (minNext[block[s]] == null) {
+                final var row = new int[classCount];
+                final var from = dfaNext.get(s);
+                for (int cls = 0; cls < classCount; cls++) {
+                    row[cls] = block[from[cls]];
+                }
+                minNext[block[s]] = row;
+                minAccept[block[s]] = dfaAccept.get(s);
+            }
+        }
+    }
+}
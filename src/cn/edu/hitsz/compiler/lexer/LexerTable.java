@@ -0,0 +1,186 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import java.util.ArrayList;
+
+/**
+ * 由 {@link LexerGenerator} 生成的表驱动词法分析自动机
+ * <br>
+ * 输入字符先经过 128 项的字符类表映射为字符类编号, 随后在稠密的 {@code next[状态][字符类]} 表中查得下一状态,
+ * 因此扫描每个字符只需要两次数组访问. 非 ASCII 字符一律视为不被任何规则使用的字符类.
+ * <br>
+ * 状态 {@link #DEAD} 是死状态, 所有状态在遇到无法接受的字符时都转移到它; 状态 {@link #START} 是初始状态.
+ * <br>
+ * 标识符, 常数与空白这类 "一串同类字符" 在自动机中表现为一个带自环的状态. 开启逐字跳过 ({@link #withRunSkipping(boolean)}) 后,
+ * 扫描器进入这样的状态时可以按 {@link #runMasks} 一次比较 8 个字节, 直接跳到该串的末尾, 而不必对每个字节都查一次转移表.
+ */
+public final class LexerTable {
+    public static final int DEAD = 0;
+    public static final int START = 1;
+
+    /**
+     * 在某接受状态结束一个词素后应采取的动作
+     */
+    public enum TokenAction {
+        /**
+         * 丢弃该词素, 如空白
+         */
+        SKIP,
+        /**
+         * 产生不带文本的 token, 如关键字和运算符
+         */
+        SIMPLE,
+        /**
+         * 产生标识符 token, 并将其加入符号表
+         */
+        IDENTIFIER,
+        /**
+         * 产生带文本的常数 token, 其文本延迟解码
+         */
+        CONSTANT
+    }
+
+    LexerTable(byte[] charClass, int unusedClass, int[][] next, int[] accept,
+               TokenKind[] ruleKinds, TokenAction[] ruleActions, KeywordTable keywords) {
+        this(charClass, unusedClass, next, accept, ruleKinds, ruleActions, keywords, false);
+    }
+
+    private LexerTable(byte[] charClass, int unusedClass, int[][] next, int[] accept,
+                       TokenKind[] ruleKinds, TokenAction[] ruleActions, KeywordTable keywords, boolean runSkipping) {
+        this.charClass = charClass;
+        this.unusedClass = unusedClass;
+        this.next = next;
+        this.accept = accept;
+        this.ruleKinds = ruleKinds;
+        this.ruleActions = ruleActions;
+        this.keywords = keywords;
+        this.runMasks = runSkipping ? computeRunMasks() : null;
+    }
+
+    /**
+     * @param enabled 是否对自环状态进行逐字跳过; 不跳过时每个字节都按状态转移表逐个扫描
+     * @return 与本表相同但按要求进行或不进行逐字跳过的自动机
+     */
+    public LexerTable withRunSkipping(boolean enabled) {
+        return enabled == isRunSkipping() ? this : new LexerTable(charClass, unusedClass, next, accept, ruleKinds, ruleActions, keywords, enabled);
+    }
+
+    /**
+     * @return 是否会对自环状态进行逐字跳过
+     */
+    public boolean isRunSkipping() {
+        return runMasks != null;
+    }
+
+    /**
+     * 找出每个状态的自环字符集 (即使自动机停留在该状态的 ASCII 字符), 将其表示为若干个闭区间, 再转为逐字比较用的加数
+     * <br>
+     * 对区间 [lo, hi], 一个字节的低 7 位加上 0x80 - lo 后最高位为 1 当且仅当其不小于 lo, 加上 0x7F - hi 后最高位为 1
+     * 当且仅当其大于 hi, 且两者都不会向相邻字节进位. 因此一个 long 可以同时判断 8 个字节是否落在区间内.
+     */
+    private long[][] computeRunMasks() {
+        final var masks = new long[next.length][];
+        for (int state = START; state < next.length; state++) {
+            final var ranges = new ArrayList<int[]>();
+            for (int ch = 0; ch < 128; ch++) {
+                if (next[state][charClass[ch]] != state) {
+                    continue;
+                }
+                if (!ranges.isEmpty() && ranges.get(ranges.size() - 1)[1] == ch - 1) {
+                    ranges.get(ranges.size() - 1)[1] = ch;
+                } else {
+                    ranges.add(new int[]{ch, ch});
+                }
+            }
+
+            // 区间过多时逐字比较反而更慢, 退回逐字节扫描
+            if (ranges.isEmpty() || ranges.size() > MAX_RUN_RANGES) {
+                continue;
+            }
+
+            final var stateMasks = new long[ranges.size() * 2];
+            for (int i = 0; i < ranges.size(); i++) {
+                stateMasks[2 * i] = (0x80L - ranges.get(i)[0]) * ONES;
+                stateMasks[2 * i + 1] = (0x7FL - ranges.get(i)[1]) * ONES;
+            }
+            masks[state] = stateMasks;
+        }
+        return masks;
+    }
+
+    private static final int MAX_RUN_RANGES = 4;
+    static final long ONES = 0x0101010101010101L;
+    static final long HIGH_BITS = 0x8080808080808080L;
+    static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    /**
+     * @param ch 输入字节 (0 ~ 255)
+     * @return 该字节所属的字符类
+     */
+    public int classOf(int ch) {
+        return ch < 128 ? charClass[ch] : unusedClass;
+    }
+
+    /**
+     * @return 识别出标识符后用于区分关键字的完美哈希表
+     */
+    public KeywordTable getKeywords() {
+        return keywords;
+    }
+
+    /**
+     * @return 状态数 (含死状态)
+     */
+    public int stateCount() {
+        return next.length;
+    }
+
+    /**
+     * @return 字符类数
+     */
+    public int classCount() {
+        return next[0].length;
+    }
+
+    // 以下成员供同包的扫描器在内层循环中直接访问
+
+    /**
+     * ASCII 码到字符类编号的映射
+     */
+    final byte[] charClass;
+
+    /**
+     * 不被任何规则使用的字符所在的字符类, 非 ASCII 字符也归入此类
+     */
+    final int unusedClass;
+
+    /**
+     * 状态转移表, 下标为 [状态][字符类]
+     */
+    final int[][] next;
+
+    /**
+     * 每个状态接受的规则编号, 非接受状态为 -1
+     */
+    final int[] accept;
+
+    /**
+     * 每条规则对应的 token 类型, 被丢弃的规则为 null
+     */
+    final TokenKind[] ruleKinds;
+
+    /**
+     * 每条规则在接受后的动作
+     */
+    final TokenAction[] ruleActions;
+
+    /**
+     * 关键字表, 标识符规则接受的词素需先在其中查找
+     */
+    final KeywordTable keywords;
+
+    /**
+     * 每个状态自环字符集的逐字比较加数, 依次为各区间的 (下界加数, 上界加数); 无法逐字跳过的状态为 null.
+     * 不进行逐字跳过时整个数组为 null
+     */
+    final long[][] runMasks;
+}
@@ -1,15 +1,24 @@
 package cn.edu.hitsz.compiler.lexer;
 
 import cn.edu.hitsz.compiler.NotImplementedException;
+import cn.edu.hitsz.compiler.symtab.ConcurrentSymbolTable;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 import com.sun.jdi.event.StepEvent;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.format.SignStyle;
 import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
-import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.stream.StreamSupport;
 
 /**
@@ -25,21 +34,34 @@ public class LexicalAnalyzer {
 
     public LexicalAnalyzer(SymbolTable symbolTable) {
         this.symbolTable = symbolTable;
+
+        // 由码点文件中的 token 类型生成词法分析自动机
+        final var generator = new LexerGenerator();
+        generator.run();
+        this.lexerTable = generator.getTable();
     }
 
+    private LexerTable lexerTable;
+
     /**
-     * DFA状态
+     * 设置扫描标识符, 常数与空白时是否一次比较 8 个字节以跳过整串同类字符 (默认关闭). 关闭后每个字节都逐个查转移表,
+     * 两种方式的分析结果完全相同
+     *
+     * @param enabled 是否开启
      */
-    private enum State{
-        S0, S1, S2, S3, S4, S5
+    public void setRunSkipping(boolean enabled) {
+        lexerTable = lexerTable.withRunSkipping(enabled);
     }
 
-
     /**
      * 读入文件的缓冲和输出的tokens列表
      */
-    private List<String> lines;
-    private List<Token> tokens;
+    private ByteBuffer source;
+    private TokenBuffer tokens;
+    /**
+     * 按需分析时, 已被某次迭代扫描过 (其中的标识符已增加过引用) 的范围的末尾
+     */
+    private int retainedEnd;
 
 
     /**
@@ -51,118 +73,570 @@ public class LexicalAnalyzer {
         // 词法分析前的缓冲区实现
         // 可自由实现各类缓冲区
         // 或直接采用完整读入方法
-        lines = FileUtils.readLines(path);
+        source = ByteBuffer.wrap(FileUtils.readBytes(path));
+        tokens = null;
+        lineStarts = null;
+        text = null;
+        retainedEnd = 0;
         //throw new NotImplementedException();
     }
 
+    /**
+     * 以内存映射的方式加载文件内容, 此后的扫描将直接在映射的字节上进行
+     * <br>
+     * 源文件不会被读入堆中, 其占用的内存由操作系统的页缓存决定; 常数与运算符的词素也不会被立刻转为字符串,
+     * 只有在需要时 (如调用 {@link Token#getText()} 或插入符号表) 才会解码
+     *
+     * @param path 路径
+     */
+    public void loadFileMapped(String path) {
+        source = FileUtils.mapFile(path);
+        tokens = null;
+        lineStarts = null;
+        text = null;
+        retainedEnd = 0;
+    }
+
     /**
      * 执行词法分析, 准备好用于返回的 token 列表 <br>
      * 需要维护实验一所需的符号表条目, 而得在语法分析中才能确定的符号表条目的成员可以先设置为 null
      */
     public void run() {
-        // 自动机实现的词法分析过程
-        tokens = new ArrayList<>();
-        int start, current;  //两个指针
-        State curState = State.S0;
-        for(String line : lines){
-            start = 0;
-            current = 0;
-            for(; start < line.length() && current < line.length(); ){
-                    char ch = line.charAt(current);
-                    switch (curState) {
-                        case S0 -> {
-                            if (Character.isSpaceChar(ch)) {
-                                curState = State.S0;
-                                start++;
-                                current++;
-                            } else if (Character.isAlphabetic(ch)) {
-                                curState = State.S1;
-                                current++;
-                            } else if (Character.isDigit(ch) && ch != '0') {
-                                curState = State.S3;
-                                current++;
-                            } else {
-                                curState = State.S5;
-                            }
-                        }
-                        case S1 -> {
-                            if (Character.isDigit(ch) || Character.isAlphabetic(ch)) {
-                                curState = State.S1;
-                                current++;
-                            } else {
-                                curState = State.S2;
-                            }
-
-                        }
-                        case S3 -> {
-                            if (Character.isDigit(ch)) {
-                                curState = State.S3;
-                                current++;
-                            } else {
-                                curState = State.S4;
-                            }
-
-                        }
-                        //关键字或者标识符的接受态
-                        case S2 -> {
-                            String sub = line.substring(start, current);
-                            if ("int".equals(sub) || "return".equals(sub)) {
-                                tokens.add(Token.simple(sub));
-                            } else {
-                                tokens.add(Token.normal("id", sub));
-                                symbolTable.add(sub);
-                            }
-                            start = current;
-                            curState = State.S0;
-                        }
-                        //整型常数接受态
-                        case S4 -> {
-                            String sub = line.substring(start, current);
-                            tokens.add(Token.normal("IntConst", sub));
-                            start = current;
-                            curState = State.S0;
-                        }
-                        //运算符（不含==， &&等）， 分界符的接受态
-                        case S5 -> {
-                            String sub = line.substring(start, ++current);
-                            if (";".equals(sub)) {
-                                tokens.add(Token.simple("Semicolon"));
-                            } else {
-                                tokens.add(Token.simple(sub));
-                            }
-                            start = current;
-                            curState = State.S0;
-                        }
-                        default -> {
-                            curState = State.S0;
-                        }
+        discardLineIndex();
+        // 表驱动的自动机实现的词法分析过程, 见 TokenScanner 与 LexerGenerator
+        // 结果以并列数组的形式存放, 不为每个词素构造 Token 对象
+        tokens = new TokenBuffer(source, source.limit() / 4);
+        new TokenScanner(source, lexerTable, symbolTable).scanInto(tokens);
+        tokens.add(TokenKind.eof().getCode(), source.limit(), 0);
+//        throw new NotImplementedException();
+    }
+
+    /**
+     * 以并行的方式执行词法分析, 其结果 (包括符号表) 与 run 完全相同
+     * <br>
+     * 源文件在 "行末的分号" 处被切分为若干块, 这样的位置一定不在任何词素的中间. 各块在 ForkJoin 池上分别进行分析,
+     * 识别出的标识符先只记录位置, 待所有块完成后再按块的顺序依次加入符号表并填上编号, 最后将各块的 token 序列按顺序拼接.
+     * 若符号表是 {@link ConcurrentSymbolTable}, 各块在分析时便直接将标识符加入符号表.
+     *
+     * @param pool 执行分析的线程池
+     */
+    public void runParallel(ForkJoinPool pool) {
+        discardLineIndex();
+        final var boundaries = findChunkBoundaries(pool.getParallelism());
+        final var results = new TokenBuffer[boundaries.length - 1];
+        pool.invoke(new ChunkTask(boundaries, 0, results.length, results));
+
+        if (!(symbolTable instanceof ConcurrentSymbolTable)) {
+            final var identifierCode = TokenKind.fromString("id").getCode();
+            for (final var chunk : results) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    if (chunk.kindCode(i) == identifierCode) {
+                        chunk.setId(i, symbolTable.add(source, chunk.start(i), chunk.length(i)).getId());
                     }
+                }
             }
         }
-        tokens.add(Token.eof());
 
-//        throw new NotImplementedException();
+        final var total = Arrays.stream(results).mapToInt(TokenBuffer::size).sum();
+        tokens = new TokenBuffer(source, total + 1);
+        for (final var chunk : results) {
+            tokens.addAll(chunk);
+        }
+        tokens.add(TokenKind.eof().getCode(), source.limit(), 0);
     }
 
     /**
-     * 获得词法分析的结果, 保证在调用了 run 方法之后调用
+     * 增量地应用一次按行的编辑: 将 [fromLine, toLine) 行替换为 replacement, 只重新分析受影响的行
+     * <br>
+     * 由于词素不会跨行, 被替换的行之外的 token 都不需要重新分析, 编辑前的 token 被原样保留.
+     * 新识别出的标识符加入符号表, 被删去的标识符释放引用, 引用数降为 0 的条目会从符号表中删除.
+     * 若 replacement 不以换行结尾, 它会与下一行连成一行, 此时重新分析的范围会一直延伸到下一个换行.
+     * <br>
+     * 第一次编辑时, 源文件被复制到一个可增长的缓冲区中并建立行索引. 此后源文件以片段表的形式保存: 每次编辑把需要重新分析的
+     * 几行文本追加到缓冲区末尾, 再用一个新片段替换掉原先的几行, 其余的字节, 行首与 token 都不移动, 位置也不需要平移
+     * (token 序列同样以片段表替换, 见 {@link TokenBuffer#splice}). 因此每次编辑的代价与编辑的大小及片段数有关,
+     * 与文件的大小无关. 片段数超过行数的平方根, 或被替换下的文本多于仍在使用的文本时, 缓冲区按文件顺序重新整理一次,
+     * 摊到每次编辑上的开销同样与文件大小无关.
      *
-     * @return Token 列表
+     * @param fromLine    被替换的第一行, 从 0 开始
+     * @param toLine      被替换的最后一行的下一行
+     * @param replacement 替换上的文本
+     * @return 该编辑对 token 序列造成的改变
+     */
+    public TokenEdit relex(int fromLine, int toLine, String replacement) {
+        if (tokens == null) {
+            throw new RuntimeException("Lexer has not run yet");
+        }
+        ensureLineIndex();
+        if (fromLine < 0 || toLine < fromLine || toLine > lineCount) {
+            throw new RuntimeException("Illegal line range [%d, %d)".formatted(fromLine, toLine));
+        }
+
+        // 需要重新分析的行 [first, last): 在文件末尾追加时退回到最后一行的行首;
+        // 替换后的文本不以换行结尾时, 向后并入下一行, 直到以换行结尾或到达文件末尾
+        final var inserted = replacement.getBytes(StandardCharsets.UTF_8);
+        final var first = Math.min(fromLine, lineCount - 1);
+        var last = toLine;
+        final var scanStart = used;
+        for (int line = first; line < fromLine; line++) {
+            appendLine(line);
+        }
+        ensureCapacity(inserted.length);
+        System.arraycopy(inserted, 0, text, used, inserted.length);
+        used += inserted.length;
+        while (used > scanStart && text[used - 1] != '\n' && last < lineCount) {
+            appendLine(last++);
+        }
+        final var scanEnd = used;
+        source = ByteBuffer.wrap(text, 0, used);
+
+        // 重新分析追加的文本, 新的标识符在此时加入符号表
+        final var replacementTokens = new TokenBuffer(source, Math.max(16, (scanEnd - scanStart) / 4));
+        new TokenScanner(source, lexerTable, symbolTable, scanStart, scanEnd).scanInto(replacementTokens);
+
+        // 被删去的标识符按编号释放引用, 需在替换之前进行
+        final var firstToken = tokenAtLine(first);
+        final var lastToken = tokenAtLine(last);
+        final var identifierCode = TokenKind.fromString("id").getCode();
+        for (int i = firstToken; i < lastToken; i++) {
+            if (tokens.kindCode(i) == identifierCode) {
+                symbolTable.release(tokens.id(i));
+            }
+        }
+
+        // 追加的文本中的行: 伸展到文件末尾时, 最后一个换行之后 (可能为空) 的部分也是一行
+        final var newLines = new int[scanEnd - scanStart + 1];
+        var newLineCount = 0;
+        if (scanEnd > scanStart || last == lineCount) {
+            newLines[newLineCount++] = scanStart;
+        }
+        for (int i = scanStart; i < scanEnd; i++) {
+            if (text[i] == '\n' && (i + 1 < scanEnd || last == lineCount)) {
+                newLines[newLineCount++] = i + 1;
+            }
+        }
+
+        liveLength += scanEnd - scanStart;
+        for (int line = first; line < last; line++) {
+            liveLength -= lineEnd(line) - lineStartOf(line);
+        }
+        replaceLines(first, last, firstToken, lastToken, newLines, newLineCount, replacementTokens.size(), scanEnd);
+        tokens.splice(firstToken, lastToken, replacementTokens);
+        if ((long) pieceCount * pieceCount > lineCount + 4096 || used - liveLength > liveLength + 65536
+            || lineStoreUsed - lineCount > lineCount + 4096) {
+            compactSource();
+        }
+
+        return new TokenEdit(firstToken, lastToken - firstToken, replacementTokens.size());
+    }
+
+    /**
+     * 编辑过的源文件: 可增长的缓冲区, 其中 [0, used) 已被使用. 缓冲区中的字节一经写入便不再修改,
+     * 因此之前得到的 {@link Token} 与 {@link #source} 始终有效
+     */
+    private byte[] text;
+    private int used;
+    /**
+     * 文件的实际长度
+     */
+    private int liveLength;
+    /**
+     * 行首在缓冲区中的位置, 仅在第一次增量分析时建立; 只在末尾追加, 其中 [0, lineStoreUsed) 已被使用
+     */
+    private int[] lineStarts;
+    private int lineStoreUsed;
+    private int lineCount;
+    /**
+     * 片段表: 第 p 个片段由 lineStarts 中从 pieceLine[p] 开始的 pieceLines[p] 行组成,
+     * 这些行在缓冲区中是连续的, 在 pieceEnd[p] 处结束, 包含 pieceTokens[p] 个 token (不计 EOF).
+     * pieceFirstLine 与 pieceFirstToken 是片段在文件中的第一行与第一个 token 的下标
+     */
+    private int[] pieceLine;
+    private int[] pieceLines;
+    private int[] pieceTokens;
+    private int[] pieceEnd;
+    private int[] pieceFirstLine;
+    private int[] pieceFirstToken;
+    private int pieceCount;
+
+    private void ensureLineIndex() {
+        if (lineStarts != null) {
+            return;
+        }
+
+        final var limit = source.limit();
+        text = new byte[limit + (limit >> 1) + 64];
+        source.get(0, text, 0, limit);
+        used = limit;
+        liveLength = limit;
+        source = ByteBuffer.wrap(text, 0, used);
+        tokens.setSource(source);
+
+        lineStarts = new int[16];
+        lineCount = 1;
+        for (int i = 0; i < limit; i++) {
+            if (text[i] == '\n') {
+                if (lineCount == lineStarts.length) {
+                    lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+                }
+                lineStarts[lineCount++] = i + 1;
+            }
+        }
+        lineStoreUsed = lineCount;
+        setSinglePiece(tokens.size() - 1);
+    }
+
+    /**
+     * @return 第 line 行所在的片段
+     */
+    private int pieceOf(int line) {
+        int low = 0;
+        int high = pieceCount - 1;
+        while (low < high) {
+            final var middle = (low + high + 1) >>> 1;
+            if (pieceFirstLine[middle] <= line) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return 第 line 行在缓冲区中的起始位置
+     */
+    private int lineStartOf(int line) {
+        final var piece = pieceOf(line);
+        return lineStarts[pieceLine[piece] + line - pieceFirstLine[piece]];
+    }
+
+    /**
+     * @return 第 line 行在缓冲区中的结束位置 (包含其换行)
+     */
+    private int lineEnd(int line) {
+        final var piece = pieceOf(line);
+        final var local = line - pieceFirstLine[piece];
+        return local + 1 < pieceLines[piece] ? lineStarts[pieceLine[piece] + local + 1] : pieceEnd[piece];
+    }
+
+    /**
+     * @return 第 line 行的第一个 token 的下标; line 等于行数时为 EOF 的下标
+     */
+    private int tokenAtLine(int line) {
+        if (line == lineCount) {
+            return tokens.size() - 1;
+        }
+
+        final var piece = pieceOf(line);
+        final var local = line - pieceFirstLine[piece];
+        if (local == 0) {
+            return pieceFirstToken[piece];
+        }
+
+        // 同一片段中的 token 在缓冲区中的位置是递增的
+        final var offset = lineStarts[pieceLine[piece] + local];
+        int low = pieceFirstToken[piece];
+        int high = low + pieceTokens[piece];
+        while (low < high) {
+            final var middle = (low + high) >>> 1;
+            if (tokens.start(middle) < offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 将第 line 行的文本追加到缓冲区末尾
+     */
+    private void appendLine(int line) {
+        final var start = lineStartOf(line);
+        final var length = lineEnd(line) - start;
+        ensureCapacity(length);
+        System.arraycopy(text, start, text, used, length);
+        used += length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (used + extra > text.length) {
+            text = Arrays.copyOf(text, used + extra + ((used + extra) >> 1));
+        }
+    }
+
+    /**
+     * 以新的片段替换 [first, last) 行: 新片段的行首为 newLines 的前 newLineCount 项, 在缓冲区的 end 处结束.
+     * 跨过 first 或 last 的片段被截为两半
+     */
+    private void replaceLines(int first, int last, int firstToken, int lastToken,
+                              int[] newLines, int newLineCount, int newTokens, int end) {
+        if (lineStoreUsed + newLineCount > lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, (lineStoreUsed + newLineCount) * 2);
+        }
+        System.arraycopy(newLines, 0, lineStarts, lineStoreUsed, newLineCount);
+
+        final var capacity = pieceCount + 2;
+        final var newLine = new int[capacity];
+        final var newCounts = new int[capacity];
+        final var newTokenCounts = new int[capacity];
+        final var newEnd = new int[capacity];
+        var count = 0;
+        for (int p = 0; p < pieceCount && pieceFirstLine[p] < first; p++) {
+            final var lines = Math.min(pieceLines[p], first - pieceFirstLine[p]);
+            newLine[count] = pieceLine[p];
+            newCounts[count] = lines;
+            newTokenCounts[count] = Math.min(pieceTokens[p], firstToken - pieceFirstToken[p]);
+            newEnd[count++] = lines == pieceLines[p] ? pieceEnd[p] : lineStarts[pieceLine[p] + lines];
+        }
+        if (newLineCount > 0) {
+            newLine[count] = lineStoreUsed;
+            newCounts[count] = newLineCount;
+            newTokenCounts[count] = newTokens;
+            newEnd[count++] = end;
+        }
+        for (int p = 0; p < pieceCount; p++) {
+            final var skipped = last - pieceFirstLine[p];
+            if (skipped >= pieceLines[p]) {
+                continue;
+            }
+            final var skippedLines = Math.max(0, skipped);
+            final var skippedTokens = Math.max(0, lastToken - pieceFirstToken[p]);
+            newLine[count] = pieceLine[p] + skippedLines;
+            newCounts[count] = pieceLines[p] - skippedLines;
+            newTokenCounts[count] = pieceTokens[p] - skippedTokens;
+            newEnd[count++] = pieceEnd[p];
+        }
+
+        lineStoreUsed += newLineCount;
+        lineCount += newLineCount - (last - first);
+        pieceLine = newLine;
+        pieceLines = newCounts;
+        pieceTokens = newTokenCounts;
+        pieceEnd = newEnd;
+        pieceCount = count;
+        indexPieces();
+    }
+
+    /**
+     * 重新计算各片段在文件中的第一行与第一个 token 的下标
+     */
+    private void indexPieces() {
+        pieceFirstLine = new int[pieceCount];
+        pieceFirstToken = new int[pieceCount];
+        for (int p = 1; p < pieceCount; p++) {
+            pieceFirstLine[p] = pieceFirstLine[p - 1] + pieceLines[p - 1];
+            pieceFirstToken[p] = pieceFirstToken[p - 1] + pieceTokens[p - 1];
+        }
+    }
+
+    private void setSinglePiece(int tokenCount) {
+        pieceLine = new int[]{0};
+        pieceLines = new int[]{lineCount};
+        pieceTokens = new int[]{tokenCount};
+        pieceEnd = new int[]{liveLength};
+        pieceCount = 1;
+        indexPieces();
+    }
+
+    /**
+     * 按文件顺序重新整理缓冲区与行索引, 丢弃被替换下的文本, 并相应地平移各 token 的位置
+     */
+    private void compactSource() {
+        final var compacted = new byte[liveLength + (liveLength >> 1) + 64];
+        final var compactedLines = new int[Math.max(16, lineCount * 2)];
+        var offset = 0;
+        for (int p = 0; p < pieceCount; p++) {
+            final var begin = lineStarts[pieceLine[p]];
+            final var delta = offset - begin;
+            System.arraycopy(text, begin, compacted, offset, pieceEnd[p] - begin);
+            for (int i = 0; i < pieceLines[p]; i++) {
+                compactedLines[pieceFirstLine[p] + i] = lineStarts[pieceLine[p] + i] + delta;
+            }
+            tokens.shiftStarts(pieceFirstToken[p], pieceFirstToken[p] + pieceTokens[p], delta);
+            offset += pieceEnd[p] - begin;
+        }
+        final var eof = tokens.size() - 1;
+        tokens.shiftStarts(eof, eof + 1, liveLength - tokens.start(eof));
+
+        text = compacted;
+        used = liveLength;
+        lineStarts = compactedLines;
+        lineStoreUsed = lineCount;
+        setSinglePiece(eof);
+        source = ByteBuffer.wrap(text, 0, used);
+        tokens.setSource(source);
+    }
+
+    /**
+     * 丢弃增量分析的状态, 使 source 恰为当前的文件内容
+     */
+    private void discardLineIndex() {
+        if (lineStarts == null) {
+            return;
+        }
+        compactSource();
+        lineStarts = null;
+        text = null;
+    }
+
+    /**
+     * 每块的最小字节数, 小于它时拆分带来的开销将超过并行的收益
+     */
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
+
+    /**
+     * 将源文件切分为若干块, 切分点总是紧跟在某个 "分号 + 换行" 之后
+     *
+     * @return 各块的边界, 第 i 块为 [boundaries[i], boundaries[i + 1])
+     */
+    private int[] findChunkBoundaries(int parallelism) {
+        final var limit = source.limit();
+        // 块数取为并行度的数倍, 以便工作窃取能平衡各块的差异
+        final var chunkSize = Math.max(MIN_CHUNK_SIZE, limit / (parallelism * 4));
+
+        final var boundaries = new ArrayList<Integer>();
+        boundaries.add(0);
+        int position = chunkSize;
+        while (position < limit) {
+            // 向后寻找最近的行末分号, 允许分号与换行之间有空白
+            int semicolon = position;
+            int boundary = -1;
+            while (semicolon < limit && boundary < 0) {
+                if (source.get(semicolon) == ';') {
+                    int next = semicolon + 1;
+                    while (next < limit && (source.get(next) == ' ' || source.get(next) == '\t' || source.get(next) == '\r')) {
+                        next++;
+                    }
+                    if (next < limit && source.get(next) == '\n') {
+                        boundary = next + 1;
+                    }
+                }
+                semicolon++;
+            }
+
+            if (boundary < 0 || boundary >= limit) {
+                break;
+            }
+            boundaries.add(boundary);
+            position = boundary + chunkSize;
+        }
+        boundaries.add(limit);
+
+        return boundaries.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * 分析 [from, to) 范围内的各块, 范围中多于一块时对半拆分并行执行
+     */
+    private class ChunkTask extends RecursiveAction {
+        ChunkTask(int[] boundaries, int from, int to, TokenBuffer[] results) {
+            this.boundaries = boundaries;
+            this.from = from;
+            this.to = to;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                final var middle = (from + to) >>> 1;
+                invokeAll(new ChunkTask(boundaries, from, middle, results),
+                    new ChunkTask(boundaries, middle, to, results));
+                return;
+            }
+
+            final var begin = boundaries[from];
+            final var end = boundaries[from + 1];
+            final var chunk = new TokenBuffer(source, (end - begin) / 4);
+            final var scanner = symbolTable instanceof ConcurrentSymbolTable
+                ? new TokenScanner(source, lexerTable, symbolTable, begin, end)
+                : new TokenScanner(source, lexerTable, (buffer, offset, length) -> Token.NO_ID, begin, end);
+            scanner.scanInto(chunk);
+            results[from] = chunk;
+        }
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] boundaries;
+        private final int from;
+        private final int to;
+        private final TokenBuffer[] results;
+    }
+
+    /**
+     * 获得以并列数组存放的词法分析结果, 保证在调用了 run 方法之后调用
+     *
+     * @return token 序列
+     */
+    public TokenBuffer getTokenBuffer() {
+        if (tokens == null) {
+            throw new RuntimeException("Lexer has not run yet");
+        }
+
+        return tokens;
+    }
+
+    /**
+     * 获得词法分析的结果
+     * <br>
+     * 若已调用过 run 方法, 则返回其得到的完整 token 序列 (见 {@link #getTokenBuffer()}); 否则返回一个按需分析的序列, 其迭代器只在每次调用 next
+     * 时才向前识别一个 token, 完整的 Token 列表从不会被构造出来. 该序列 (以及再次调用本方法得到的序列) 可被多次迭代,
+     * 每次迭代都会从头重新扫描源文件; 但只有第一次扫描到某处的迭代才为该处的标识符增加引用, 其余的只查询其编号, 因此引用数仍等于标识符在源程序中出现的次数.
+     *
+     * @return Token 序列
      */
     public Iterable<Token> getTokens() {
         // 从词法分析过程中获取 Token 列表
         // 词法分析过程可以使用 Stream 或 Iterator 实现按需分析
         // 亦可以直接分析完整个文件
         // 总之实现过程能转化为一列表即可
-        return tokens;
+        if (tokens != null) {
+            return tokens;
+        }
+
+        final var source = this.source;
+        return () -> new TokenScanner(source, lexerTable, (buffer, offset, length) -> {
+            if (offset < retainedEnd) {
+                return symbolTable.lookup(buffer, offset, length);
+            }
+            retainedEnd = offset + length;
+            return symbolTable.add(buffer, offset, length).getId();
+        }, 0, source.limit());
 //        throw new NotImplementedException();
     }
 
     public void dumpTokens(String path) {
-        FileUtils.writeLines(
-            path,
-            StreamSupport.stream(getTokens().spliterator(), false).map(Token::toString).toList()
-        );
+        if (tokens == null) {
+            FileUtils.writeLines(
+                path,
+                StreamSupport.stream(getTokens().spliterator(), false).map(Token::toString).toList()
+            );
+            return;
+        }
+
+        // 已有完整的 token 序列时, 直接从源文件中复制文本字节, 不构造 Token 与字符串
+        try (final var out = new BufferedOutputStream(Files.newOutputStream(Paths.get(path)), 1 << 16)) {
+            final var newline = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+            // 与 Token.toString 的格式相同: (类型,文本), 以 "码点 + 1" 为下标预先生成 "(类型," 部分
+            final var kinds = TokenKind.allAllowedTokenKinds().values();
+            final var prefixes = new byte[kinds.stream().mapToInt(TokenKind::getCode).max().orElse(-1) + 2][];
+            for (final var kind : kinds) {
+                prefixes[kind.getCode() + 1] = ("(" + kind + ",").getBytes(StandardCharsets.UTF_8);
+            }
+
+            for (final var cursor = tokens.cursor(); cursor.isValid(); cursor.advance()) {
+                out.write(prefixes[cursor.kindCode() + 1]);
+                for (int i = 0; i < cursor.length(); i++) {
+                    out.write(cursor.byteAt(i));
+                }
+                out.write(')');
+                out.write(newline);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for " + path, e);
+        }
     }
 
 
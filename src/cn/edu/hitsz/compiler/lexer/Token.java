@@ -1,5 +1,8 @@
 package cn.edu.hitsz.compiler.lexer;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 /**
  * 词法单元的实现, 你不应该修改该文件
  * <br>
@@ -18,7 +21,7 @@ public class Token {
      * @return 代表 EOF 的 token
      */
     public static Token eof() {
-        return new Token(TokenKind.eof(), "");
+        return TokenKind.eof().getSimpleToken();
     }
 
     /**
@@ -30,11 +33,13 @@ public class Token {
     }
 
     /**
+     * 简单 token 不可变, 因此每种类型只有一个共享的实例, 构造时不分配任何对象
+     *
      * @param kind token 类型
      * @return 具有该 token 类型的一简单 token (不带其它文本表示, 比如标点/关键字)
      */
     public static Token simple(TokenKind kind) {
-        return normal(kind, "");
+        return kind.getSimpleToken();
     }
 
     /**
@@ -54,6 +59,29 @@ public class Token {
         return new Token(kind, text);
     }
 
+    /**
+     * 构造一个文本延迟解码的 token. 词素仍留在源文件缓冲区中, 直到第一次调用 {@link #getText()} 时才被转为字符串
+     *
+     * @param kind   token 类型
+     * @param source 源文件缓冲区 (按 ASCII 编码)
+     * @param offset 词素在缓冲区中的起始位置
+     * @param length 词素的字节数
+     * @return 具有该 token 类型的一正常 token
+     */
+    public static Token lazy(TokenKind kind, ByteBuffer source, int offset, int length) {
+        return new Token(kind, source, offset, length, NO_ID);
+    }
+
+    /**
+     * 构造一个文本延迟解码的标识符 token, 并带上其在符号表中的编号
+     *
+     * @param id 标识符的编号, 见 {@link #getId()}
+     * @see #lazy(TokenKind, ByteBuffer, int, int)
+     */
+    public static Token lazy(TokenKind kind, ByteBuffer source, int offset, int length, int id) {
+        return new Token(kind, source, offset, length, id);
+    }
+
     /**
      * @return 该 token 的类型的文本表示
      */
@@ -72,19 +100,72 @@ public class Token {
      * @return 该 token 的文本, 有可能为空字符串 (但恒不为 null)
      */
     public String getText() {
+        if (text == null) {
+            text = sliceText(source, offset, length);
+            source = null;
+        }
+
         return text;
     }
 
+    /**
+     * @return 标识符在符号表中的编号 (见 {@link cn.edu.hitsz.compiler.symtab.IdentifierInterner}), 其后的各阶段可以以它代替文本;
+     * 不是标识符或未经符号表分配编号时为 {@link #NO_ID}. 编号只在分配它的符号表中有意义
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return 将该 token 的文本按十进制整数解析; 文本尚未解码时直接从源文件缓冲区中解析, 不构造字符串
+     */
+    public int getIntValue() {
+        if (text == null) {
+            return TokenBuffer.parseInt(source, offset, length);
+        }
+
+        return Integer.parseInt(text);
+    }
+
     @Override
     public String toString() {
-        return "(%s,%s)".formatted(kind, text);
+        return "(%s,%s)".formatted(kind, getText());
+    }
+
+    /**
+     * 将缓冲区中的一段 ASCII 字节解码为字符串
+     */
+    static String sliceText(ByteBuffer source, int offset, int length) {
+        final var bytes = new byte[length];
+        source.get(offset, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
     }
 
     private Token(TokenKind kind, String text) {
         this.kind = kind;
         this.text = text;
+        this.id = NO_ID;
     }
 
+    private Token(TokenKind kind, ByteBuffer source, int offset, int length, int id) {
+        this.kind = kind;
+        this.source = source;
+        this.offset = offset;
+        this.length = length;
+        this.id = id;
+    }
+
+    /**
+     * 没有编号的 token 的编号
+     */
+    public static final int NO_ID = -1;
+
     private final TokenKind kind;
-    private final String text;
+    private String text;
+    private final int id;
+
+    // 延迟解码时词素所在的位置, 解码完成后 source 即被释放
+    private ByteBuffer source;
+    private int offset;
+    private int length;
 }
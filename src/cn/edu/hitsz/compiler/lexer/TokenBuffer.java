@@ -0,0 +1,458 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 以并列基本类型数组存储的 token 序列
+ * <br>
+ * 每个 token 只占用四个 int: 类型的码点 ({@link TokenKind#getCode()}), 文本在源文件缓冲区中的起始位置与长度,
+ * 以及标识符在符号表中的编号 (见 {@link Token#getId()}, 其它 token 为 {@link Token#NO_ID}).
+ * 不带文本的 token (关键字, 运算符, EOF 等) 的长度为 0. 相比于每个词素一个 {@link Token} 对象外加一个文本字符串,
+ * 这使得分析结果只需约 16 字节每 token.
+ * <br>
+ * 需要逐个读取 token 的消费者可以使用 {@link Cursor} 直接读取码点与位置而不构造任何对象;
+ * 若确实需要 {@link Token} 对象 (如通知语法分析的观察者), 可以通过 {@link #token(int)} 按需构造,
+ * 其文本直到调用 {@link Token#getText()} 时才会从源文件中解码.
+ * <br>
+ * 增量分析替换其中一段 token 时 (见 {@link #splice}), 新的 token 追加在数组末尾, 序列的逻辑顺序改由一张片段表描述:
+ * 每个片段是数组中连续的一段, 按下标查找时先二分找到所在的片段. 未经替换的序列没有片段表, 按下标直接访问数组.
+ */
+public final class TokenBuffer implements Iterable<Token> {
+    public TokenBuffer(ByteBuffer source) {
+        this(source, 1024);
+    }
+
+    public TokenBuffer(ByteBuffer source, int initialCapacity) {
+        this.source = source;
+        final var capacity = Math.max(initialCapacity, 16);
+        this.kinds = new int[capacity];
+        this.starts = new int[capacity];
+        this.lengths = new int[capacity];
+        this.ids = new int[capacity];
+    }
+
+    /**
+     * 在末尾追加一个 token
+     *
+     * @param kindCode token 类型的码点
+     * @param start    文本在源文件中的起始位置
+     * @param length   文本长度, 不带文本的 token 为 0
+     */
+    public void add(int kindCode, int start, int length) {
+        add(kindCode, start, length, Token.NO_ID);
+    }
+
+    /**
+     * 在末尾追加一个标识符 token
+     *
+     * @param id 标识符在符号表中的编号
+     * @see #add(int, int, int)
+     */
+    public void add(int kindCode, int start, int length, int id) {
+        flatten();
+        if (size == kinds.length) {
+            grow(size + (size >> 1));
+        }
+
+        kinds[size] = kindCode;
+        starts[size] = start;
+        lengths[size] = length;
+        ids[size] = id;
+        size++;
+        used = size;
+    }
+
+    /**
+     * 将另一个序列中的全部 token 按顺序追加到末尾
+     *
+     * @param other 文本位于同一个源文件中的 token 序列
+     */
+    public void addAll(TokenBuffer other) {
+        flatten();
+        other.flatten();
+        final var newSize = size + other.size;
+        if (newSize > kinds.length) {
+            grow(newSize);
+        }
+
+        System.arraycopy(other.kinds, 0, kinds, size, other.size);
+        System.arraycopy(other.starts, 0, starts, size, other.size);
+        System.arraycopy(other.lengths, 0, lengths, size, other.size);
+        System.arraycopy(other.ids, 0, ids, size, other.size);
+        size = newSize;
+        used = size;
+    }
+
+    /**
+     * 用 replacement 中的 token 替换 [from, to) 范围内的 token
+     * <br>
+     * 用于增量词法分析: replacement 的文本应位于同一个源文件 (或其只在末尾追加过内容的新缓冲区) 中,
+     * 替换后本序列也转而指向 replacement 的源文件缓冲区. 新的 token 被追加到数组末尾, 其余 token 既不移动也不改变位置,
+     * 只有片段表被改写, 因此代价与替换的 token 数及片段数有关, 与序列的长度无关. 片段数超过序列长度的平方根,
+     * 或被替换下的 token 多于仍在使用的 token 时, 数组按逻辑顺序重新整理一次, 这一开销摊到每次替换上同样与序列长度无关.
+     *
+     * @param from        被替换的第一个 token 的下标
+     * @param to          被替换的最后一个 token 的下一个下标
+     * @param replacement 新的 token
+     */
+    public void splice(int from, int to, TokenBuffer replacement) {
+        replacement.flatten();
+        final var inserted = replacement.size;
+        if (used + inserted > kinds.length) {
+            grow(used + inserted + ((used + inserted) >> 1));
+        }
+        final var physical = used;
+        System.arraycopy(replacement.kinds, 0, kinds, physical, inserted);
+        System.arraycopy(replacement.starts, 0, starts, physical, inserted);
+        System.arraycopy(replacement.lengths, 0, lengths, physical, inserted);
+        System.arraycopy(replacement.ids, 0, ids, physical, inserted);
+        used += inserted;
+        source = replacement.source;
+
+        if (pieceCount == 0) {
+            pieceFirst = new int[]{0};
+            pieceStart = new int[]{0};
+            pieceCount = 1;
+        }
+
+        // 被替换范围之前的片段原样保留 (跨过 from 的片段其长度由下一个片段的起点隐含地截断),
+        // 其后是新的片段, 再后是被替换范围之后的片段, 它们的逻辑起点平移 delta
+        final var delta = inserted - (to - from);
+        final var newFirst = new int[pieceCount + 2];
+        final var newStart = new int[pieceCount + 2];
+        var count = 0;
+        for (int p = 0; p < pieceCount && pieceFirst[p] < from; p++) {
+            newFirst[count] = pieceFirst[p];
+            newStart[count++] = pieceStart[p];
+        }
+        if (inserted > 0) {
+            newFirst[count] = from;
+            newStart[count++] = physical;
+        }
+        for (int p = 0; p < pieceCount; p++) {
+            final var pieceEnd = p + 1 < pieceCount ? pieceFirst[p + 1] : size;
+            if (pieceEnd <= to) {
+                continue;
+            }
+            final var first = Math.max(pieceFirst[p], to);
+            newFirst[count] = first + delta;
+            newStart[count++] = pieceStart[p] + first - pieceFirst[p];
+        }
+
+        pieceFirst = newFirst;
+        pieceStart = newStart;
+        pieceCount = count;
+        size += delta;
+        if ((long) pieceCount * pieceCount > size + 4096 || used - size > size + 4096) {
+            flatten();
+        }
+    }
+
+    /**
+     * @return token 数量
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return token 文本所在的源文件缓冲区
+     */
+    public ByteBuffer getSource() {
+        return source;
+    }
+
+    public int kindCode(int index) {
+        return kinds[physical(index)];
+    }
+
+    public TokenKind kind(int index) {
+        return TokenKind.fromCode(kindCode(index));
+    }
+
+    public int start(int index) {
+        return starts[physical(index)];
+    }
+
+    public int length(int index) {
+        return lengths[physical(index)];
+    }
+
+    /**
+     * @return 第 index 个 token 的编号, 见 {@link Token#getId()}
+     */
+    public int id(int index) {
+        return ids[physical(index)];
+    }
+
+    /**
+     * 为第 index 个 token 设置编号, 用于在分析之后才统一加入符号表的场合
+     */
+    public void setId(int index, int id) {
+        ids[physical(index)] = id;
+    }
+
+    /**
+     * @return 第 index 个 token 的文本, 有可能为空字符串
+     */
+    public String text(int index) {
+        final var i = physical(index);
+        return lengths[i] == 0 ? "" : Token.sliceText(source, starts[i], lengths[i]);
+    }
+
+    /**
+     * @return 将第 index 个 token 构造为 Token 对象, 其文本延迟解码
+     */
+    public Token token(int index) {
+        final var i = physical(index);
+        final var kind = TokenKind.fromCode(kinds[i]);
+        if (kind == TokenKind.eof()) {
+            return Token.eof();
+        }
+
+        return lengths[i] == 0 ? Token.simple(kind) : Token.lazy(kind, source, starts[i], lengths[i], ids[i]);
+    }
+
+    /**
+     * 将 [from, to) 范围内 token 的起始位置平移 delta, 用于源文件缓冲区被重新整理之后
+     */
+    void shiftStarts(int from, int to, int delta) {
+        var index = from;
+        while (index < to) {
+            // 逐个片段地平移, 片段内的 token 在数组中是连续的
+            final var begin = physical(index);
+            final var length = Math.min(to, pieceCount == 0 ? size : pieceEnd(index)) - index;
+            for (int i = begin; i < begin + length; i++) {
+                starts[i] += delta;
+            }
+            index += length;
+        }
+    }
+
+    /**
+     * 改为指向另一个源文件缓冲区, 其中 token 的位置应与原先相同 (或已由 {@link #shiftStarts} 调整过)
+     */
+    void setSource(ByteBuffer source) {
+        this.source = source;
+    }
+
+    /**
+     * @return 第 index 个 token 在数组中的位置
+     */
+    private int physical(int index) {
+        if (pieceCount == 0) {
+            return index;
+        }
+
+        // 最后一个逻辑起点不大于 index 的片段
+        int low = 0;
+        int high = pieceCount - 1;
+        while (low < high) {
+            final var middle = (low + high + 1) >>> 1;
+            if (pieceFirst[middle] <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return pieceStart[low] + index - pieceFirst[low];
+    }
+
+    /**
+     * @return 第 index 个 token 所在片段之后第一个 token 的下标
+     */
+    private int pieceEnd(int index) {
+        int low = 0;
+        int high = pieceCount;
+        while (low < high) {
+            final var middle = (low + high) >>> 1;
+            if (pieceFirst[middle] <= index) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low < pieceCount ? pieceFirst[low] : size;
+    }
+
+    /**
+     * 按逻辑顺序重新整理数组并丢弃片段表
+     */
+    private void flatten() {
+        if (pieceCount == 0) {
+            return;
+        }
+
+        final var capacity = Math.max(16, size + (size >> 1));
+        final var newKinds = new int[capacity];
+        final var newStarts = new int[capacity];
+        final var newLengths = new int[capacity];
+        final var newIds = new int[capacity];
+        for (int p = 0; p < pieceCount; p++) {
+            final var length = (p + 1 < pieceCount ? pieceFirst[p + 1] : size) - pieceFirst[p];
+            System.arraycopy(kinds, pieceStart[p], newKinds, pieceFirst[p], length);
+            System.arraycopy(starts, pieceStart[p], newStarts, pieceFirst[p], length);
+            System.arraycopy(lengths, pieceStart[p], newLengths, pieceFirst[p], length);
+            System.arraycopy(ids, pieceStart[p], newIds, pieceFirst[p], length);
+        }
+
+        kinds = newKinds;
+        starts = newStarts;
+        lengths = newLengths;
+        ids = newIds;
+        used = size;
+        pieceFirst = null;
+        pieceStart = null;
+        pieceCount = 0;
+    }
+
+    /**
+     * @return 一个从第一个 token 开始的游标
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * 逐个按 Token 对象读取. 只在确实需要 Token 对象时使用, 否则请使用 {@link #cursor()}
+     */
+    @Override
+    public Iterator<Token> iterator() {
+        return new Iterator<>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public Token next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                return token(index++);
+            }
+        };
+    }
+
+    /**
+     * 在 token 序列上移动的游标. 游标读取当前 token 的各个成员时不构造任何对象
+     */
+    public final class Cursor {
+        private int index = 0;
+
+        private Cursor() {
+        }
+
+        /**
+         * @return 游标是否还指向一个 token
+         */
+        public boolean isValid() {
+            return index < size;
+        }
+
+        /**
+         * 移动到下一个 token
+         */
+        public void advance() {
+            index++;
+        }
+
+        /**
+         * @return 当前 token 在序列中的下标
+         */
+        public int index() {
+            return index;
+        }
+
+        public int kindCode() {
+            return TokenBuffer.this.kindCode(index);
+        }
+
+        public int start() {
+            return TokenBuffer.this.start(index);
+        }
+
+        public int length() {
+            return TokenBuffer.this.length(index);
+        }
+
+        public int id() {
+            return TokenBuffer.this.id(index);
+        }
+
+        /**
+         * @return 当前 token 的文本在源文件中的第 i 个字节
+         */
+        public byte byteAt(int i) {
+            return source.get(start() + i);
+        }
+
+        /**
+         * @return 将当前 token 的文本按十进制整数解析, 不构造字符串
+         */
+        public int intValue() {
+            return parseInt(source, start(), length());
+        }
+
+        /**
+         * @return 将当前 token 构造为 Token 对象
+         */
+        public Token token() {
+            return TokenBuffer.this.token(index);
+        }
+    }
+
+    /**
+     * 将缓冲区中的一段十进制数字直接解析为整数
+     */
+    static int parseInt(ByteBuffer source, int start, int length) {
+        if (length == 0) {
+            throw new NumberFormatException("Empty integer literal");
+        }
+
+        long value = 0;
+        for (int i = start; i < start + length; i++) {
+            final var digit = source.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Illegal integer literal at offset " + start);
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE) {
+                throw new NumberFormatException("Integer literal out of range at offset " + start);
+            }
+        }
+        return (int) value;
+    }
+
+    private void grow(int capacity) {
+        kinds = Arrays.copyOf(kinds, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+    }
+
+    private ByteBuffer source;
+    private int[] kinds;
+    private int[] starts;
+    private int[] lengths;
+    private int[] ids;
+    /**
+     * 序列的逻辑长度
+     */
+    private int size = 0;
+    /**
+     * 数组中已使用的长度, 没有片段表时与 size 相同
+     */
+    private int used = 0;
+    /**
+     * 片段表: 第 p 个片段在序列中的起点与在数组中的起点, 其长度到下一个片段的起点为止. 片段数为 0 表示没有片段表
+     */
+    private int[] pieceFirst;
+    private int[] pieceStart;
+    private int pieceCount = 0;
+}
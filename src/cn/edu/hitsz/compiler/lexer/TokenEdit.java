@@ -0,0 +1,12 @@
+package cn.edu.hitsz.compiler.lexer;
+
+/**
+ * 增量词法分析中, 一次编辑对 token 序列造成的改变: 下标 [firstToken, firstToken + oldCount) 范围内的 token
+ * 被替换为了 [firstToken, firstToken + newCount) 范围内的新 token, 其后的 token 保持不变 (仅位置被平移)
+ *
+ * @param firstToken 第一个被改变的 token 的下标
+ * @param oldCount   编辑前被删去的 token 数
+ * @param newCount   编辑后新插入的 token 数
+ */
+public record TokenEdit(int firstToken, int oldCount, int newCount) {
+}
@@ -29,6 +29,8 @@ public class TokenKind extends Term {
     // 允许用作 TokenKind 的 id 的字符串集合
     private static final Map<String, TokenKind> allowed = new HashMap<>();
     private static final TokenKind eof = new TokenKind("$", -1);
+    // 以 "码点 + 1" 为下标的 TokenKind 表, 使 EOF (码点 -1) 位于 0 号
+    private static TokenKind[] byCode = new TokenKind[0];
 
     /**
      * 从码点文件中读取允许的标识符集合
@@ -52,6 +54,12 @@ public class TokenKind extends Term {
 
         // EOF
         allowed.put("$", eof);
+
+        final var maxCode = allowed.values().stream().mapToInt(TokenKind::getCode).max().orElse(-1);
+        byCode = new TokenKind[maxCode + 2];
+        for (final var kind : allowed.values()) {
+            byCode[kind.getCode() + 1] = kind;
+        }
     }
 
     /**
@@ -86,6 +94,20 @@ public class TokenKind extends Term {
         return allowed.get(id);
     }
 
+    /**
+     * @param code 码点
+     * @return 具有该码点的 TokenKind, 只需一次数组访问
+     * @throws RuntimeException 码点文件尚未被读取, 或没有该码点的 TokenKind
+     */
+    public static TokenKind fromCode(int code) {
+        final var index = code + 1;
+        if (index < 0 || index >= byCode.length || byCode[index] == null) {
+            throw new RuntimeException("Illegal code: " + code);
+        }
+
+        return byCode[index];
+    }
+
     /**
      * @return 代表 EOF 的 TokenKind
      */
@@ -107,10 +129,21 @@ public class TokenKind extends Term {
         return code;
     }
 
+    /**
+     * @return 该类型共享的不带文本的 token
+     */
+    Token getSimpleToken() {
+        return simpleToken;
+    }
+
     private TokenKind(String id, int code) {
         super(id);
         this.code = code;
+        this.simpleToken = Token.normal(this, "");
     }
 
     private final int code;
+
+    // 不带文本的 token 不可变, 同一类型的所有这样的 token 共用此实例
+    private final Token simpleToken;
 }
@@ -0,0 +1,215 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 按需进行词法分析的扫描器
+ * <br>
+ * 扫描器直接在源文件的字节上 (按 ASCII) 运行 {@link LexerTable} 给出的自动机, 每次调用 {@link #next()} 只向前以最长匹配识别一个
+ * token, 并在识别出标识符时维护符号表. 源文件扫描完毕后会产生一个 EOF token, 随后迭代结束.
+ */
+class TokenScanner implements Iterator<Token> {
+    TokenScanner(ByteBuffer source, LexerTable table, SymbolTable symbolTable) {
+        this(source, table, symbolTable, 0, source.limit());
+    }
+
+    /**
+     * 构造只扫描源文件中 [from, to) 范围的扫描器, 识别出的标识符直接加入符号表
+     */
+    TokenScanner(ByteBuffer source, LexerTable table, SymbolTable symbolTable, int from, int to) {
+        this(source, table, (buffer, offset, length) -> symbolTable.add(buffer, offset, length).getId(), from, to);
+    }
+
+    /**
+     * 构造只扫描源文件中 [from, to) 范围的扫描器, 该范围的边界不能位于某个词素的中间
+     *
+     * @param identifiers 每识别出一个标识符时接收其位置并给出其编号
+     */
+    TokenScanner(ByteBuffer source, LexerTable table, IdentifierSink identifiers, int from, int to) {
+        this.source = source;
+        this.table = table;
+        this.identifiers = identifiers;
+        this.start = from;
+        this.limit = to;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !eofReturned;
+    }
+
+    @Override
+    public Token next() {
+        if (eofReturned) {
+            throw new NoSuchElementException();
+        }
+
+        final var rule = scan();
+        if (rule < 0) {
+            eofReturned = true;
+            return Token.eof();
+        }
+
+        final var kind = table.ruleKinds[rule];
+        return switch (table.ruleActions[rule]) {
+            case IDENTIFIER -> {
+                final var keyword = table.keywords.lookup(source, lexemeStart, lexemeEnd - lexemeStart);
+                yield keyword != null ? Token.simple(keyword)
+                    : Token.lazy(kind, source, lexemeStart, lexemeEnd - lexemeStart, addToSymbolTable());
+            }
+            // 词素留在缓冲区中延迟解码
+            case CONSTANT -> Token.lazy(kind, source, lexemeStart, lexemeEnd - lexemeStart);
+            default -> Token.simple(kind);
+        };
+    }
+
+    /**
+     * 扫描范围内剩余的全部源文件, 将 token 追加到 buffer 中, 过程中不构造 Token 对象. 末尾的 EOF 需由调用者自行追加
+     *
+     * @param buffer 存放结果的 token 序列
+     */
+    void scanInto(TokenBuffer buffer) {
+        for (int rule = scan(); rule >= 0; rule = scan()) {
+            final var length = lexemeEnd - lexemeStart;
+            switch (table.ruleActions[rule]) {
+                case IDENTIFIER -> {
+                    final var keyword = table.keywords.lookup(source, lexemeStart, length);
+                    if (keyword != null) {
+                        buffer.add(keyword.getCode(), lexemeStart, 0);
+                    } else {
+                        buffer.add(table.ruleKinds[rule].getCode(), lexemeStart, length, addToSymbolTable());
+                    }
+                }
+                case CONSTANT -> buffer.add(table.ruleKinds[rule].getCode(), lexemeStart, length);
+                default -> buffer.add(table.ruleKinds[rule].getCode(), lexemeStart, 0);
+            }
+        }
+    }
+
+    /**
+     * 跳过空白, 识别下一个词素并将其位置记录在 lexemeStart 与 lexemeEnd 中
+     *
+     * @return 接受该词素的规则编号; 已到达文件末尾时为 -1
+     */
+    private int scan() {
+        final var charClass = table.charClass;
+        final var next = table.next;
+        final var accept = table.accept;
+        final var runMasks = table.runMasks;
+
+        while (start < limit) {
+            // 一直运行自动机直到进入死状态, 途中记录最后一次经过接受状态的位置
+            int state = LexerTable.START;
+            int rule = -1;
+            int end = start;
+            for (int current = start; current < limit; current++) {
+                final int ch = source.get(current) & 0xFF;
+                state = next[state][ch < 128 ? charClass[ch] : table.unusedClass];
+                if (state == LexerTable.DEAD) {
+                    break;
+                }
+                // 进入自环状态后, 整串停留在该状态的字符可以一次跳过
+                if (runMasks != null && runMasks[state] != null) {
+                    current = skipRun(state, runMasks[state], current + 1) - 1;
+                }
+                if (accept[state] >= 0) {
+                    rule = accept[state];
+                    end = current + 1;
+                }
+            }
+
+            if (rule < 0) {
+                throw new RuntimeException("Illegal character '%c' at offset %d".formatted((char) (source.get(start) & 0xFF), start));
+            }
+
+            lexemeStart = start;
+            lexemeEnd = end;
+            start = end;
+            if (table.ruleActions[rule] != LexerTable.TokenAction.SKIP) {
+                return rule;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * 从 from 开始跳过所有使自动机停留在 state 的字节. 每次读入 8 个字节按区间逐字比较, 不足 8 个字节的末尾逐字节查表
+     *
+     * @param masks 该状态自环字符集的逐字比较加数, 见 {@link LexerTable#runMasks}
+     * @return 第一个不在自环字符集中的字节的位置, 或扫描范围的末尾
+     */
+    private int skipRun(int state, long[] masks, int from) {
+        // 大多数串都很短, 先逐字节判断开头的几个字节, 以免为只有一两个字节的串付出逐字比较的开销
+        int current = from;
+        final var scalarEnd = Math.min(limit, from + SCALAR_PREFIX);
+        while (current < scalarEnd && table.next[state][table.classOf(source.get(current) & 0xFF)] == state) {
+            current++;
+        }
+        if (current < scalarEnd) {
+            return current;
+        }
+
+        while (current + Long.BYTES <= limit) {
+            // ByteBuffer 默认为大端序, 因此 current 处的字节位于 word 的最高位
+            final var word = source.getLong(current);
+            final var low = word & LexerTable.LOW_BITS;
+            long inRun = 0;
+            for (int i = 0; i < masks.length; i += 2) {
+                inRun |= (low + masks[i]) & ~(low + masks[i + 1]);
+            }
+            // 非 ASCII 字节一律不在字符集中
+            inRun &= ~word & LexerTable.HIGH_BITS;
+
+            if (inRun != LexerTable.HIGH_BITS) {
+                return current + Long.numberOfLeadingZeros(~inRun & LexerTable.HIGH_BITS) / Byte.SIZE;
+            }
+            current += Long.BYTES;
+        }
+
+        while (current < limit && table.next[state][table.classOf(source.get(current) & 0xFF)] == state) {
+            current++;
+        }
+        return current;
+    }
+
+    /**
+     * 将当前词素作为标识符交给符号表 (或其它接收者)
+     *
+     * @return 标识符的编号
+     */
+    private int addToSymbolTable() {
+        return identifiers.accept(source, lexemeStart, lexemeEnd - lexemeStart);
+    }
+
+    /**
+     * 标识符的接收者, 通常是符号表
+     */
+    @FunctionalInterface
+    interface IdentifierSink {
+        /**
+         * @param source 源文件缓冲区
+         * @param offset 标识符的起始位置
+         * @param length 标识符的字节数
+         * @return 标识符的编号, 不分配编号时为 {@link Token#NO_ID}
+         */
+        int accept(ByteBuffer source, int offset, int length);
+    }
+
+    private static final int SCALAR_PREFIX = 4;
+
+    private final ByteBuffer source;
+    private final LexerTable table;
+    private final IdentifierSink identifiers;
+    private final int limit;
+
+    // 下一个词素的起始位置, 以及刚识别出的词素的范围
+    private int start;
+    private int lexemeStart = 0;
+    private int lexemeEnd = 0;
+    private boolean eofReturned = false;
+}
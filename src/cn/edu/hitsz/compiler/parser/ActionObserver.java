@@ -54,4 +54,14 @@ public interface ActionObserver {
      * @param table 符号表
      */
     void setSymbolTable(SymbolTable table);
+
+    /**
+     * 驱动程序使用消去了单位产生式链的分析表时 (见 {@link SyntaxAnalyzer#useDefaultReductions}), 被消去的体长为 1 的规约
+     * 只会补报给返回 true 的观察者. 若单位规约对该观察者没有任何作用, 可以返回 false 以省去这些通知.
+     *
+     * @return 是否需要收到单位规约的通知
+     */
+    default boolean wantsUnitReductions() {
+        return true;
+    }
 }
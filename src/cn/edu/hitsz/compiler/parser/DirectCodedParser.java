@@ -0,0 +1,129 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.PackedLRTable;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.Arrays;
+
+/**
+ * 直接编码的 LR 语法分析器的基类, 其子类由 {@link ParserGenerator} 根据分析表生成
+ * <br>
+ * 子类中每个状态是一个以 token 码点为分支的 switch, 移入的目标状态, 规约的产生式与 GOTO 都直接写在代码里, 分析时不再查表.
+ * 本类只负责维护状态栈与 token 游标, 并在移入, 规约与接受时通知观察者, 通知的参数与 {@link SyntaxAnalyzer} 完全相同.
+ * <br>
+ * 与 SyntaxAnalyzer 不同, 直接编码的分析器只接受 {@link TokenBuffer} 形式的 token 序列.
+ */
+public abstract class DirectCodedParser {
+    /**
+     * @param symbolTable 符号表
+     * @param table       生成该分析器时所用的分析表, 用于取出通知观察者时的状态对象
+     * @param stateCount  生成该分析器时分析表的状态数
+     */
+    protected DirectCodedParser(SymbolTable symbolTable, LRTable table, int stateCount) {
+        this.symbolTable = symbolTable;
+        this.packed = table.pack();
+        if (packed.stateCount() != stateCount) {
+            throw new RuntimeException("LR table does not match the generated parser");
+        }
+    }
+
+    /**
+     * 注册新的观察者
+     *
+     * @param observer 观察者
+     */
+    public void registerObserver(ActionObserver observer) {
+        observers = Arrays.copyOf(observers, observers.length + 1);
+        observers[observers.length - 1] = observer;
+        observer.setSymbolTable(symbolTable);
+    }
+
+    public void loadTokens(TokenBuffer tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * 分析整个 token 序列, 并在执行各动作时通知观察者
+     */
+    public abstract void run();
+
+    /**
+     * 从起始状态开始一次分析
+     */
+    protected final void begin(int initState) {
+        cursor = tokens.cursor();
+        top = 0;
+        stack[0] = initState;
+    }
+
+    /**
+     * 移入当前 token 并转移到 state
+     *
+     * @return state
+     */
+    protected final int shift(int state) {
+        push(state);
+        if (observers.length != 0) {
+            final var token = cursor.token();
+            for (final var observer : observers) {
+                observer.whenShift(packed.status(state), token);
+            }
+        }
+        cursor.advance();
+        return state;
+    }
+
+    /**
+     * 在已经弹出产生式体之后, 压入规约出的头部转移到的状态 state
+     *
+     * @return state
+     */
+    protected final int reduce(int state, Production production) {
+        push(state);
+        for (final var observer : observers) {
+            observer.whenReduce(packed.status(state), production);
+        }
+        return state;
+    }
+
+    /**
+     * 在状态 state 接受
+     *
+     * @return -1, 表示分析结束
+     */
+    protected final int accept(int state) {
+        for (final var observer : observers) {
+            observer.whenAccept(packed.status(state));
+        }
+        return -1;
+    }
+
+    protected final RuntimeException syntaxError(int state) {
+        return new RuntimeException("Syntax error at token %s in status %d".formatted(cursor.token(), state));
+    }
+
+    private void push(int state) {
+        if (++top == stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[top] = state;
+    }
+
+    private final SymbolTable symbolTable;
+    private final PackedLRTable packed;
+    private ActionObserver[] observers = new ActionObserver[0];
+    private TokenBuffer tokens;
+
+    /**
+     * 当前 token 的游标
+     */
+    protected TokenBuffer.Cursor cursor;
+    /**
+     * 状态栈与栈顶下标. 规约时子类直接减小 top 以弹出产生式体
+     */
+    protected int[] stack = new int[64];
+    protected int top;
+}
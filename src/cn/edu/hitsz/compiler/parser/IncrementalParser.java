@@ -0,0 +1,628 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.ir.IRValue;
+import cn.edu.hitsz.compiler.ir.IRVariable;
+import cn.edu.hitsz.compiler.ir.Instruction;
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.lexer.TokenEdit;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.PackedLRTable;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * 增量语法分析器, 在每次编辑后只重新分析被改动的语句
+ * <br>
+ * 文法的顶层是语句列表 {@code S_list -> S Semicolon S_list}, 分析树可以看作一条 S_list 的脊, 其上依次挂着各条语句的子树.
+ * 本类保留上一次分析的结果: 每条语句 (连同其后的 Semicolon) 为一段, 记录该段分析前的栈底状态与分析后的剩余栈,
+ * 该段规约出的产生式, 以及 {@link IRGenerator} 在该段上生成的指令. 词法分析器增量地应用一次编辑 ({@link LexicalAnalyzer#relex})
+ * 之后, 将其返回的 {@link TokenEdit} 交给 {@link #update}: 只有被改动的 token 所在的语句会被重新分析 (见 {@link ParseSegment}),
+ * 其余语句的结果原样复用. 若重新分析后的栈顶与下一条语句原先的栈底不同, 则继续重新分析下一条语句, 直到二者一致为止.
+ * <br>
+ * S_list 的脊是在 EOF 上进行的规约: 它从最后一条语句开始, 自顶向下依次弹出各语句的剩余栈. 因此脊也按语句分段 ({@link Block}):
+ * 每段的规约只取决于该语句的剩余栈, 其下方的栈顶状态, 以及其后的语句规约完后留在其上方的状态. 编辑之后只需从受影响的语句开始
+ * 向下重新计算, 直到某段的输入与原先相同为止; 对于右递归的语句列表, 这通常只涉及一两段.
+ * <br>
+ * 每次编辑除重新分析的语句之外, 只需对各语句的起始位置数组做整体的平移, 这是与语句数成正比但非常廉价的数组操作.
+ * <br>
+ * 规约列表与 IR 都是按语句拼接而成的视图, 与对编辑后的程序完整地运行 {@link SyntaxAnalyzer} 所得的结果完全相同.
+ * 每条语句的 IR 中的临时变量在段内从 $0 开始编号, 取出时再加上之前各语句的临时变量数, 从而与完整分析时的编号一致.
+ * 视图在下一次编辑之后失效.
+ * <br>
+ * 本类不进行语义分析, 被编辑的声明不会更新符号表中的类型. 若程序无法按语句切分, 则整个程序作为一段, 每次编辑都重新分析全部.
+ */
+public class IncrementalParser {
+    /**
+     * @param table           分析表
+     * @param tokens          词法分析器的 token 序列, 之后由词法分析器就地修改
+     * @param beginProduction 开始产生式, 接受时记入规约列表 (与 {@link ProductionCollector} 相同)
+     */
+    public IncrementalParser(LRTable table, TokenBuffer tokens, Production beginProduction) {
+        this.packed = table.pack();
+        this.tokens = tokens;
+        this.beginProduction = beginProduction;
+        this.separator = TokenKind.fromString("Semicolon").getCode();
+        this.eofColumn = packed.terminalColumn(TokenKind.eof().getCode());
+    }
+
+    /**
+     * 完整地分析整个 token 序列
+     */
+    public void parse() {
+        valid = false;
+        statements.clear();
+        final var eofIndex = tokens.size() - 1;
+        if (parseRange(0, eofIndex, packed.initState(), statements) >= 0 && rebuildSpine()) {
+            valid = true;
+            return;
+        }
+
+        // 无法按语句切分时, 将整个程序作为一段
+        statements.clear();
+        final var whole = parseStatement(0, eofIndex, packed.initState());
+        if (whole == null) {
+            throw syntaxError();
+        }
+        statements.add(whole);
+        if (!rebuildSpine()) {
+            throw syntaxError();
+        }
+        valid = true;
+    }
+
+    /**
+     * 在词法分析器应用一次编辑之后, 重新分析受影响的语句
+     *
+     * @param edit 该编辑对 token 序列造成的改变
+     */
+    public void update(TokenEdit edit) {
+        if (!valid) {
+            parse();
+            return;
+        }
+        valid = false;
+
+        final var count = statements.size();
+        final var delta = edit.newCount() - edit.oldCount();
+        final var oldEnd = edit.firstToken() + edit.oldCount();
+
+        // 第一条受影响的语句: 包含第一个被改动的 token 的语句. 在末尾追加时, 若最后一条语句没有以 Semicolon 结尾, 新的 token 将并入其中
+        var first = locate(tokenStarts, count, edit.firstToken());
+        if (first == count && count > 0 && tokens.kindCode(tokenStarts[count] - 1) != separator) {
+            first = count - 1;
+        }
+
+        // 受影响的语句之后的第一条语句; 重新分析的范围须以 Semicolon 结尾, 否则将下一条语句也并入
+        var last = first == count ? count : first + 1;
+        while (last < count && tokenStarts[last] < oldEnd) {
+            last++;
+        }
+        final var from = tokenStarts[first];
+        var to = tokenStarts[last] + delta;
+        while (last < count && to > from && tokens.kindCode(to - 1) != separator) {
+            last++;
+            to = tokenStarts[last] + delta;
+        }
+
+        final var replacement = new ArrayList<Statement>();
+        var state = parseRange(from, to, first == 0 ? packed.initState() : statements.get(first - 1).topState(), replacement);
+
+        // 之后的语句若原先的栈底与新的栈顶不同, 也需重新分析
+        while (state >= 0 && last < count && statements.get(last).bottom() != state) {
+            final var start = tokenStarts[last] + delta;
+            final var statement = parseStatement(start, start + statements.get(last).tokenCount(), state);
+            if (statement == null) {
+                state = -1;
+                break;
+            }
+            replacement.add(statement);
+            state = statement.topState();
+            last++;
+        }
+        if (state < 0) {
+            parse();
+            return;
+        }
+
+        // 替换语句, 新语句的脊暂时留空
+        final var end = first + replacement.size();
+        if (replacement.size() == last - first) {
+            for (int i = 0; i < replacement.size(); i++) {
+                statements.set(first + i, replacement.get(i));
+                blocks.set(first + i, null);
+            }
+        } else {
+            statements.subList(first, last).clear();
+            statements.addAll(first, replacement);
+            blocks.subList(first, last).clear();
+            blocks.addAll(first, Collections.nCopies(replacement.size(), null));
+        }
+
+        tokenStarts = spliceStarts(tokenStarts, count, first, last, lengths(first, end, Statement::tokenCount));
+        productionStarts = spliceStarts(productionStarts, count, first, last,
+            lengths(first, end, statement -> statement.productions().size()));
+        instructionStarts = spliceStarts(instructionStarts, count, first, last,
+            lengths(first, end, statement -> statement.instructions().size()));
+        tempStarts = spliceStarts(tempStarts, count, first, last, lengths(first, end, Statement::tempCount));
+
+        // 重新计算受影响的脊, 并以改变的范围更新其起始位置
+        final var changed = updateBlocks(first, end);
+        if (changed == null) {
+            parse();
+            return;
+        }
+        final var changedFrom = Math.min(changed[0], first);
+        final var changedTo = Math.max(changed[1], end);
+        final var blockLengths = new int[changedTo - changedFrom];
+        for (int i = changedFrom; i < changedTo; i++) {
+            blockLengths[i - changedFrom] = blocks.get(i).productions().size();
+        }
+        blockStarts = spliceStarts(blockStarts, count, changedFrom, changedTo - (end - last), blockLengths);
+        valid = true;
+    }
+
+    /**
+     * @return 语句数
+     */
+    public int getStatementCount() {
+        return statements.size();
+    }
+
+    /**
+     * @return 按规约顺序排列的产生式, 最后是接受时记入的开始产生式
+     */
+    public List<Production> getReducedProductions() {
+        return new AbstractList<>() {
+            @Override
+            public Production get(int index) {
+                Objects.checkIndex(index, size());
+                final var count = statements.size();
+                if (index < productionStarts[count]) {
+                    final var statement = locate(productionStarts, count, index);
+                    return statements.get(statement).productions().get(index - productionStarts[statement]);
+                }
+
+                // 脊上的规约从最后一条语句开始: 第 k 段位于脊的 [总数 - blockStarts[k + 1], 总数 - blockStarts[k])
+                final var spineIndex = index - productionStarts[count];
+                final var blockTotal = blockStarts[count];
+                if (spineIndex >= blockTotal) {
+                    return finale.get(spineIndex - blockTotal);
+                }
+                final var block = locate(blockStarts, count, blockTotal - spineIndex - 1);
+                return blocks.get(block).productions().get(spineIndex - (blockTotal - blockStarts[block + 1]));
+            }
+
+            @Override
+            public int size() {
+                final var count = statements.size();
+                return productionStarts[count] + blockStarts[count] + finale.size();
+            }
+        };
+    }
+
+    /**
+     * @return 整个程序的 IR
+     */
+    public List<Instruction> getIR() {
+        return new AbstractList<>() {
+            @Override
+            public Instruction get(int index) {
+                Objects.checkIndex(index, size());
+                final var statement = locate(instructionStarts, statements.size(), index);
+                final var instruction = statements.get(statement).instructions().get(index - instructionStarts[statement]);
+                final var base = tempStarts[statement];
+                return base == 0 ? instruction
+                    : mapTemps(instruction, temp -> IRVariable.temp(temp.getTempNumber() + base));
+            }
+
+            @Override
+            public int size() {
+                return instructionStarts[statements.size()];
+            }
+        };
+    }
+
+    /**
+     * 输出规约列表, 格式与 {@link ProductionCollector#dumpToFile} 相同
+     *
+     * @param path 文件路径
+     */
+    public void dumpProductions(String path) {
+        FileUtils.writeLines(path, getReducedProductions().stream().map(Production::toString).toList());
+    }
+
+    /**
+     * 输出 IR, 格式与 {@link IRGenerator#dumpIR} 相同
+     *
+     * @param path 文件路径
+     */
+    public void dumpIR(String path) {
+        FileUtils.writeLines(path, getIR().stream().map(Instruction::toString).toList());
+    }
+
+    /**
+     * 一条语句的分析结果
+     *
+     * @param tokenCount   token 数
+     * @param bottom       分析前的栈底状态
+     * @param residual     分析后栈底之上的剩余栈
+     * @param productions  规约出的产生式
+     * @param instructions 生成的指令, 临时变量在段内从 $0 开始编号
+     * @param tempCount    临时变量数
+     */
+    private record Statement(int tokenCount, int bottom, int[] residual, List<Production> productions,
+                             List<Instruction> instructions, int tempCount) {
+        int topState() {
+            return residual.length == 0 ? bottom : residual[residual.length - 1];
+        }
+    }
+
+    /**
+     * 脊上弹出一条语句的剩余栈的那一段规约
+     *
+     * @param below       该语句下方的栈顶状态
+     * @param carryIn     其后的语句规约完后留在该语句上方的状态
+     * @param productions 规约出的产生式
+     * @param carryOut    弹出该语句之后留在其下方状态之上的状态
+     * @param accepted    是否在该段中接受 (只可能发生在第一条语句)
+     */
+    private record Block(int below, int[] carryIn, List<Production> productions, int[] carryOut, boolean accepted) {
+    }
+
+    /**
+     * 将 tokens[from, to) 在 Semicolon 之后切分为语句, 从栈底状态 bottom 开始依次分析, 结果追加到 out 中
+     *
+     * @return 分析后的栈顶状态; 失败时为 -1
+     */
+    private int parseRange(int from, int to, int bottom, List<Statement> out) {
+        var state = bottom;
+        var start = from;
+        while (start < to) {
+            var end = start;
+            while (end < to && tokens.kindCode(end++) != separator) {
+                // 找到 Semicolon 之后的位置
+            }
+
+            final var statement = parseStatement(start, end, state);
+            if (statement == null) {
+                return -1;
+            }
+            out.add(statement);
+            state = statement.topState();
+            start = end;
+        }
+        return state;
+    }
+
+    /**
+     * 从栈底状态 bottom 开始分析 tokens[from, to), 并在得到的事件上收集产生式与生成 IR
+     *
+     * @return 分析结果; 失败时为 null, 并记录失败的位置
+     */
+    private Statement parseStatement(int from, int to, int bottom) {
+        final var log = new ParseEventLog(packed, tokens, (to - from) * 4);
+        final var stack = new int[16];
+        stack[0] = bottom;
+        final var segment = new ParseSegment(packed, tokens, stack, 0, log);
+        if (!segment.parse(from, to)) {
+            failureIndex = segment.errorIndex();
+            failureState = segment.errorState();
+            return null;
+        }
+
+        final var collector = new ReductionCollector();
+        final var irGenerator = new IRGenerator();
+        log.replay(collector);
+        log.replay(irGenerator);
+
+        // 按首次出现的顺序重新编号临时变量. 临时变量总是先作为结果被定义, 因此这也就是其被创建的顺序
+        final var localTemps = new HashMap<IRVariable, IRVariable>();
+        final var instructions = irGenerator.getIR().stream()
+            .map(instruction -> mapTemps(instruction, temp -> localTemps.computeIfAbsent(temp,
+                key -> IRVariable.temp(localTemps.size()))))
+            .toList();
+
+        final var residual = Arrays.copyOfRange(segment.stack(), 1, segment.top() + 1);
+        return new Statement(to - from, bottom, residual, collector.productions, instructions, localTemps.size());
+    }
+
+    /**
+     * 完整地计算脊, 并重建所有起始位置
+     *
+     * @return 是否成功
+     */
+    private boolean rebuildSpine() {
+        final var count = statements.size();
+        blocks.clear();
+        blocks.addAll(Collections.nCopies(count, null));
+        if (updateBlocks(0, count) == null) {
+            return false;
+        }
+
+        tokenStarts = spliceStarts(new int[1], 0, 0, 0, lengths(0, count, Statement::tokenCount));
+        productionStarts = spliceStarts(new int[1], 0, 0, 0, lengths(0, count, statement -> statement.productions().size()));
+        instructionStarts = spliceStarts(new int[1], 0, 0, 0,
+            lengths(0, count, statement -> statement.instructions().size()));
+        tempStarts = spliceStarts(new int[1], 0, 0, 0, lengths(0, count, Statement::tempCount));
+        final var blockLengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            blockLengths[i] = blocks.get(i).productions().size();
+        }
+        blockStarts = spliceStarts(new int[1], 0, 0, 0, blockLengths);
+        return true;
+    }
+
+    /**
+     * 语句 [first, end) 的脊为空 (新分析的语句) 时, 自顶向下重新计算受影响的各段脊, 直到某段的输入与原先相同为止,
+     * 必要时也重新计算最后接受的部分
+     *
+     * @return 重新计算过的段的范围 [from, to), 没有重新计算任何段时 from 为语句数, to 为 0; 失败时为 null, 并记录失败的位置
+     */
+    private int[] updateBlocks(int first, int end) {
+        final var count = statements.size();
+        var changedFrom = count;
+        var changedTo = 0;
+        for (int k = Math.min(end, count - 1); k >= 0; k--) {
+            final var carryIn = k == count - 1 ? EMPTY : blocks.get(k + 1).carryOut();
+            final var below = k == 0 ? packed.initState() : statements.get(k - 1).topState();
+            final var old = blocks.get(k);
+            if (old != null && old.below() == below && Arrays.equals(old.carryIn(), carryIn)) {
+                if (k < first) {
+                    break;
+                }
+                continue;
+            }
+
+            final var block = consumeBlock(k, below, carryIn);
+            if (block == null) {
+                return null;
+            }
+            blocks.set(k, block);
+            changedFrom = k;
+            changedTo = Math.max(changedTo, k + 1);
+        }
+
+        if (changedFrom == 0 || count == 0) {
+            if (count > 0 && blocks.get(0).accepted()) {
+                finale = List.of();
+            } else {
+                finale = finish(count == 0 ? EMPTY : blocks.get(0).carryOut());
+                if (finale == null) {
+                    return null;
+                }
+            }
+        }
+        return new int[]{changedFrom, changedTo};
+    }
+
+    /**
+     * 在 EOF 上规约, 直到弹出第 k 条语句的剩余栈为止; 第一条语句也可能就此接受
+     *
+     * @return 该段脊; 规约越过了该语句的边界或出错时为 null
+     */
+    private Block consumeBlock(int k, int below, int[] carryIn) {
+        final var residual = statements.get(k).residual();
+        if (residual.length == 0) {
+            return new Block(below, carryIn, List.of(), carryIn, false);
+        }
+
+        var stack = new int[residual.length + carryIn.length + 2];
+        stack[0] = below;
+        System.arraycopy(residual, 0, stack, 1, residual.length);
+        System.arraycopy(carryIn, 0, stack, 1 + residual.length, carryIn.length);
+        var top = residual.length + carryIn.length;
+        final var productions = new ArrayList<Production>();
+
+        while (true) {
+            final var action = packed.action(stack[top], eofColumn);
+            switch (PackedLRTable.kindOf(action)) {
+                case PackedLRTable.REDUCE -> {
+                    final var productionIndex = PackedLRTable.payloadOf(action);
+                    top -= packed.bodyLength(productionIndex);
+                    if (top < 0) {
+                        return fail(stack[0]);
+                    }
+                    final var state = packed.gotoAfterReduce(stack[top], productionIndex);
+                    if (++top == stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[top] = state;
+                    productions.add(packed.production(productionIndex));
+                    if (top == 1) {
+                        return new Block(below, carryIn, productions, new int[]{state}, false);
+                    }
+                }
+                case PackedLRTable.ACCEPT -> {
+                    if (k != 0) {
+                        return fail(stack[top]);
+                    }
+                    productions.add(beginProduction);
+                    return new Block(below, carryIn, productions, EMPTY, true);
+                }
+                default -> {
+                    return fail(stack[top]);
+                }
+            }
+        }
+    }
+
+    /**
+     * 所有语句都已弹出后, 在 EOF 上从初始状态与 carry 开始完成分析直至接受
+     *
+     * @return 规约出的产生式, 最后是开始产生式; 出错时为 null
+     */
+    private List<Production> finish(int[] carry) {
+        final var stack = new int[carry.length + 1];
+        stack[0] = packed.initState();
+        System.arraycopy(carry, 0, stack, 1, carry.length);
+        final var log = new ParseEventLog(packed, tokens, 16);
+        final var segment = new ParseSegment(packed, tokens, stack, carry.length, log);
+        final var eofIndex = tokens.size() - 1;
+        if (!segment.parse(eofIndex, tokens.size()) || !segment.accepted()) {
+            failureIndex = eofIndex;
+            failureState = segment.errorState() < 0 ? segment.topState() : segment.errorState();
+            return null;
+        }
+
+        final var collector = new ReductionCollector();
+        log.replay(collector);
+        collector.productions.add(beginProduction);
+        return collector.productions;
+    }
+
+    private Block fail(int state) {
+        failureIndex = tokens.size() - 1;
+        failureState = state;
+        return null;
+    }
+
+    /**
+     * @return 第 [from, to) 条语句的某一长度
+     */
+    private int[] lengths(int from, int to, ToIntFunction<Statement> length) {
+        final var lengths = new int[to - from];
+        for (int i = from; i < to; i++) {
+            lengths[i - from] = length.applyAsInt(statements.get(i));
+        }
+        return lengths;
+    }
+
+    /**
+     * 原有 count 项的起始位置数组 starts (第 count 项为总数) 中, 第 [first, last) 项被替换为长度依次为 lengths 的新项之后,
+     * 更新起始位置: 之前的不变, 之后的整体移到新的下标并加上总长度之差. 除被替换的项之外只有数组复制与逐项相加
+     *
+     * @return 更新后的数组, 容量不足时为新分配的数组
+     */
+    private static int[] spliceStarts(int[] starts, int count, int first, int last, int[] lengths) {
+        final var shift = lengths.length - (last - first);
+        final var newCount = count + shift;
+        if (newCount + 1 > starts.length) {
+            starts = Arrays.copyOf(starts, newCount + (newCount >> 1) + 1);
+        }
+
+        var end = starts[first];
+        for (final var length : lengths) {
+            end += length;
+        }
+        final var difference = end - starts[last];
+        System.arraycopy(starts, last, starts, last + shift, count - last + 1);
+        for (int i = 0; i + 1 < lengths.length; i++) {
+            starts[first + i + 1] = starts[first + i] + lengths[i];
+        }
+        starts[last + shift] = end;
+        if (difference != 0) {
+            for (int i = last + shift + 1; i <= newCount; i++) {
+                starts[i] += difference;
+            }
+        }
+        return starts;
+    }
+
+    /**
+     * @return 满足 {@code starts[i] <= index} 的最大的 i (i 不超过 count); 即 index 所在的语句
+     */
+    private static int locate(int[] starts, int count, int index) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            final var middle = (low + high + 1) >>> 1;
+            if (starts[middle] <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return 将指令中的临时变量按 map 替换后的新指令
+     */
+    private static Instruction mapTemps(Instruction instruction, UnaryOperator<IRVariable> map) {
+        final UnaryOperator<IRValue> value = operand ->
+            operand instanceof IRVariable variable && variable.isTemp() ? map.apply(variable) : operand;
+        return switch (instruction.getKind()) {
+            case ADD -> Instruction.createAdd((IRVariable) value.apply(instruction.getResult()),
+                value.apply(instruction.getLHS()), value.apply(instruction.getRHS()));
+            case SUB -> Instruction.createSub((IRVariable) value.apply(instruction.getResult()),
+                value.apply(instruction.getLHS()), value.apply(instruction.getRHS()));
+            case MUL -> Instruction.createMul((IRVariable) value.apply(instruction.getResult()),
+                value.apply(instruction.getLHS()), value.apply(instruction.getRHS()));
+            case MOV -> Instruction.createMov((IRVariable) value.apply(instruction.getResult()),
+                value.apply(instruction.getFrom()));
+            case RET -> Instruction.createRet(value.apply(instruction.getReturnValue()));
+        };
+    }
+
+    private RuntimeException syntaxError() {
+        return new RuntimeException("Syntax error at token %s in status %d".formatted(
+            tokens.token(failureIndex), failureState));
+    }
+
+    /**
+     * 收集规约出的产生式, 与 {@link ProductionCollector} 类似, 但结果留在内存中, 且接受时不记入开始产生式
+     */
+    private static class ReductionCollector implements ActionObserver {
+        @Override
+        public void whenShift(Status currentStatus, Token currentToken) {
+        }
+
+        @Override
+        public void whenReduce(Status currentStatus, Production production) {
+            productions.add(production);
+        }
+
+        @Override
+        public void whenAccept(Status currentStatus) {
+        }
+
+        @Override
+        public void setSymbolTable(SymbolTable table) {
+        }
+
+        private final List<Production> productions = new ArrayList<>();
+    }
+
+    private static final int[] EMPTY = new int[0];
+
+    private final PackedLRTable packed;
+    private final TokenBuffer tokens;
+    private final Production beginProduction;
+    private final int separator;
+    private final int eofColumn;
+    private final List<Statement> statements = new ArrayList<>();
+    /**
+     * 与各语句对应的脊, 更新过程中新语句的一项暂时为 null
+     */
+    private final List<Block> blocks = new ArrayList<>();
+    /**
+     * 第 i 条语句的第一个 token, 产生式, 指令, 临时变量与脊上的产生式在整个程序 (或整条脊) 中的下标; 第 count 项为总数
+     */
+    private int[] tokenStarts = new int[1];
+    private int[] productionStarts = new int[1];
+    private int[] instructionStarts = new int[1];
+    private int[] tempStarts = new int[1];
+    private int[] blockStarts = new int[1];
+    /**
+     * 弹出所有语句之后直至接受的规约, 最后是开始产生式
+     */
+    private List<Production> finale = List.of();
+    private int failureIndex;
+    private int failureState;
+    private boolean valid = false;
+}
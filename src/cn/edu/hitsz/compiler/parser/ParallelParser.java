@@ -0,0 +1,175 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.PackedLRTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 在顶层 Semicolon 处切分 token 序列, 并行地分析各段并记录事件日志
+ * <br>
+ * 文法的顶层是右递归的 {@code S_list -> S Semicolon S_list}: 串行分析时, 每移入一个语句末尾的 Semicolon,
+ * 栈顶都会回到同一个状态 q, 而其下方的栈内容在到达 EOF 之前都不会再被弹出. 因此从第二段起, 每一段都可以假定栈中只有
+ * 一个状态 q, 独立地分析到移入该段最后一个 token 为止 (见 {@link ParseSegment}); 第一段则从真正的初始状态开始.
+ * 每段在移入其最后一个 token (即 Semicolon) 之后立即停下, 不会以下一段的第一个 token 作为向前看符号进行规约;
+ * 串行分析中在该 token 上进行的规约都在栈 q 之内, 由下一段开始时执行. 因此
+ * 每段得到的事件与串行分析在这些 token 上的事件完全相同, 各段的剩余栈依次拼接起来就是串行分析到 EOF 时的栈.
+ * 最后以拼接后的栈在 EOF 上继续分析, 完成所有 S_list 的规约直至接受.
+ * <br>
+ * q 取自对第一条语句的试探分析. 上述假设由分析过程本身检验: 若某段需要弹出其初始状态以下的栈, 出现语法错误,
+ * 或结束时的栈顶与下一段假定的初始状态不同, 则放弃并行结果, 由调用者改为串行分析 (从而在正确的位置报告语法错误).
+ * <br>
+ * 各段的日志按顺序拼接, 因此观察者看到的通知顺序与串行分析完全相同.
+ */
+final class ParallelParser {
+    /**
+     * 每段至少包含的 token 数, 过小的段不值得调度
+     */
+    static final int MIN_CHUNK_TOKENS = 1 << 14;
+    /**
+     * 每个线程平均分到的段数, 多于一段可以缓解各段耗时不均
+     */
+    static final int CHUNKS_PER_THREAD = 4;
+
+    ParallelParser(PackedLRTable packed, TokenBuffer tokens) {
+        this(packed, tokens, 0);
+    }
+
+    /**
+     * @param chunkTokens 每段的 token 数, 为 0 时按线程数与 {@link #MIN_CHUNK_TOKENS} 决定
+     */
+    ParallelParser(PackedLRTable packed, TokenBuffer tokens, int chunkTokens) {
+        this.packed = packed;
+        this.tokens = tokens;
+        this.chunkTokens = chunkTokens;
+    }
+
+    /**
+     * @param pool 线程池
+     * @return 与串行分析相同的事件日志; 无法切分或假设不成立时返回 null
+     */
+    ParseEventLog record(ForkJoinPool pool) {
+        final var separator = TokenKind.fromString("Semicolon").getCode();
+        final var eofIndex = tokens.size() - 1;
+        final var firstSeparator = nextSeparator(separator, 0, eofIndex);
+        if (firstSeparator < 0) {
+            return null;
+        }
+
+        // 试探分析第一条语句, 得到每条语句之后的栈顶状态 q
+        final var probe = new ParseSegment(packed, tokens, new int[]{packed.initState()}, 0, null);
+        if (!probe.parse(0, firstSeparator + 1)) {
+            return null;
+        }
+        final var boundaryState = probe.topState();
+
+        final var chunks = split(separator, eofIndex, boundaryState, pool.getParallelism());
+        if (chunks.size() < 2) {
+            return null;
+        }
+
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(chunks.stream().map(chunk -> new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        chunk.succeeded = chunk.segment.parse(chunk.from, chunk.to);
+                    }
+                }).toList());
+            }
+        });
+
+        // 检验各段的衔接, 并拼接剩余栈: 每段的栈底就是上一段的栈顶, 不重复计入
+        var depth = 1;
+        for (int i = 0; i < chunks.size(); i++) {
+            final var chunk = chunks.get(i);
+            if (!chunk.succeeded) {
+                return null;
+            }
+            if (i + 1 < chunks.size() && chunk.segment.topState() != chunks.get(i + 1).segment.stack()[0]) {
+                return null;
+            }
+            depth += chunk.segment.top();
+        }
+        final var stack = new int[depth + 1];
+        stack[0] = packed.initState();
+        var top = 0;
+        for (final var chunk : chunks) {
+            System.arraycopy(chunk.segment.stack(), 1, stack, top + 1, chunk.segment.top());
+            top += chunk.segment.top();
+        }
+
+        // 在 EOF 上完成剩余的规约并接受
+        final var finishLog = new ParseEventLog(packed, tokens, 16);
+        final var finish = new ParseSegment(packed, tokens, stack, top, finishLog);
+        if (!finish.parse(eofIndex, tokens.size()) || !finish.accepted()) {
+            return null;
+        }
+
+        final var logs = new ArrayList<ParseEventLog>(chunks.size() + 1);
+        for (final var chunk : chunks) {
+            logs.add(chunk.log);
+        }
+        logs.add(finishLog);
+        return ParseEventLog.concat(logs);
+    }
+
+    /**
+     * 按 token 数将序列大致等分, 每段的结尾向后对齐到分隔符之后; 最后一段一直到 EOF 之前
+     */
+    private List<Chunk> split(int separator, int eofIndex, int boundaryState, int parallelism) {
+        final var chunkTokens = this.chunkTokens > 0
+            ? this.chunkTokens
+            : Math.max(MIN_CHUNK_TOKENS, eofIndex / Math.max(1, parallelism * CHUNKS_PER_THREAD));
+        final var chunks = new ArrayList<Chunk>();
+        var from = 0;
+        while (from < eofIndex) {
+            final var end = nextSeparator(separator, Math.min(from + chunkTokens, eofIndex), eofIndex);
+            final var to = end < 0 ? eofIndex : end + 1;
+            final var bottom = chunks.isEmpty() ? packed.initState() : boundaryState;
+            final var log = new ParseEventLog(packed, tokens, (to - from) * 4);
+            chunks.add(new Chunk(from, to, log, new ParseSegment(packed, tokens, new int[]{bottom}, 0, log)));
+            from = to;
+        }
+        return chunks;
+    }
+
+    /**
+     * @return [from, to) 中第一个分隔符的下标, 没有则为 -1
+     */
+    private int nextSeparator(int separator, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (tokens.kindCode(i) == separator) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 一段 token 及其分析
+     */
+    private static final class Chunk {
+        Chunk(int from, int to, ParseEventLog log, ParseSegment segment) {
+            this.from = from;
+            this.to = to;
+            this.log = log;
+            this.segment = segment;
+        }
+
+        private final int from;
+        private final int to;
+        private final ParseEventLog log;
+        private final ParseSegment segment;
+        private boolean succeeded;
+    }
+
+    private final PackedLRTable packed;
+    private final TokenBuffer tokens;
+    private final int chunkTokens;
+}
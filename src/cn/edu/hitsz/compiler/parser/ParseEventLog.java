@@ -0,0 +1,231 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.parser.table.PackedLRTable;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 语法分析过程的事件日志
+ * <br>
+ * 驱动程序不再在每一步依次通知各个观察者, 而是只将每个动作追加为两个 int: 第一个是带标记的动作类型与动作后的状态
+ * (编码方式与 {@link PackedLRTable} 的 ACTION 表相同: 低两位为 {@link PackedLRTable#SHIFT}, {@link PackedLRTable#REDUCE}
+ * 或 {@link PackedLRTable#ACCEPT}, 其余位为状态编号), 第二个是移入的 token 在 {@link TokenBuffer} 中的下标或规约的产生式编号.
+ * <br>
+ * 分析结束后, 每个观察者在自己的线程上按顺序重放整个日志 (见 {@link #replayAll}), 收到的参数与直接通知时完全相同.
+ * 于是总耗时约为最慢的观察者的耗时, 而不是所有观察者之和; 且每个线程上的回调只有一种实现, 不再是多态调用.
+ * 观察者之间不能共享可变状态 (各观察者只修改自己的栈, 以及符号表中不同条目的不同字段).
+ * <br>
+ * 日志可以保存到文件中, 之后连同同一份分析表与 token 序列重新载入并重放, 用于调试.
+ */
+public final class ParseEventLog {
+    /**
+     * @param table  产生日志的分析表, 重放时用于取出状态与产生式对象
+     * @param tokens 被分析的 token 序列, 重放时用于取出 Token 对象
+     */
+    public ParseEventLog(PackedLRTable table, TokenBuffer tokens) {
+        this(table, tokens, tokens.size() * 4);
+    }
+
+    /**
+     * @param capacity 预留的 int 数, 每个事件占两个
+     */
+    ParseEventLog(PackedLRTable table, TokenBuffer tokens, int capacity) {
+        this(table, tokens, new int[Math.max(16, capacity)], 0);
+    }
+
+    private ParseEventLog(PackedLRTable table, TokenBuffer tokens, int[] events, int size) {
+        this.table = table;
+        this.tokens = tokens;
+        this.events = events;
+        this.size = size;
+    }
+
+    /**
+     * 记录一次移入
+     *
+     * @param tokenIndex 被移入的 token 的下标
+     * @param state      移入后的状态
+     */
+    public void shift(int tokenIndex, int state) {
+        append(state << 2 | PackedLRTable.SHIFT, tokenIndex);
+    }
+
+    /**
+     * 记录一次规约
+     *
+     * @param production 产生式编号
+     * @param state      规约并转移后的状态
+     */
+    public void reduce(int production, int state) {
+        append(state << 2 | PackedLRTable.REDUCE, production);
+    }
+
+    /**
+     * 记录接受
+     *
+     * @param state 接受时的状态
+     */
+    public void accept(int state) {
+        append(state << 2 | PackedLRTable.ACCEPT, 0);
+    }
+
+    /**
+     * @return 事件数
+     */
+    public int size() {
+        return size / 2;
+    }
+
+    /**
+     * 在当前线程上按顺序向一个观察者重放整个日志
+     *
+     * @param observer 观察者
+     */
+    public void replay(ActionObserver observer) {
+        for (int i = 0; i < size; i += 2) {
+            final var state = PackedLRTable.payloadOf(events[i]);
+            final var argument = events[i + 1];
+            switch (PackedLRTable.kindOf(events[i])) {
+                case PackedLRTable.SHIFT -> observer.whenShift(table.status(state), tokens.token(argument));
+                case PackedLRTable.REDUCE -> observer.whenReduce(table.status(state), table.production(argument));
+                case PackedLRTable.ACCEPT -> observer.whenAccept(table.status(state));
+                default -> throw new RuntimeException("Illegal event at %d".formatted(i / 2));
+            }
+        }
+    }
+
+    /**
+     * 每个观察者各占一个任务, 在 pool 中同时重放整个日志, 全部完成后返回
+     *
+     * @param observers 观察者
+     * @param pool      线程池
+     */
+    public void replayAll(List<ActionObserver> observers, ForkJoinPool pool) {
+        if (observers.size() == 1) {
+            replay(observers.get(0));
+            return;
+        }
+
+        final var tasks = new ArrayList<Callable<Void>>(observers.size());
+        for (final var observer : observers) {
+            tasks.add(() -> {
+                replay(observer);
+                return null;
+            });
+        }
+
+        for (final var future : pool.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw new RuntimeException("Observer failed while replaying", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while replaying", e);
+            }
+        }
+    }
+
+    /**
+     * 将同一次分析的若干段日志按顺序拼接为一个
+     *
+     * @param logs 各段日志, 须来自同一张分析表与同一个 token 序列
+     * @return 拼接后的日志
+     */
+    static ParseEventLog concat(List<ParseEventLog> logs) {
+        final var total = logs.stream().mapToInt(log -> log.size).sum();
+        final var first = logs.get(0);
+        final var events = new int[total];
+        var size = 0;
+        for (final var log : logs) {
+            System.arraycopy(log.events, 0, events, size, log.size);
+            size += log.size;
+        }
+        return new ParseEventLog(first.table, first.tokens, events, size);
+    }
+
+    /**
+     * 将日志以二进制形式保存 (大端序的 int: 魔数, 事件数 * 2, 各事件)
+     *
+     * @param path 文件路径
+     */
+    public void save(String path) {
+        final var buffer = ByteBuffer.allocate((2 + size) * Integer.BYTES);
+        buffer.putInt(MAGIC).putInt(size);
+        buffer.asIntBuffer().put(events, 0, size);
+        try {
+            Files.write(Path.of(path), buffer.array());
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+    }
+
+    /**
+     * 载入由 {@link #save} 保存的日志
+     *
+     * @param path   文件路径
+     * @param table  产生该日志时的分析表
+     * @param tokens 产生该日志时的 token 序列
+     * @return 日志
+     */
+    public static ParseEventLog load(String path, PackedLRTable table, TokenBuffer tokens) {
+        final var buffer = ByteBuffer.wrap(FileUtils.readBytes(path));
+        if (buffer.remaining() < 2 * Integer.BYTES || buffer.getInt() != MAGIC) {
+            throw new RuntimeException("Not a parse event log: " + path);
+        }
+
+        final var events = new int[buffer.getInt()];
+        buffer.asIntBuffer().get(events);
+        return new ParseEventLog(table, tokens, events, events.length);
+    }
+
+    /**
+     * 将日志以文本形式逐行写出, 用于调试
+     *
+     * @param path 文件路径
+     */
+    public void dump(String path) {
+        final var lines = new ArrayList<String>(size());
+        for (int i = 0; i < size; i += 2) {
+            final var state = PackedLRTable.payloadOf(events[i]);
+            final var argument = events[i + 1];
+            lines.add(switch (PackedLRTable.kindOf(events[i])) {
+                case PackedLRTable.SHIFT -> "shift %s -> %d".formatted(tokens.token(argument), state);
+                case PackedLRTable.REDUCE -> "reduce %s -> %d".formatted(table.production(argument), state);
+                case PackedLRTable.ACCEPT -> "accept at %d".formatted(state);
+                default -> "illegal event";
+            });
+        }
+        FileUtils.writeLines(path, lines);
+    }
+
+    private void append(int head, int argument) {
+        if (size + 2 > events.length) {
+            events = Arrays.copyOf(events, events.length + (events.length >> 1) + 2);
+        }
+        events[size] = head;
+        events[size + 1] = argument;
+        size += 2;
+    }
+
+    private static final int MAGIC = 0x50455654;
+
+    private final PackedLRTable table;
+    private final TokenBuffer tokens;
+    private int[] events;
+    private int size;
+}
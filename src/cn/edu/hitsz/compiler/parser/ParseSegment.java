@@ -0,0 +1,127 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.parser.table.PackedLRTable;
+
+import java.util.Arrays;
+
+/**
+ * 对 token 序列中一段的分析: 从给定的栈开始分析 tokens[from, to), 在移入 tokens[to - 1] 之后, 对 tokens[to] 执行任何动作之前停下.
+ * to 为 token 数时则一直分析到接受为止.
+ * <br>
+ * 栈底的状态被视为该段之前的分析留下的栈顶, 栈底以下的内容不可见: 需要弹出栈底以下内容的规约, 以及语法错误, 都会使分析失败.
+ * 只要栈底状态与串行分析到此处时的栈顶相同, 且分析没有失败, 该段记录的事件就与串行分析在这些 token 上的事件完全相同.
+ * 用于并行分析 ({@link ParallelParser}) 与增量分析 ({@link IncrementalParser}).
+ */
+final class ParseSegment {
+    /**
+     * @param stack 初始的栈, stack[0] 为栈底
+     * @param top   初始的栈顶下标
+     * @param log   记录事件的日志, 为 null 时不记录
+     */
+    ParseSegment(PackedLRTable packed, TokenBuffer tokens, int[] stack, int top, ParseEventLog log) {
+        this.packed = packed;
+        this.tokens = tokens;
+        this.stack = stack;
+        this.top = top;
+        this.log = log;
+    }
+
+    /**
+     * @return 分析是否成功. 失败时可由 {@link #errorIndex()} 与 {@link #errorState()} 取得出错的位置
+     */
+    boolean parse(int from, int to) {
+        int index = from;
+        int state = stack[top];
+
+        while (index != to) {
+            final var action = packed.action(state, packed.terminalColumn(tokens.kindCode(index)));
+            switch (PackedLRTable.kindOf(action)) {
+                case PackedLRTable.SHIFT -> {
+                    state = PackedLRTable.payloadOf(action);
+                    push(state);
+                    if (log != null) {
+                        log.shift(index, state);
+                    }
+                    index++;
+                }
+                case PackedLRTable.REDUCE -> {
+                    final var productionIndex = PackedLRTable.payloadOf(action);
+                    final var bodyLength = packed.bodyLength(productionIndex);
+                    if (top < bodyLength) {
+                        return fail(index, state);
+                    }
+                    top -= bodyLength;
+                    state = packed.gotoAfterReduce(stack[top], productionIndex);
+                    push(state);
+                    if (log != null) {
+                        log.reduce(productionIndex, state);
+                    }
+                }
+                case PackedLRTable.ACCEPT -> {
+                    if (log != null) {
+                        log.accept(state);
+                    }
+                    accepted = true;
+                    return true;
+                }
+                default -> {
+                    return fail(index, state);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 当前的栈, 有效部分为 [0, top]
+     */
+    int[] stack() {
+        return stack;
+    }
+
+    int top() {
+        return top;
+    }
+
+    int topState() {
+        return stack[top];
+    }
+
+    /**
+     * @return 是否已经接受
+     */
+    boolean accepted() {
+        return accepted;
+    }
+
+    int errorIndex() {
+        return errorIndex;
+    }
+
+    int errorState() {
+        return errorState;
+    }
+
+    private boolean fail(int index, int state) {
+        errorIndex = index;
+        errorState = state;
+        return false;
+    }
+
+    private void push(int state) {
+        if (++top == stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[top] = state;
+    }
+
+    private final PackedLRTable packed;
+    private final TokenBuffer tokens;
+    private final ParseEventLog log;
+    private int[] stack;
+    private int top;
+    private boolean accepted = false;
+    private int errorIndex = -1;
+    private int errorState = -1;
+}
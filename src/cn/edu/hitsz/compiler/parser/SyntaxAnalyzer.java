@@ -2,13 +2,17 @@ package cn.edu.hitsz.compiler.parser;
 
 import cn.edu.hitsz.compiler.NotImplementedException;
 import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
 import cn.edu.hitsz.compiler.parser.table.*;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 //实验二: 实现 LR 语法分析驱动程序
 
@@ -24,15 +28,23 @@ public class SyntaxAnalyzer {
     private final SymbolTable symbolTable;
     private final List<ActionObserver> observers = new ArrayList<>();
     /**
-     * 终结符串， LR表， 当前状态，下一token，状态栈， 符号栈
+     * 需要收到单位规约通知的观察者, 见 {@link ActionObserver#wantsUnitReductions()}
      */
-    private List<Token> tokens;
+    private final List<ActionObserver> unitObservers = new ArrayList<>();
+    /**
+     * 终结符串， LR表， 状态栈
+     * <br>
+     * 状态栈只存放状态编号, 在多次 run 之间复用. 符号栈不再需要: 观察者所需的 Token 与产生式都由分析表与 token 序列直接给出
+     */
+    private Iterable<Token> tokens;
     private LRTable table;
-    private Status currentStatus;
-    private Token nextToken;
-    private Symbol currentSymbol;
-    private ArrayList<Status> statusStack = new ArrayList<>();
-    private ArrayList<Symbol> symbolStack = new ArrayList<>();
+    private int[] stateStack = new int[64];
+    /**
+     * run 时使用的分析表, 见 {@link #useDefaultReductions}; 为 null 时在下次 run 时重新由 LR 表得到
+     */
+    private PackedLRTable driverTable;
+    private boolean defaultReductions = false;
+    private boolean collapseUnitChains = false;
 
 
     public SyntaxAnalyzer(SymbolTable symbolTable) {
@@ -46,6 +58,9 @@ public class SyntaxAnalyzer {
      */
     public void registerObserver(ActionObserver observer) {
         observers.add(observer);
+        if (observer.wantsUnitReductions()) {
+            unitObservers.add(observer);
+        }
         observer.setSymbolTable(symbolTable);
     }
 
@@ -56,8 +71,8 @@ public class SyntaxAnalyzer {
      * @param currentToken  当前词法单元
      */
     public void callWhenInShift(Status currentStatus, Token currentToken) {
-        for (final var listener : observers) {
-            listener.whenShift(currentStatus, currentToken);
+        for (int i = 0; i < observers.size(); i++) {
+            observers.get(i).whenShift(currentStatus, currentToken);
         }
     }
 
@@ -68,8 +83,8 @@ public class SyntaxAnalyzer {
      * @param production    待规约的产生式
      */
     public void callWhenInReduce(Status currentStatus, Production production) {
-        for (final var listener : observers) {
-            listener.whenReduce(currentStatus, production);
+        for (int i = 0; i < observers.size(); i++) {
+            observers.get(i).whenReduce(currentStatus, production);
         }
     }
 
@@ -79,8 +94,8 @@ public class SyntaxAnalyzer {
      * @param currentStatus 当前状态
      */
     public void callWhenInAccept(Status currentStatus) {
-        for (final var listener : observers) {
-            listener.whenAccept(currentStatus);
+        for (int i = 0; i < observers.size(); i++) {
+            observers.get(i).whenAccept(currentStatus);
         }
     }
 
@@ -89,7 +104,9 @@ public class SyntaxAnalyzer {
         // 你可以自行选择要如何存储词法单元, 譬如使用迭代器, 或是栈, 或是干脆使用一个 list 全存起来
         // 需要注意的是, 在实现驱动程序的过程中, 你会需要面对只读取一个 token 而不能消耗它的情况,
         // 在自行设计的时候请加以考虑此种情况
-        this.tokens = (List<Token>) tokens;
+        // 这里只保存序列本身, run 时才通过迭代器逐个拉取, 因此可以直接接受按需分析的 token 流
+        // 若传入的是 TokenBuffer, run 时将直接通过游标读取 token 类型, 只在移入时才构造 Token 对象
+        this.tokens = tokens;
 //        throw new NotImplementedException();
     }
 
@@ -98,60 +115,201 @@ public class SyntaxAnalyzer {
         // 你可以自行选择要如何使用该表格:
         // 是直接对 LRTable 调用 getAction/getGoto, 抑或是直接将 initStatus 存起来使用
         this.table = table;
+        this.driverTable = null;
 //        throw new NotImplementedException();
     }
 
+    /**
+     * 让 run 使用加入了默认规约的分析表, 可选地同时消去单位产生式链 (见 {@link PackedLRTable#withDefaultReductions}).
+     * 被消去的单位规约仍会补报给需要它们的观察者, 因此 {@link ProductionCollector} 的结果不变. 记录事件日志的各方法不受影响
+     *
+     * @param collapseUnitChains 是否消去单位产生式链
+     */
+    public void useDefaultReductions(boolean collapseUnitChains) {
+        this.defaultReductions = true;
+        this.collapseUnitChains = collapseUnitChains;
+        this.driverTable = null;
+    }
+
     public void run() {
         // 实现驱动程序
         // 你需要根据上面的输入来实现 LR 语法分析的驱动程序
         // 请分别在遇到 Shift, Reduce, Accept 的时候调用上面的 callWhenInShift, callWhenInReduce, callWhenInAccept
         // 否则用于为实验二打分的产生式输出可能不会正常工作
-        currentStatus = table.getInit();
-        currentSymbol = new Symbol(Token.eof());
-        statusStack.add(currentStatus);
-        symbolStack.add(currentSymbol);
-        Iterator<Token> it = tokens.iterator();
-        Action currentAction;
-        Production production;
-        nextToken = it.next();
+        if (driverTable == null) {
+            driverTable = defaultReductions ? table.pack().withDefaultReductions(collapseUnitChains) : table.pack();
+        }
+        drive(driverTable, null);
+
+//        throw new NotImplementedException();
+    }
+
+    /**
+     * 只分析而不通知观察者, 将所有动作记录到事件日志中. token 序列须为 {@link TokenBuffer}
+     *
+     * @return 事件日志, 可随后向观察者重放
+     */
+    public ParseEventLog record() {
+        if (!(tokens instanceof TokenBuffer buffer)) {
+            throw new RuntimeException("Recording a parse event log requires a TokenBuffer");
+        }
+
+        final var log = new ParseEventLog(table.pack(), buffer);
+        drive(table.pack(), log);
+        return log;
+    }
+
+    /**
+     * 先分析并记录事件日志, 再让各观察者在 pool 中各自的线程上同时重放日志. 观察者收到的通知与 {@link #run()} 相同
+     *
+     * @param pool 线程池
+     * @return 事件日志, 可用于保存以便调试
+     */
+    public ParseEventLog runReplayed(ForkJoinPool pool) {
+        final var log = record();
+        log.replayAll(observers, pool);
+        return log;
+    }
+
+    /**
+     * 在顶层 Semicolon 处切分 token 序列, 在 pool 中并行地分析各段并记录事件日志 (见 {@link ParallelParser}).
+     * 得到的日志与 {@link #record()} 完全相同; 序列太短或无法切分时退回串行分析, 语法错误也由串行分析报告
+     *
+     * @param pool 线程池
+     * @return 事件日志
+     */
+    public ParseEventLog recordParallel(ForkJoinPool pool) {
+        if (!(tokens instanceof TokenBuffer buffer)) {
+            throw new RuntimeException("Recording a parse event log requires a TokenBuffer");
+        }
+
+        final var log = new ParallelParser(table.pack(), buffer).record(pool);
+        return log != null ? log : record();
+    }
+
+    /**
+     * 与 {@link #recordParallel(ForkJoinPool)} 相同, 但每段的 token 数由调用者给出, 且不退回串行分析.
+     * 用于以很小的段检验各段的衔接
+     *
+     * @param pool        线程池
+     * @param chunkTokens 每段的 token 数
+     * @return 事件日志; 无法切分或各段的衔接不成立时为 null
+     */
+    public ParseEventLog recordParallel(ForkJoinPool pool, int chunkTokens) {
+        if (!(tokens instanceof TokenBuffer buffer)) {
+            throw new RuntimeException("Recording a parse event log requires a TokenBuffer");
+        }
+
+        return new ParallelParser(table.pack(), buffer, chunkTokens).record(pool);
+    }
+
+    /**
+     * 并行分析并记录事件日志, 再让各观察者在 pool 中同时重放. 观察者收到的通知及其顺序与 {@link #run()} 相同
+     *
+     * @param pool 线程池
+     * @return 事件日志
+     */
+    public ParseEventLog runParallel(ForkJoinPool pool) {
+        final var log = recordParallel(pool);
+        log.replayAll(observers, pool);
+        return log;
+    }
+
+    /**
+     * 驱动程序主体
+     *
+     * @param packed 分析表
+     * @param log    为 null 时在每个动作时直接通知观察者, 否则只将动作记录到日志中
+     */
+    private void drive(PackedLRTable packed, ParseEventLog log) {
+        // 分析时只使用稠密数组形式的分析表, 每一步只需数组访问; Status 与 Production 对象只在通知观察者时取出
+        // 状态栈是 int 数组, 规约时一次减小栈顶下标即弹出整个产生式体. 稳定分析时循环中不创建任何对象:
+        // 只有通知观察者移入时才需要 Token 对象, 而关键字等不带文本的 token 是共享的
+        // 有默认规约的状态不查看向前看符号; 进入消去了单位产生式链的状态时, 以原本进入的状态通知, 再补报链上的规约
+        final var cursor = tokens instanceof TokenBuffer buffer ? buffer.cursor() : null;
+        final Iterator<Token> it = cursor == null ? tokens.iterator() : null;
+        var nextToken = cursor == null ? it.next() : null;
+        int nextColumn = packed.terminalColumn(cursor == null ? nextToken.getKind().getCode() : cursor.kindCode());
+        int state = packed.initState();
+        var stack = stateStack;
+        int top = 0;
+        stack[top] = state;
         boolean isDone = false;
 
         while(!isDone){
-            currentAction = table.getAction(currentStatus, nextToken);
-            switch (currentAction.getKind()){
-                case Shift ->{
-                    currentStatus = currentAction.getStatus();
-                    statusStack.add(currentStatus);
-                    currentSymbol = new Symbol(nextToken);
-                    symbolStack.add(currentSymbol);
-                    callWhenInShift(currentStatus, nextToken);
-                    nextToken = it.next();
-                    break;
+            var action = packed.defaultAction(state);
+            if (action == PackedLRTable.ERROR) {
+                action = packed.action(state, nextColumn);
+            }
+            switch (PackedLRTable.kindOf(action)){
+                case PackedLRTable.SHIFT ->{
+                    state = PackedLRTable.payloadOf(action);
+                    if (++top == stack.length) {
+                        stack = stateStack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[top] = state;
+                    if (log != null) {
+                        log.shift(cursor.index(), state);
+                    } else if (!observers.isEmpty()) {
+                        final var chain = packed.unitChainOf(state);
+                        callWhenInShift(packed.status(chain < 0 ? state : packed.unitChainEntered(chain)),
+                            cursor == null ? nextToken : cursor.token());
+                        if (chain >= 0) {
+                            callWhenInUnitChain(packed, chain);
+                        }
+                    }
+                    if (cursor != null) {
+                        cursor.advance();
+                        nextColumn = packed.terminalColumn(cursor.kindCode());
+                    } else {
+                        nextToken = it.next();
+                        nextColumn = packed.terminalColumn(nextToken.getKind().getCode());
+                    }
                 }
-                case Reduce -> {
-                    production = currentAction.getProduction();
-                    for(int i=0; i<production.body().size(); i++){
-                        statusStack.remove(statusStack.size()-1);
-                        symbolStack.remove(symbolStack.size()-1);
+                case PackedLRTable.REDUCE -> {
+                    final var productionIndex = PackedLRTable.payloadOf(action);
+                    top -= packed.bodyLength(productionIndex);
+                    state = packed.gotoAfterReduce(stack[top], productionIndex);
+                    // 产生式体为空时规约也会使栈变高
+                    if (++top == stack.length) {
+                        stack = stateStack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[top] = state;
+                    if (log != null) {
+                        log.reduce(productionIndex, state);
+                    } else {
+                        final var chain = packed.unitChainOf(state);
+                        callWhenInReduce(packed.status(chain < 0 ? state : packed.unitChainEntered(chain)),
+                            packed.production(productionIndex));
+                        if (chain >= 0) {
+                            callWhenInUnitChain(packed, chain);
+                        }
                     }
-                    currentSymbol = new Symbol(production.head());
-                    symbolStack.add(currentSymbol);
-                    currentStatus = statusStack.get(statusStack.size()-1);
-//                    currentStatus = table.getGoto(currentStatus, currentSymbol.nonTerminal);
-                    currentStatus = table.getGoto(currentStatus, production.head());
-                    statusStack.add(currentStatus);
-                    callWhenInReduce(currentStatus, production);
-
                 }
-                case Accept -> {
-                    callWhenInAccept(currentStatus);
+                case PackedLRTable.ACCEPT -> {
+                    if (log != null) {
+                        log.accept(state);
+                    } else {
+                        callWhenInAccept(packed.status(state));
+                    }
                     isDone = true;
-                    break;
                 }
-                default -> {break;}
+                default -> throw new RuntimeException("Syntax error at token %s in status %d".formatted(
+                    cursor == null ? nextToken : cursor.token(), packed.status(state).index()));
             }
         }
+    }
 
-//        throw new NotImplementedException();
+    /**
+     * 将被消去的单位产生式链上的各次规约补报给需要它们的观察者
+     */
+    private void callWhenInUnitChain(PackedLRTable packed, int chain) {
+        for (int i = 0; i < packed.unitChainLength(chain); i++) {
+            final var status = packed.status(packed.unitChainState(chain, i));
+            final var production = packed.production(packed.unitChainProduction(chain, i));
+            for (int j = 0; j < unitObservers.size(); j++) {
+                unitObservers.get(j).whenReduce(status, production);
+            }
+        }
     }
 }
@@ -0,0 +1,279 @@
+package cn.edu.hitsz.compiler.parser.ast;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.ActionObserver;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+
+import java.util.Arrays;
+
+/**
+ * 存放在基本类型数组中的语法树
+ * <br>
+ * 每个结点是一个 int 编号, 其种类 (内部结点为产生式编号, 叶结点为 {@link #TOKEN}), 第一个子结点, 下一个兄弟结点, 父结点,
+ * 叶结点的 token 下标与产生它的动作所在的状态各存于一个平行的 int 数组中. 结点按分析时的动作顺序编号: 每次移入一个叶结点,
+ * 每次规约一个内部结点, 因此按编号顺序即可重放整个分析过程 (见 {@link #replay}).
+ * <br>
+ * 树建好之后, 各遍分析 (语义检查, IR 生成, 输出等) 可以通过 {@link #walk} 或 {@link #replay} 任意多次地遍历它而不必重新语法分析.
+ * {@link #clear} 只清空内容而保留各数组, 在守护进程中反复编译时, 容量足够后建树不再分配任何对象.
+ *
+ * @see SyntaxTreeBuilder
+ */
+public final class SyntaxTree {
+    /**
+     * 叶结点的种类
+     */
+    public static final int TOKEN = -1;
+    /**
+     * 不存在的结点
+     */
+    public static final int NONE = -1;
+
+    /**
+     * @return 根结点, 树尚未建完时为 {@link #NONE}
+     */
+    public int root() {
+        return root;
+    }
+
+    /**
+     * @return 结点数
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return 结点的种类: 内部结点为产生式编号, 叶结点为 {@link #TOKEN}
+     */
+    public int kind(int node) {
+        return kind[node];
+    }
+
+    public boolean isToken(int node) {
+        return kind[node] == TOKEN;
+    }
+
+    /**
+     * @return 内部结点的产生式
+     */
+    public Production production(int node) {
+        return productions[kind[node]];
+    }
+
+    /**
+     * @return 第一个子结点, 叶结点或体为空的产生式为 {@link #NONE}
+     */
+    public int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    /**
+     * @return 下一个兄弟结点, 没有时为 {@link #NONE}
+     */
+    public int nextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    /**
+     * @return 父结点, 根结点为 {@link #NONE}
+     */
+    public int parent(int node) {
+        return parent[node];
+    }
+
+    /**
+     * @return 第 i 个子结点 (从 0 开始), 没有时为 {@link #NONE}
+     */
+    public int child(int node, int i) {
+        var child = firstChild[node];
+        while (i-- > 0 && child != NONE) {
+            child = nextSibling[child];
+        }
+        return child;
+    }
+
+    /**
+     * @return 叶结点的 token 在被分析的 token 序列中的下标
+     */
+    public int tokenIndex(int node) {
+        return token[node];
+    }
+
+    /**
+     * @return 叶结点的 token
+     */
+    public Token token(int node) {
+        return tokens[token[node]];
+    }
+
+    /**
+     * @return 产生该结点的动作 (移入, 规约或接受) 执行时所在的状态
+     */
+    public Status status(int node) {
+        return statuses[state[node]];
+    }
+
+    /**
+     * 从根结点开始深度优先地遍历整棵树
+     *
+     * @param visitor 访问者
+     */
+    public void walk(SyntaxTreeVisitor visitor) {
+        if (root != NONE) {
+            walk(root, visitor);
+        }
+    }
+
+    /**
+     * 深度优先地遍历以 from 为根的子树, 子结点按产生式体中的顺序访问
+     * <br>
+     * 语句列表是右递归的, 树的深度与语句数成正比, 因此借助父结点回溯而不使用递归或额外的栈
+     *
+     * @param from    子树的根
+     * @param visitor 访问者
+     */
+    public void walk(int from, SyntaxTreeVisitor visitor) {
+        var node = from;
+        while (true) {
+            if (kind[node] == TOKEN) {
+                visitor.visitToken(this, node);
+            } else if (visitor.enter(this, node)) {
+                if (firstChild[node] != NONE) {
+                    node = firstChild[node];
+                    continue;
+                }
+                visitor.leave(this, node);
+            }
+
+            // 回溯到仍有下一个兄弟的结点, 沿途离开各个祖先
+            while (node != from && nextSibling[node] == NONE) {
+                node = parent[node];
+                visitor.leave(this, node);
+            }
+            if (node == from) {
+                return;
+            }
+            node = nextSibling[node];
+        }
+    }
+
+    /**
+     * 按分析时的顺序向观察者重放建树时收到的所有动作, 收到的参数与直接通知时相同
+     * <br>
+     * 符号表不在此设置, 需要时由调用者先调用 {@link ActionObserver#setSymbolTable}
+     *
+     * @param observer 观察者
+     */
+    public void replay(ActionObserver observer) {
+        final var units = observer.wantsUnitReductions();
+        for (int node = 0; node < count; node++) {
+            if (kind[node] == TOKEN) {
+                observer.whenShift(statuses[state[node]], tokens[token[node]]);
+            } else if (node == root) {
+                observer.whenAccept(statuses[state[node]]);
+            } else if (units || firstChild[node] == NONE || nextSibling[firstChild[node]] != NONE) {
+                observer.whenReduce(statuses[state[node]], productions[kind[node]]);
+            }
+        }
+    }
+
+    /**
+     * 清空整棵树, 保留已分配的数组以供下一次建树使用
+     */
+    public void clear() {
+        Arrays.fill(tokens, 0, tokenCount, null);
+        count = 0;
+        tokenCount = 0;
+        root = NONE;
+    }
+
+    /**
+     * 加入一个叶结点
+     *
+     * @return 结点编号
+     */
+    int addToken(Status status, Token value) {
+        if (tokenCount == tokens.length) {
+            tokens = Arrays.copyOf(tokens, tokens.length * 2);
+        }
+        tokens[tokenCount] = value;
+
+        final var node = allocate(TOKEN, status);
+        token[node] = tokenCount++;
+        return node;
+    }
+
+    /**
+     * 加入一个内部结点, 以 children[from, from + length) 为其子结点
+     *
+     * @return 结点编号
+     */
+    int addNode(Status status, Production production, int[] children, int from, int length) {
+        final var index = production.index();
+        if (index >= productions.length) {
+            productions = Arrays.copyOf(productions, index + 1);
+        }
+        productions[index] = production;
+
+        final var node = allocate(index, status);
+        token[node] = NONE;
+        if (length > 0) {
+            firstChild[node] = children[from];
+            for (int i = from; i < from + length; i++) {
+                parent[children[i]] = node;
+                nextSibling[children[i]] = i + 1 < from + length ? children[i + 1] : NONE;
+            }
+        }
+        return node;
+    }
+
+    void setRoot(int node) {
+        root = node;
+    }
+
+    private int allocate(int nodeKind, Status status) {
+        if (count == kind.length) {
+            final var capacity = kind.length * 2;
+            kind = Arrays.copyOf(kind, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            token = Arrays.copyOf(token, capacity);
+            state = Arrays.copyOf(state, capacity);
+        }
+
+        final var stateIndex = status.index();
+        if (stateIndex >= statuses.length) {
+            statuses = Arrays.copyOf(statuses, Math.max(stateIndex + 1, statuses.length * 2));
+        }
+        statuses[stateIndex] = status;
+
+        final var node = count++;
+        kind[node] = nodeKind;
+        firstChild[node] = NONE;
+        nextSibling[node] = NONE;
+        parent[node] = NONE;
+        state[node] = stateIndex;
+        return node;
+    }
+
+    private int[] kind = new int[INITIAL_CAPACITY];
+    private int[] firstChild = new int[INITIAL_CAPACITY];
+    private int[] nextSibling = new int[INITIAL_CAPACITY];
+    private int[] parent = new int[INITIAL_CAPACITY];
+    private int[] token = new int[INITIAL_CAPACITY];
+    private int[] state = new int[INITIAL_CAPACITY];
+    private int count = 0;
+    private int root = NONE;
+
+    /**
+     * 按 token 下标存放的 token, 以及按编号存放的状态与产生式, 后两者只有分析表大小那么多
+     */
+    private Token[] tokens = new Token[INITIAL_CAPACITY];
+    private int tokenCount = 0;
+    private Status[] statuses = new Status[64];
+    private Production[] productions = new Production[16];
+
+    private static final int INITIAL_CAPACITY = 256;
+}
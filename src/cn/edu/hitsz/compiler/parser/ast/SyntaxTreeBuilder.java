@@ -0,0 +1,86 @@
+package cn.edu.hitsz.compiler.parser.ast;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.ActionObserver;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.Arrays;
+
+/**
+ * 在语法分析过程中建立 {@link SyntaxTree} 的观察者
+ * <br>
+ * 与分析栈对应地维护一个结点编号栈: 移入时压入新的叶结点, 规约时弹出产生式体对应的结点, 将它们链为新内部结点的子结点后压入该结点,
+ * 接受时以开始产生式将栈中剩余的结点归为根结点. 各遍分析之后在树上进行, 不必再各自注册为观察者.
+ * <br>
+ * 同一个建树器可以在多次编译之间复用: 每次分析前调用 {@link #reset}, 树与结点栈的数组都会保留.
+ */
+public class SyntaxTreeBuilder implements ActionObserver {
+    /**
+     * @param beginProduction 开始产生式, 接受时以它建立根结点
+     */
+    public SyntaxTreeBuilder(Production beginProduction) {
+        this(beginProduction, new SyntaxTree());
+    }
+
+    /**
+     * @param beginProduction 开始产生式, 接受时以它建立根结点
+     * @param tree            建立在其中的树, 会先被清空
+     */
+    public SyntaxTreeBuilder(Production beginProduction, SyntaxTree tree) {
+        this.beginProduction = beginProduction;
+        this.tree = tree;
+        tree.clear();
+    }
+
+    /**
+     * @return 建立的树, 在接受之后才完整
+     */
+    public SyntaxTree getTree() {
+        return tree;
+    }
+
+    /**
+     * 清空树与结点栈, 准备下一次分析
+     */
+    public void reset() {
+        tree.clear();
+        top = -1;
+    }
+
+    @Override
+    public void whenShift(Status currentStatus, Token currentToken) {
+        push(tree.addToken(currentStatus, currentToken));
+    }
+
+    @Override
+    public void whenReduce(Status currentStatus, Production production) {
+        final var length = production.body().size();
+        top -= length;
+        push(tree.addNode(currentStatus, production, nodes, top + 1, length));
+    }
+
+    @Override
+    public void whenAccept(Status currentStatus) {
+        tree.setRoot(tree.addNode(currentStatus, beginProduction, nodes, 0, top + 1));
+        top = -1;
+    }
+
+    @Override
+    public void setSymbolTable(SymbolTable table) {
+        // do nothing
+    }
+
+    private void push(int node) {
+        if (++top == nodes.length) {
+            nodes = Arrays.copyOf(nodes, nodes.length * 2);
+        }
+        nodes[top] = node;
+    }
+
+    private final Production beginProduction;
+    private final SyntaxTree tree;
+    private int[] nodes = new int[64];
+    private int top = -1;
+}
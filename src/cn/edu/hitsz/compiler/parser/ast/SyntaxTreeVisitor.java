@@ -0,0 +1,29 @@
+package cn.edu.hitsz.compiler.parser.ast;
+
+/**
+ * 语法树的访问者, 见 {@link SyntaxTree#walk}
+ * <br>
+ * 结点只以编号给出, 其种类, 子结点与 token 等都通过 tree 查询.
+ */
+public interface SyntaxTreeVisitor {
+    /**
+     * 进入一个内部结点, 在访问其子结点之前调用
+     *
+     * @return 是否访问其子结点; 返回 false 时跳过整棵子树, 也不会调用 {@link #leave}
+     */
+    default boolean enter(SyntaxTree tree, int node) {
+        return true;
+    }
+
+    /**
+     * 离开一个内部结点, 在访问完其所有子结点之后调用
+     */
+    default void leave(SyntaxTree tree, int node) {
+    }
+
+    /**
+     * 访问一个叶结点
+     */
+    default void visitToken(SyntaxTree tree, int node) {
+    }
+}
@@ -0,0 +1,61 @@
+package cn.edu.hitsz.compiler.parser.sdt;
+
+import java.util.Arrays;
+
+/**
+ * 语法制导翻译的属性栈, 与分析栈一一对应, 由所有阶段共用
+ * <br>
+ * 每个文法符号在栈中占一格: 终结符是移入时的 Token 本身, 非终结符是其综合属性 (如 addr 为 IRValue, type 为 SourceCodeType),
+ * 没有属性时为 null. 因此移入时不必构造任何占位对象, 而属性的类型转换 (如将标识符 Token 视为 IR 变量) 推迟到真正读取时才进行,
+ * 见 {@link SyntaxDirectedTranslator}. 规约时只需移动栈顶下标即可一次弹出整个产生式体.
+ */
+public final class AttributeStack {
+    /**
+     * @param attribute 压入的属性
+     */
+    public void push(Object attribute) {
+        if (++top == slots.length) {
+            slots = Arrays.copyOf(slots, slots.length * 2);
+        }
+        slots[top] = attribute;
+    }
+
+    /**
+     * @param depth 距栈顶的深度, 栈顶为 0
+     * @return 该位置的属性
+     */
+    public Object peek(int depth) {
+        return slots[top - depth];
+    }
+
+    /**
+     * 弹出 count 个属性, 再压入 attribute
+     * <br>
+     * 被弹出的格子不清空, 其中的对象会在被之后的压入覆盖时才释放
+     *
+     * @param count     弹出的个数, 即产生式体的长度
+     * @param attribute 压入的属性, 即产生式头的属性
+     */
+    public void reduce(int count, Object attribute) {
+        top -= count;
+        push(attribute);
+    }
+
+    /**
+     * @return 栈中属性的个数
+     */
+    public int size() {
+        return top + 1;
+    }
+
+    /**
+     * 清空栈
+     */
+    public void clear() {
+        Arrays.fill(slots, 0, top + 1, null);
+        top = -1;
+    }
+
+    private Object[] slots = new Object[64];
+    private int top = -1;
+}
@@ -0,0 +1,17 @@
+package cn.edu.hitsz.compiler.parser.sdt;
+
+/**
+ * 绑定到一条产生式上的语义动作, 在规约该产生式时执行
+ * <br>
+ * 执行时产生式体各符号的属性仍位于属性栈顶 (体的最后一个符号在栈顶), 动作只读取它们而不改变栈, 并返回产生式头的属性;
+ * 随后由 {@link SyntaxDirectedTranslator} 一次弹出整个产生式体并压入该属性.
+ */
+@FunctionalInterface
+public interface SemanticAction {
+    /**
+     * @param attributes 属性栈
+     * @param translator 执行动作的翻译器, 提供符号表与 IR 的输出
+     * @return 产生式头的属性
+     */
+    Object execute(AttributeStack attributes, SyntaxDirectedTranslator translator);
+}
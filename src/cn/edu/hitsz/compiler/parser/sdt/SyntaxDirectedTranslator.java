@@ -0,0 +1,191 @@
+package cn.edu.hitsz.compiler.parser.sdt;
+
+import cn.edu.hitsz.compiler.ir.IRValue;
+import cn.edu.hitsz.compiler.ir.IRVariable;
+import cn.edu.hitsz.compiler.ir.Instruction;
+import cn.edu.hitsz.compiler.ir.InstructionBuffer;
+import cn.edu.hitsz.compiler.ir.InstructionKind;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.ActionObserver;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SourceCodeType;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 语法制导翻译器: 按翻译方案 ({@link TranslationScheme}) 在规约时执行语义动作的观察者
+ * <br>
+ * 所有阶段共用同一个 {@link AttributeStack}: 移入时压入 Token 本身, 规约时以产生式编号取出预先编译的动作执行, 再一次弹出整个产生式体
+ * 并压入头的属性. 没有动作的产生式不必执行任何代码, 体长为 1 时栈也保持不变.
+ * <br>
+ * 属性栈中的 Token 在被读取时才按需转换: 作为地址时, 立即数类 (如 IntConst) 编码为立即数, 其余 (如 id) 编码为
+ * 同名的具名 {@link IRVariable}; 作为名字时取其文本; 作为类型时取其对应的源语言类型.
+ * <br>
+ * 带有编号的标识符 ({@link Token#getId()}) 以编号查询符号表, 其 IR 变量也带上该编号并共用符号表中的名字字符串,
+ * 不再对标识符文本求散列或重新解码.
+ * <br>
+ * 生成的 IR 存放在 {@link InstructionBuffer} 中: 作为操作数的 Token 直接编码为标识符编号或立即数, 不构造 IR 值对象,
+ * {@link Instruction} 只在通过 {@link #getIR()} 访问时才构造.
+ */
+public class SyntaxDirectedTranslator implements ActionObserver {
+    /**
+     * 以默认的翻译方案执行所有阶段
+     */
+    public SyntaxDirectedTranslator() {
+        this(TranslationScheme.getDefault(), EnumSet.allOf(TranslationPhase.class));
+    }
+
+    /**
+     * @param scheme 翻译方案
+     * @param phases 需要执行的阶段
+     */
+    public SyntaxDirectedTranslator(TranslationScheme scheme, Set<TranslationPhase> phases) {
+        this.scheme = scheme;
+        this.actions = scheme.actions(phases);
+        this.bodyLengths = scheme.bodyLengths();
+        this.wantsUnitReductions = scheme.hasUnitActions(phases);
+    }
+
+    @Override
+    public void whenShift(Status currentStatus, Token currentToken) {
+        attributes.push(currentToken);
+    }
+
+    @Override
+    public void whenReduce(Status currentStatus, Production production) {
+        final var index = production.index();
+        final var action = actions[index];
+        if (action != null) {
+            attributes.reduce(bodyLengths[index], action.execute(attributes, this));
+        } else if (bodyLengths[index] != 1) {
+            attributes.reduce(bodyLengths[index], null);
+        }
+    }
+
+    @Override
+    public void whenAccept(Status currentStatus) {
+    }
+
+    @Override
+    public void setSymbolTable(SymbolTable table) {
+        this.table = table;
+    }
+
+    /**
+     * 所需阶段中的单位产生式都没有需要执行的动作时, 不必收到单位规约的通知
+     */
+    @Override
+    public boolean wantsUnitReductions() {
+        return wantsUnitReductions;
+    }
+
+    /**
+     * @return 生成的 IR, 每次访问时才由 {@link #getInstructions()} 构造对应的指令
+     */
+    public List<Instruction> getIR() {
+        return instructions.asList();
+    }
+
+    /**
+     * @return 紧凑存放的生成的 IR
+     */
+    public InstructionBuffer getInstructions() {
+        return instructions;
+    }
+
+    public void dumpIR(String path) {
+        instructions.dump(path);
+    }
+
+    /**
+     * @return 属性的名字是否在符号表中; 未设置符号表时视为都在
+     */
+    boolean lookup(Object attribute) {
+        if (table == null) {
+            return true;
+        }
+        final var id = idOf(attribute);
+        return id != Token.NO_ID ? table.has(id) : table.has(name(attribute));
+    }
+
+    /**
+     * 在符号表中登记属性的名字的类型
+     */
+    void update(Object attribute, SourceCodeType type) {
+        final var id = idOf(attribute);
+        (id != Token.NO_ID ? table.get(id) : table.get(name(attribute))).setType(type);
+    }
+
+    /**
+     * 生成一条指令, 各位置的属性作为地址; 不使用的位置为 null
+     */
+    void emit(InstructionKind kind, Object result, Object lhs, Object rhs) {
+        instructions.add(kind,
+            result == null ? InstructionBuffer.UNUSED : operand(result),
+            operand(lhs),
+            rhs == null ? InstructionBuffer.UNUSED : operand(rhs));
+    }
+
+    /**
+     * @return 属性作为地址时的操作数
+     */
+    private long operand(Object attribute) {
+        if (attribute instanceof Token token) {
+            if (scheme.isConstant(token.getKind())) {
+                return InstructionBuffer.immediate(token.getIntValue());
+            }
+            final var id = idOf(token);
+            return id != Token.NO_ID ? instructions.name(id, table.nameOf(id))
+                : instructions.operandOf(IRVariable.named(token.getText()));
+        }
+        return instructions.operandOf((IRValue) attribute);
+    }
+
+    /**
+     * @return 属性作为名字时的文本
+     */
+    String name(Object attribute) {
+        if (attribute instanceof Token token) {
+            return token.getText();
+        }
+        throw new RuntimeException("Attribute has no name: " + attribute);
+    }
+
+    /**
+     * @return 属性作为类型时的源语言类型
+     */
+    SourceCodeType type(Object attribute) {
+        if (attribute instanceof Token token) {
+            return scheme.typeOf(token.getKind());
+        }
+        return (SourceCodeType) attribute;
+    }
+
+    /**
+     * @return 属性为带有编号的 Token 且设置了符号表时为其编号, 否则为 {@link Token#NO_ID}
+     */
+    private int idOf(Object attribute) {
+        return table != null && attribute instanceof Token token ? token.getId() : Token.NO_ID;
+    }
+
+    /**
+     * 正在执行的动作中产生式头的属性
+     */
+    Object head;
+    /**
+     * 最近一次查找的结果
+     */
+    boolean found;
+
+    private final TranslationScheme scheme;
+    private final SemanticAction[] actions;
+    private final int[] bodyLengths;
+    private final boolean wantsUnitReductions;
+    private final AttributeStack attributes = new AttributeStack();
+    private final InstructionBuffer instructions = new InstructionBuffer();
+    private SymbolTable table;
+}
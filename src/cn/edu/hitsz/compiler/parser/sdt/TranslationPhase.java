@@ -0,0 +1,18 @@
+package cn.edu.hitsz.compiler.parser.sdt;
+
+/**
+ * 翻译方案中语义动作所属的阶段
+ * <br>
+ * 每条语义动作按其读写的属性与调用的函数归入一个阶段: 类型属性 (type) 与 update 属于语义检查, 地址属性 (addr), newtemp 与
+ * gencode 属于 IR 生成. {@link SyntaxDirectedTranslator} 可以只执行其中一部分阶段.
+ */
+public enum TranslationPhase {
+    /**
+     * 语义检查: 为声明的标识符在符号表中登记类型
+     */
+    SEMANTIC,
+    /**
+     * IR 生成
+     */
+    IR
+}
@@ -0,0 +1,449 @@
+package cn.edu.hitsz.compiler.parser.sdt;
+
+import cn.edu.hitsz.compiler.ir.IRVariable;
+import cn.edu.hitsz.compiler.ir.InstructionKind;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Term;
+import cn.edu.hitsz.compiler.symtab.SourceCodeType;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 翻译方案 (syntax_directed_translation_scheme.txt), 将其中的语义动作预先编译为以产生式编号为下标的 {@link SemanticAction} 数组
+ * <br>
+ * 方案的每一行是一条产生式, 其后可以跟一对花括号括起的语义动作, 动作之间以分号分隔. 支持的动作有:
+ * <ul>
+ *     <li>{@code X.attr = Y.attr}, {@code X.attr = Y}: 复制属性, X 须为产生式头</li>
+ *     <li>{@code X.addr = newtemp()}: 新建临时变量</li>
+ *     <li>{@code gencode(OP, ...)}: 生成一条 IR, OP 为 {@link InstructionKind} 之一</li>
+ *     <li>{@code p = lookup(id.name)}: 在符号表中查找标识符, 之后可以以 {@code if p then 动作} 使后者仅在找到时执行</li>
+ *     <li>{@code update(id.name, D.type)}: 在符号表中登记标识符的类型</li>
+ * </ul>
+ * 符号名与产生式头相同时指产生式头, 加撇号 (如 {@code E'}) 时指产生式体中的同名符号; 其余符号名指产生式体中唯一的同名符号.
+ * 终结符的属性就是其 Token: 以 {@code .lexcal} 引用的终结符 (如 IntConst) 作为地址时是立即数, 其余 (如 id) 是同名的 IR 变量;
+ * 在类型属性中直接引用的终结符 (如 int) 是同名的源语言类型.
+ * <br>
+ * 复制属性只是将属性栈中的对象原样复制, 类型转换推迟到读取时进行. 因此体长为 1 且只把体的属性复制给头的动作 (如 E -> A, B -> id)
+ * 不必执行: 规约前后栈顶的对象相同. 这样的产生式编译后没有动作, 驱动程序消去单位产生式链时也不必通知 (见
+ * {@link SyntaxDirectedTranslator#wantsUnitReductions()}).
+ */
+public final class TranslationScheme {
+    /**
+     * @return 由 {@link FilePathConfig#TRANSLATION_SCHEME_PATH} 读取的翻译方案, 只在第一次调用时读取
+     */
+    public static synchronized TranslationScheme getDefault() {
+        if (defaultScheme == null) {
+            defaultScheme = load(FilePathConfig.TRANSLATION_SCHEME_PATH);
+        }
+        return defaultScheme;
+    }
+
+    /**
+     * 读取翻译方案并解析其中的语义动作. 须在 {@link TokenKind#loadTokenKinds()} 之后调用
+     *
+     * @param path 文件路径
+     * @return 翻译方案
+     */
+    public static TranslationScheme load(String path) {
+        return new TranslationScheme(FileUtils.readLines(path));
+    }
+
+    /**
+     * @param phases 需要执行的阶段
+     * @return 以产生式编号为下标的语义动作, 没有 (需要执行的) 动作的产生式为 null
+     */
+    public SemanticAction[] actions(Set<TranslationPhase> phases) {
+        return compiled.computeIfAbsent(EnumSet.copyOf(phases), this::compile);
+    }
+
+    /**
+     * @param phases 需要执行的阶段
+     * @return 是否有体长为 1 的产生式在这些阶段中有需要执行的动作
+     */
+    public boolean hasUnitActions(Set<TranslationPhase> phases) {
+        final var actions = actions(phases);
+        for (int production = 0; production < actions.length; production++) {
+            if (actions[production] != null && bodyLengths[production] == 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param production 产生式编号
+     * @return 该产生式体的长度
+     */
+    public int bodyLength(int production) {
+        return bodyLengths[production];
+    }
+
+    /**
+     * @return 以产生式编号为下标的各产生式体的长度
+     */
+    int[] bodyLengths() {
+        return bodyLengths;
+    }
+
+    /**
+     * @param kind token 类型
+     * @return 该类型的 token 作为地址时是否为立即数
+     */
+    boolean isConstant(TokenKind kind) {
+        return constantKinds.contains(kind);
+    }
+
+    /**
+     * @param kind token 类型
+     * @return 该类型的 token 作为类型属性时对应的源语言类型
+     */
+    SourceCodeType typeOf(TokenKind kind) {
+        final var type = typeByKind.get(kind);
+        if (type == null) {
+            throw new RuntimeException("Token kind " + kind + " does not name a type");
+        }
+        return type;
+    }
+
+    private TranslationScheme(List<String> lines) {
+        final var productions = GrammarInfo.getProductionsInOrder();
+        final var count = productions.stream().mapToInt(Production::index).max().orElse(0) + 1;
+        this.bodyLengths = new int[count];
+        for (final var production : productions) {
+            bodyLengths[production.index()] = production.body().size();
+        }
+        this.statements = new ArrayList<>(Collections.nCopies(count, List.of()));
+        this.productions = new Production[count];
+
+        for (final var line : lines) {
+            if (line.isBlank()) {
+                continue;
+            }
+            final var end = line.indexOf(';');
+            if (end < 0) {
+                throw new RuntimeException("Missing ';' after production: " + line);
+            }
+            final var production = GrammarInfo.getProductionByText(line.substring(0, end).trim());
+            this.productions[production.index()] = production;
+
+            final var action = line.substring(end + 1).trim();
+            if (action.isEmpty()) {
+                continue;
+            }
+            if (!action.startsWith("{") || !action.endsWith("}")) {
+                throw new RuntimeException("Semantic actions must be enclosed in braces: " + line);
+            }
+            final var parsed = new ArrayList<Statement>();
+            for (final var text : action.substring(1, action.length() - 1).split(";")) {
+                if (!text.isBlank()) {
+                    parsed.add(parseStatement(production, text.trim()));
+                }
+            }
+            statements.set(production.index(), parsed);
+        }
+    }
+
+    /**
+     * 一条语义动作
+     */
+    private sealed interface Statement {
+    }
+
+    /**
+     * 复制属性, 或以 newtemp 新建临时变量 (source 为 null) 赋给产生式头
+     */
+    private record Assign(TranslationPhase phase, Reference source) implements Statement {
+    }
+
+    private record Lookup(String variable, Reference name) implements Statement {
+    }
+
+    private record Guard(String variable, Statement body) implements Statement {
+    }
+
+    private record GenCode(InstructionKind kind, List<Reference> operands) implements Statement {
+    }
+
+    private record Update(Reference name, Reference type) implements Statement {
+    }
+
+    /**
+     * 对产生式中一个符号的引用
+     *
+     * @param position 0 为产生式头, 其余为产生式体中的位置 (从 1 开始)
+     */
+    private record Reference(int position) {
+    }
+
+    /**
+     * 一步已编译的动作. 动作之间通过翻译器的 head 与 found 传递产生式头的属性与查找的结果
+     */
+    @FunctionalInterface
+    private interface Step {
+        void run(AttributeStack attributes, SyntaxDirectedTranslator translator);
+    }
+
+    private Statement parseStatement(Production production, String text) {
+        var matcher = LOOKUP.matcher(text);
+        if (matcher.matches()) {
+            return new Lookup(matcher.group(1), parseReference(production, matcher.group(2), "name"));
+        }
+        matcher = GUARD.matcher(text);
+        if (matcher.matches()) {
+            return new Guard(matcher.group(1), parseStatement(production, matcher.group(2).trim()));
+        }
+        matcher = CALL.matcher(text);
+        if (matcher.matches()) {
+            final var arguments = matcher.group(2).isBlank() ? new String[0] : matcher.group(2).split(",");
+            switch (matcher.group(1)) {
+                case "gencode" -> {
+                    if (arguments.length == 0) {
+                        throw new RuntimeException("Missing instruction kind in: " + text);
+                    }
+                    final var kind = InstructionKind.valueOf(arguments[0].trim());
+                    final var arity = kind.isBinary() ? 3 : kind.isUnary() ? 2 : 1;
+                    if (arguments.length - 1 != arity) {
+                        throw new RuntimeException("%s takes %d operands: %s".formatted(kind, arity, text));
+                    }
+                    final var operands = new ArrayList<Reference>();
+                    for (int i = 1; i < arguments.length; i++) {
+                        operands.add(parseReference(production, arguments[i].trim(), "addr"));
+                    }
+                    return new GenCode(kind, operands);
+                }
+                case "update" -> {
+                    if (arguments.length != 2) {
+                        throw new RuntimeException("update takes a name and a type: " + text);
+                    }
+                    return new Update(parseReference(production, arguments[0].trim(), "name"),
+                        parseReference(production, arguments[1].trim(), "type"));
+                }
+                default -> throw new RuntimeException("Unknown function in semantic action: " + text);
+            }
+        }
+        matcher = ASSIGN.matcher(text);
+        if (matcher.matches()) {
+            final var target = parseReference(production, matcher.group(1) + "." + matcher.group(2), matcher.group(2));
+            if (target.position() != 0) {
+                throw new RuntimeException("Only attributes of the head can be assigned: " + text);
+            }
+            final var phase = phaseOf(matcher.group(2), text);
+            final var source = matcher.group(3).trim();
+            if ("newtemp()".equals(source)) {
+                if (phase != TranslationPhase.IR) {
+                    throw new RuntimeException("newtemp() can only be assigned to an address: " + text);
+                }
+                return new Assign(phase, null);
+            }
+            return new Assign(phase, parseReference(production, source, matcher.group(2)));
+        }
+        throw new RuntimeException("Unknown semantic action: " + text);
+    }
+
+    /**
+     * 解析形如 {@code X}, {@code X'}, {@code X.attr} 的引用, 并登记终结符的类型转换
+     *
+     * @param usage 引用处需要的属性 (addr, type 或 name)
+     */
+    private Reference parseReference(Production production, String text, String usage) {
+        final var matcher = REFERENCE.matcher(text);
+        if (!matcher.matches()) {
+            throw new RuntimeException("Malformed reference '%s' in production %s".formatted(text, production));
+        }
+        final var name = matcher.group(1);
+        final var primed = matcher.group(2) != null;
+        final var attribute = matcher.group(3);
+
+        var position = -1;
+        if (!primed && name.equals(production.head().getTermName())) {
+            position = 0;
+        } else {
+            final var body = production.body();
+            for (int i = 0; i < body.size(); i++) {
+                if (body.get(i).getTermName().equals(name)) {
+                    if (position > 0) {
+                        throw new RuntimeException("Ambiguous reference '%s' in production %s".formatted(text, production));
+                    }
+                    position = i + 1;
+                }
+            }
+        }
+        if (position < 0) {
+            throw new RuntimeException("Unknown symbol '%s' in production %s".formatted(text, production));
+        }
+
+        final Term term = position == 0 ? production.head() : production.body().get(position - 1);
+        if (term instanceof TokenKind kind) {
+            if ("lexcal".equals(attribute)) {
+                constantKinds.add(kind);
+            } else if (attribute == null && "type".equals(usage)) {
+                typeByKind.put(kind, Arrays.stream(SourceCodeType.values())
+                    .filter(type -> type.name().equalsIgnoreCase(kind.getIdentifier()))
+                    .findFirst()
+                    .orElseThrow(() -> new RuntimeException("Token kind %s does not name a type".formatted(kind))));
+            }
+        }
+        return new Reference(position);
+    }
+
+    private static TranslationPhase phaseOf(String attribute, String text) {
+        return switch (attribute) {
+            case "addr" -> TranslationPhase.IR;
+            case "type" -> TranslationPhase.SEMANTIC;
+            default -> throw new RuntimeException("Unknown attribute '%s' in: %s".formatted(attribute, text));
+        };
+    }
+
+    private static TranslationPhase phaseOf(Statement statement) {
+        if (statement instanceof Assign assign) {
+            return assign.phase();
+        } else if (statement instanceof Guard guard) {
+            return phaseOf(guard.body());
+        } else if (statement instanceof GenCode) {
+            return TranslationPhase.IR;
+        } else if (statement instanceof Update) {
+            return TranslationPhase.SEMANTIC;
+        }
+        throw new RuntimeException("A lookup has no phase of its own");
+    }
+
+    /**
+     * @return 该动作是否只是将体长为 1 的产生式体的属性复制给头 (可能以查找为条件), 从而不必执行
+     */
+    private boolean isTrivial(int production, Statement statement) {
+        if (statement instanceof Assign assign) {
+            return bodyLengths[production] == 1 && assign.source() != null && assign.source().position() == 1;
+        }
+        return statement instanceof Guard guard && isTrivial(production, guard.body());
+    }
+
+    private SemanticAction[] compile(Set<TranslationPhase> phases) {
+        final var actions = new SemanticAction[statements.size()];
+        for (int production = 0; production < statements.size(); production++) {
+            // 只保留所需阶段中需要执行的动作, 以及仍被这些动作用到的查找
+            final var index = production;
+            final var kept = statements.get(production).stream()
+                .filter(statement -> statement instanceof Lookup
+                    || (phases.contains(phaseOf(statement)) && !isTrivial(index, statement)))
+                .toList();
+            final var used = kept.stream()
+                .filter(statement -> statement instanceof Guard)
+                .map(statement -> ((Guard) statement).variable())
+                .toList();
+            final var steps = kept.stream()
+                .filter(statement -> !(statement instanceof Lookup lookup) || used.contains(lookup.variable()))
+                .toList();
+            if (steps.isEmpty()) {
+                continue;
+            }
+
+            final var compiledSteps = new ArrayList<Step>();
+            String variable = null;
+            for (final var statement : steps) {
+                if (statement instanceof Lookup lookup) {
+                    variable = lookup.variable();
+                } else if (statement instanceof Guard guard && !guard.variable().equals(variable)) {
+                    throw new RuntimeException("Condition '%s' is not the result of a preceding lookup in production %s"
+                        .formatted(guard.variable(), productions[production]));
+                }
+                compiledSteps.add(compileStep(production, statement));
+            }
+            actions[production] = sequence(bodyLengths[production], compiledSteps.toArray(new Step[0]));
+        }
+        return actions;
+    }
+
+    private static SemanticAction sequence(int bodyLength, Step[] steps) {
+        return (attributes, translator) -> {
+            // 未赋值时, 体长为 1 的产生式头继承体的属性, 其余没有属性
+            translator.head = bodyLength == 1 ? attributes.peek(0) : null;
+            for (final var step : steps) {
+                step.run(attributes, translator);
+            }
+            return translator.head;
+        };
+    }
+
+    private Step compileStep(int production, Statement statement) {
+        final var bodyLength = bodyLengths[production];
+        if (statement instanceof Assign assign) {
+            if (assign.source() == null) {
+                return (attributes, translator) -> translator.head = IRVariable.temp();
+            }
+            final var source = assign.source().position();
+            return (attributes, translator) -> translator.head = read(attributes, translator, bodyLength, source);
+        } else if (statement instanceof Lookup lookup) {
+            final var name = lookup.name().position();
+            return (attributes, translator) ->
+                translator.found = translator.lookup(read(attributes, translator, bodyLength, name));
+        } else if (statement instanceof Guard guard) {
+            final var body = compileStep(production, guard.body());
+            return (attributes, translator) -> {
+                if (translator.found) {
+                    body.run(attributes, translator);
+                }
+            };
+        } else if (statement instanceof GenCode genCode) {
+            return compileGenCode(bodyLength, genCode);
+        }
+        final var update = (Update) statement;
+        final var name = update.name().position();
+        final var type = update.type().position();
+        return (attributes, translator) -> translator.update(
+            read(attributes, translator, bodyLength, name),
+            translator.type(read(attributes, translator, bodyLength, type)));
+    }
+
+    private static Step compileGenCode(int bodyLength, GenCode genCode) {
+        final var kind = genCode.kind();
+        final var operands = genCode.operands().stream().mapToInt(Reference::position).toArray();
+        if (kind.isReturn()) {
+            return (attributes, translator) -> translator.emit(kind, null,
+                read(attributes, translator, bodyLength, operands[0]), null);
+        } else if (kind.isUnary()) {
+            return (attributes, translator) -> translator.emit(kind,
+                read(attributes, translator, bodyLength, operands[0]),
+                read(attributes, translator, bodyLength, operands[1]), null);
+        }
+        return (attributes, translator) -> translator.emit(kind,
+            read(attributes, translator, bodyLength, operands[0]),
+            read(attributes, translator, bodyLength, operands[1]),
+            read(attributes, translator, bodyLength, operands[2]));
+    }
+
+    /**
+     * @return 产生式中第 position 个符号当前的属性, 0 为产生式头
+     */
+    private static Object read(AttributeStack attributes, SyntaxDirectedTranslator translator, int bodyLength, int position) {
+        return position == 0 ? translator.head : attributes.peek(bodyLength - position);
+    }
+
+    private static final Pattern LOOKUP = Pattern.compile("(\\w+)\\s*=\\s*lookup\\((.+)\\)");
+    private static final Pattern GUARD = Pattern.compile("if\\s+(\\w+)\\s+then\\s+(.+)");
+    private static final Pattern CALL = Pattern.compile("(\\w+)\\((.*)\\)");
+    private static final Pattern ASSIGN = Pattern.compile("(\\w+)\\.(\\w+)\\s*=\\s*(.+)");
+    private static final Pattern REFERENCE = Pattern.compile("(\\w+)(')?(?:\\.(\\w+))?");
+
+    private static TranslationScheme defaultScheme = null;
+
+    private final int[] bodyLengths;
+    private final List<List<Statement>> statements;
+    private final Production[] productions;
+    private final Set<TokenKind> constantKinds = new HashSet<>();
+    private final Map<TokenKind, SourceCodeType> typeByKind = new HashMap<>();
+    private final Map<Set<TranslationPhase>, SemanticAction[]> compiled = new ConcurrentHashMap<>();
+}
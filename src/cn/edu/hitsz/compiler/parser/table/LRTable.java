@@ -42,6 +42,18 @@ public class LRTable {
         return statusInIndexOrder.get(0);
     }
 
+    /**
+     * 获得该表的稠密数组形式. 转换只在第一次调用时进行, 此后返回同一个对象
+     *
+     * @return 与本表等价的 {@link PackedLRTable}
+     */
+    public PackedLRTable pack() {
+        if (packed == null) {
+            packed = PackedLRTable.pack(statusInIndexOrder, terminals, nonTerminals, getInit());
+        }
+        return packed;
+    }
+
     public void dumpTable(String path) {
         final var text = new StringBuilder();
         // table head
@@ -82,7 +94,23 @@ public class LRTable {
         this.nonTerminals = nonTerminals;
     }
 
+    /**
+     * 由已有的稠密数组形式构造, 此后 {@link #pack()} 直接返回该对象
+     */
+    LRTable(List<Status> statusInIndexOrder, PackedLRTable packed) {
+        this(statusInIndexOrder, packed.terminals(), packed.nonTerminals());
+        this.packed = packed;
+    }
+
+    /**
+     * @return 按编号顺序排列的所有状态
+     */
+    List<Status> getStatusInIndexOrder() {
+        return statusInIndexOrder;
+    }
+
     private final List<Status> statusInIndexOrder;
     private final List<TokenKind> terminals;
     private final List<NonTerminal> nonTerminals;
+    private PackedLRTable packed = null;
 }
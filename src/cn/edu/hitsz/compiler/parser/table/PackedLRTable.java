@@ -0,0 +1,538 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 以稠密基本类型数组表示的 LR 分析表, 由 {@link LRTable#pack()} 构造
+ * <br>
+ * 状态以其编号 ({@link Status#index()}), 终结符与非终结符以其在表中的列号, 产生式以其编号 ({@link Production#index()}) 表示.
+ * ACTION 表是下标为 {@code 状态 * 终结符数 + 终结符列号} 的 int 数组, 每项是带标记的动作: 低两位为动作类型
+ * ({@link #ERROR}, {@link #SHIFT}, {@link #REDUCE}, {@link #ACCEPT}), 其余位为移入的目标状态或规约的产生式编号.
+ * GOTO 表同样按 {@code 状态 * 非终结符数 + 非终结符列号} 排列, 空白处为 -1.
+ * <br>
+ * 状态很多的表往往非常稀疏, 此时两表会自动改为以行位移法压缩存放 (见 {@link RowDisplacementTable}), 查表结果不变.
+ * <br>
+ * 驱动程序只需数组访问即可完成每一步分析; 只有在通知观察者时才需要通过 {@link #status(int)} 与 {@link #production(int)}
+ * 取回对应的对象.
+ * <br>
+ * {@link #withDefaultReductions} 可以对表做后处理, 加入默认规约并消去单位产生式链, 以减少分析的步数.
+ */
+public final class PackedLRTable {
+    /**
+     * 自动选择时, 压缩至少要使表缩小到原来的几分之一才值得
+     */
+    public static final double MIN_COMPRESSION_RATIO = 2.0;
+
+    public static final int ERROR = 0;
+    public static final int SHIFT = 1;
+    public static final int REDUCE = 2;
+    public static final int ACCEPT = 3;
+
+    /**
+     * @param action 带标记的动作
+     * @return 动作类型
+     */
+    public static int kindOf(int action) {
+        return action & 3;
+    }
+
+    /**
+     * @param action 带标记的动作
+     * @return 移入的目标状态, 或规约的产生式编号
+     */
+    public static int payloadOf(int action) {
+        return action >>> 2;
+    }
+
+    /**
+     * 将以 Status 对象表示的分析表转换为稠密数组形式
+     */
+    static PackedLRTable pack(List<Status> statuses, List<TokenKind> terminals, List<NonTerminal> nonTerminals, Status init) {
+        final var stateCount = statuses.stream().mapToInt(Status::index).max().orElse(-1) + 1;
+        final var terminalCount = terminals.size();
+        final var nonTerminalCount = nonTerminals.size();
+
+        final var statusByIndex = new Status[stateCount];
+        final var actions = new int[stateCount * terminalCount];
+        final var gotos = new int[stateCount * nonTerminalCount];
+        Arrays.fill(gotos, -1);
+
+        for (final var status : statuses) {
+            final var row = status.index();
+            statusByIndex[row] = status;
+            for (int column = 0; column < terminalCount; column++) {
+                actions[row * terminalCount + column] = encode(status.getAction(terminals.get(column)));
+            }
+            for (int column = 0; column < nonTerminalCount; column++) {
+                final var target = status.getGoto(nonTerminals.get(column));
+                if (!target.isError()) {
+                    gotos[row * nonTerminalCount + column] = target.index();
+                }
+            }
+        }
+
+        return new PackedLRTable(terminals, nonTerminals, statusByIndex, init.index(), actions, gotos, null);
+    }
+
+    /**
+     * @param terminals    各列的终结符
+     * @param nonTerminals 各列的非终结符
+     * @param statuses     以编号为下标的状态对象
+     * @param initState    起始状态
+     * @param actions      ACTION 表
+     * @param gotos        GOTO 表
+     * @param compress     是否压缩; 为 null 时仅当压缩能使表的大小缩小到 1 / {@link #MIN_COMPRESSION_RATIO} 以下时才压缩
+     */
+    PackedLRTable(List<TokenKind> terminals, List<NonTerminal> nonTerminals, Status[] statuses,
+                  int initState, int[] actions, int[] gotos, Boolean compress) {
+        this(terminals, nonTerminals, statuses, initState, actions, gotos, compress, null, null, null);
+    }
+
+    /**
+     * @param defaultActions 各状态的默认规约, 为 null 时没有
+     * @param unitChains     各状态被消去的单位产生式链在 chains 中的起点, 为 null 时没有
+     * @param chains         被消去的单位产生式链
+     * @see #withDefaultReductions
+     */
+    private PackedLRTable(List<TokenKind> terminals, List<NonTerminal> nonTerminals, Status[] statuses,
+                          int initState, int[] actions, int[] gotos, Boolean compress,
+                          int[] defaultActions, int[] unitChains, int[] chains) {
+        this.defaultActions = defaultActions;
+        this.unitChains = unitChains;
+        this.chains = chains;
+        this.terminals = terminals;
+        this.nonTerminals = nonTerminals;
+        this.terminalCount = terminals.size();
+        this.nonTerminalCount = nonTerminals.size();
+        this.initState = initState;
+        this.statuses = statuses;
+
+        // 稀疏的表改用行位移压缩, 此时不再保留稠密表
+        final var compressed = compress == Boolean.FALSE ? null
+            : new RowDisplacementTable(actions, gotos, statuses.length, terminalCount, nonTerminalCount);
+        final var denseSize = actions.length + gotos.length;
+        if (compressed != null && (compress == Boolean.TRUE || denseSize >= compressed.size() * MIN_COMPRESSION_RATIO)) {
+            this.comb = compressed;
+            this.actions = null;
+            this.gotos = null;
+            this.compressionRatio = (double) denseSize / compressed.size();
+        } else {
+            this.comb = null;
+            this.actions = actions;
+            this.gotos = gotos;
+            this.compressionRatio = 1.0;
+        }
+
+        // 码点到终结符列号的映射, 以 "码点 + 1" 为下标使 EOF 位于 0 号
+        final var maxCode = terminals.stream().mapToInt(TokenKind::getCode).max().orElse(-1);
+        this.columnByCode = new int[maxCode + 2];
+        Arrays.fill(columnByCode, -1);
+        for (int column = 0; column < terminalCount; column++) {
+            columnByCode[terminals.get(column).getCode() + 1] = column;
+        }
+
+        // 产生式按其编号 (即在语法文件中的行号) 存放
+        final var allProductions = GrammarInfo.getProductionsInOrder();
+        final var maxProduction = allProductions.stream().mapToInt(Production::index).max().orElse(0);
+        this.productions = new Production[maxProduction + 1];
+        this.bodyLengths = new int[maxProduction + 1];
+        this.headColumns = new int[maxProduction + 1];
+        for (final var production : allProductions) {
+            productions[production.index()] = production;
+            bodyLengths[production.index()] = production.body().size();
+            headColumns[production.index()] = nonTerminals.indexOf(production.head());
+        }
+    }
+
+    /**
+     * @return 起始状态
+     */
+    public int initState() {
+        return initState;
+    }
+
+    /**
+     * @param code 终结符 (token 类型) 的码点
+     * @return 该终结符的列号; 表中没有该终结符时为 -1
+     */
+    public int terminalColumn(int code) {
+        final var index = code + 1;
+        return index >= 0 && index < columnByCode.length ? columnByCode[index] : -1;
+    }
+
+    /**
+     * @param state          当前状态
+     * @param terminalColumn 当前终结符的列号, 为 -1 时视为错误
+     * @return 带标记的动作
+     */
+    public int action(int state, int terminalColumn) {
+        if (terminalColumn < 0) {
+            return ERROR;
+        }
+        return comb == null ? actions[state * terminalCount + terminalColumn] : comb.action(state, terminalColumn);
+    }
+
+    /**
+     * @param state 当前状态
+     * @return 该状态的默认规约 (带标记的动作); 没有时为 {@link #ERROR}, 此时须查看向前看符号
+     * @see #withDefaultReductions
+     */
+    public int defaultAction(int state) {
+        return defaultActions == null ? ERROR : defaultActions[state];
+    }
+
+    /**
+     * @param state 刚刚进入的状态
+     * @return 进入该状态时被消去的单位产生式链的编号; 没有时为 -1
+     * @see #withDefaultReductions
+     */
+    public int unitChainOf(int state) {
+        return unitChains == null ? -1 : unitChains[state];
+    }
+
+    /**
+     * @param chain 单位产生式链的编号
+     * @return 消去该链之前, 移入或 GOTO 原本进入的状态
+     */
+    public int unitChainEntered(int chain) {
+        return chains[chain + 1];
+    }
+
+    /**
+     * @param chain 单位产生式链的编号
+     * @return 链上被消去的规约数
+     */
+    public int unitChainLength(int chain) {
+        return chains[chain];
+    }
+
+    /**
+     * @param chain 单位产生式链的编号
+     * @param i     链上的第几次规约
+     * @return 该次规约的产生式编号
+     */
+    public int unitChainProduction(int chain, int i) {
+        return chains[chain + 2 + 2 * i];
+    }
+
+    /**
+     * @param chain 单位产生式链的编号
+     * @param i     链上的第几次规约
+     * @return 该次规约之后原本转移到的状态
+     */
+    public int unitChainState(int chain, int i) {
+        return chains[chain + 3 + 2 * i];
+    }
+
+    /**
+     * @param state      当前状态
+     * @param production 规约的产生式编号
+     * @return 规约出该产生式的头部后应转移到的状态; 没有时为 -1
+     */
+    public int gotoAfterReduce(int state, int production) {
+        return gotoOf(state, headColumns[production]);
+    }
+
+    /**
+     * @param state             当前状态
+     * @param nonTerminalColumn 非终结符的列号
+     * @return 应转移到的状态; 没有时为 -1
+     */
+    public int gotoOf(int state, int nonTerminalColumn) {
+        return comb == null ? gotos[state * nonTerminalCount + nonTerminalColumn] : comb.gotoOf(state, nonTerminalColumn);
+    }
+
+    /**
+     * @return 表是否以行位移法压缩存放
+     */
+    public boolean isCompressed() {
+        return comb != null;
+    }
+
+    /**
+     * @return 稠密表的大小与实际占用大小 (以 int 计) 之比, 未压缩时为 1
+     */
+    public double compressionRatio() {
+        return compressionRatio;
+    }
+
+    /**
+     * @return 与本表等价, 以行位移法压缩存放的表
+     */
+    public PackedLRTable compressed() {
+        return comb != null ? this : new PackedLRTable(terminals, nonTerminals, statuses, initState, actions, gotos,
+            Boolean.TRUE, defaultActions, unitChains, chains);
+    }
+
+    /**
+     * @return 与本表等价, 以稠密数组存放的表
+     */
+    public PackedLRTable dense() {
+        return comb == null ? this : new PackedLRTable(terminals, nonTerminals, statuses, initState, denseActions(),
+            denseGotos(), Boolean.FALSE, defaultActions, unitChains, chains);
+    }
+
+    /**
+     * 对表做后处理, 得到与之等价而分析步数更少的表
+     * <br>
+     * 默认规约: 若某状态中所有非错误的动作都是对同一产生式的规约, 则在该状态下不必查看向前看符号即可规约 ({@link #defaultAction}).
+     * 错误仍会在移入出错的 token 之前被发现, 只是可能推迟到若干次规约之后, 因此报告错误时的状态可能不同.
+     * <br>
+     * 单位产生式链的消去: 若状态 q 的默认规约是体长为 1 的产生式 A -> X, 则从状态 s 经 X 进入 q 之后, 必然立即规约并转移到
+     * GOTO(s, A). 于是 s 经 X 的转移 (移入或 GOTO) 可以直接指向 GOTO(s, A), 若后者仍是这样的状态则沿链继续. 栈高不变,
+     * 链上的规约则不再执行. 链的终点在表中复制为一个新状态, 其动作与 GOTO 与原状态相同, 状态对象也是原状态的对象,
+     * 只是额外记录了被消去的链 ({@link #unitChainOf}), 使驱动程序可以将这些规约补报给需要它们的观察者.
+     *
+     * @param collapseUnitChains 是否消去单位产生式链
+     * @return 新的分析表, 压缩方式与本表相同
+     */
+    public PackedLRTable withDefaultReductions(boolean collapseUnitChains) {
+        final var stateCount = statuses.length;
+        final var actions = denseActions().clone();
+        final var gotos = denseGotos().clone();
+        final var defaults = new int[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            defaults[state] = consistentReduction(actions, state);
+        }
+        if (!collapseUnitChains) {
+            return new PackedLRTable(terminals, nonTerminals, statuses, initState, actions, gotos, comb != null,
+                defaults, null, null);
+        }
+
+        // 依据原表沿链求出各转移的新目标, 同一条链 (连同原本进入的状态与链上的各状态) 只复制一个新状态
+        final var originalGotos = gotos.clone();
+        final var clones = new HashMap<List<Integer>, Integer>();
+        final var cloned = new ArrayList<List<Integer>>();
+        for (int state = 0; state < stateCount; state++) {
+            for (int column = 0; column < terminalCount; column++) {
+                final var index = state * terminalCount + column;
+                if (kindOf(actions[index]) == SHIFT) {
+                    final var target = collapse(defaults, originalGotos, state, payloadOf(actions[index]), clones, cloned);
+                    actions[index] = target << 2 | SHIFT;
+                }
+            }
+            for (int column = 0; column < nonTerminalCount; column++) {
+                final var index = state * nonTerminalCount + column;
+                if (gotos[index] >= 0) {
+                    gotos[index] = collapse(defaults, originalGotos, state, gotos[index], clones, cloned);
+                }
+            }
+        }
+
+        // 复制链的终点: 各行取自改写后的表. 链按 [规约数, 原本进入的状态, (产生式, 状态)...] 依次存放
+        final var newCount = stateCount + cloned.size();
+        final var newActions = Arrays.copyOf(actions, newCount * terminalCount);
+        final var newGotos = Arrays.copyOf(gotos, newCount * nonTerminalCount);
+        final var newDefaults = Arrays.copyOf(defaults, newCount);
+        final var newStatuses = Arrays.copyOf(statuses, newCount);
+        final var unitChains = new int[newCount];
+        Arrays.fill(unitChains, -1);
+        final var chains = new int[cloned.stream().mapToInt(chain -> chain.size() + 1).sum()];
+        var offset = 0;
+        for (int i = 0; i < cloned.size(); i++) {
+            final var chain = cloned.get(i);
+            final var last = chain.get(chain.size() - 1);
+            final var clone = stateCount + i;
+            System.arraycopy(actions, last * terminalCount, newActions, clone * terminalCount, terminalCount);
+            System.arraycopy(gotos, last * nonTerminalCount, newGotos, clone * nonTerminalCount, nonTerminalCount);
+            newDefaults[clone] = defaults[last];
+            newStatuses[clone] = statuses[last];
+            unitChains[clone] = offset;
+            chains[offset] = chain.size() / 2;
+            for (int j = 0; j < chain.size(); j++) {
+                chains[offset + 1 + j] = chain.get(j);
+            }
+            offset += chain.size() + 1;
+        }
+
+        return new PackedLRTable(terminals, nonTerminals, newStatuses, initState, newActions, newGotos, comb != null,
+            newDefaults, unitChains, chains);
+    }
+
+    /**
+     * @return 若该状态中所有非错误的动作都是对同一产生式的规约, 则为该规约; 否则为 {@link #ERROR}
+     */
+    private int consistentReduction(int[] actions, int state) {
+        var reduction = ERROR;
+        for (int column = 0; column < terminalCount; column++) {
+            final var action = actions[state * terminalCount + column];
+            if (action == ERROR) {
+                continue;
+            }
+            if (kindOf(action) != REDUCE || (reduction != ERROR && reduction != action)) {
+                return ERROR;
+            }
+            reduction = action;
+        }
+        return reduction;
+    }
+
+    /**
+     * 从状态 from 进入状态 target 时, 沿单位产生式的默认规约求出最终到达的状态
+     *
+     * @return 没有可消去的链时为 target, 否则为链终点的复制
+     */
+    private int collapse(int[] defaults, int[] gotos, int from, int target,
+                         Map<List<Integer>, Integer> clones, List<List<Integer>> cloned) {
+        final var chain = new ArrayList<Integer>();
+        chain.add(target);
+        var state = target;
+        while (kindOf(defaults[state]) == REDUCE && bodyLengths[payloadOf(defaults[state])] == 1) {
+            final var production = payloadOf(defaults[state]);
+            state = gotos[from * nonTerminalCount + headColumns[production]];
+            // 表有误或存在 A -> B, B -> A 这样的环时不消去
+            if (state < 0 || chain.size() > 2 * statuses.length) {
+                return target;
+            }
+            chain.add(production);
+            chain.add(state);
+        }
+        if (chain.size() == 1) {
+            return target;
+        }
+        return clones.computeIfAbsent(chain, key -> {
+            cloned.add(key);
+            return statuses.length + cloned.size() - 1;
+        });
+    }
+
+    /**
+     * @return 稠密的 ACTION 表; 已压缩时由压缩表重新展开
+     */
+    int[] denseActions() {
+        if (comb == null) {
+            return actions;
+        }
+
+        final var result = new int[statuses.length * terminalCount];
+        for (int state = 0; state < statuses.length; state++) {
+            for (int column = 0; column < terminalCount; column++) {
+                result[state * terminalCount + column] = comb.action(state, column);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return 稠密的 GOTO 表; 已压缩时由压缩表重新展开
+     */
+    int[] denseGotos() {
+        if (comb == null) {
+            return gotos;
+        }
+
+        final var result = new int[statuses.length * nonTerminalCount];
+        for (int state = 0; state < statuses.length; state++) {
+            for (int column = 0; column < nonTerminalCount; column++) {
+                result[state * nonTerminalCount + column] = comb.gotoOf(state, column);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param production 产生式编号
+     * @return 该产生式体的长度, 即规约时需弹出的状态数
+     */
+    public int bodyLength(int production) {
+        return bodyLengths[production];
+    }
+
+    /**
+     * @param state 状态编号
+     * @return 该编号对应的状态对象
+     */
+    public Status status(int state) {
+        return statuses[state];
+    }
+
+    /**
+     * @param production 产生式编号
+     * @return 该编号对应的产生式对象
+     */
+    public Production production(int production) {
+        return productions[production];
+    }
+
+    /**
+     * @return 状态数 (按最大的状态编号计)
+     */
+    public int stateCount() {
+        return statuses.length;
+    }
+
+    /**
+     * @return 终结符数
+     */
+    public int terminalCount() {
+        return terminalCount;
+    }
+
+    /**
+     * @return 非终结符数
+     */
+    public int nonTerminalCount() {
+        return nonTerminalCount;
+    }
+
+    /**
+     * @return 各列的终结符
+     */
+    public List<TokenKind> terminals() {
+        return terminals;
+    }
+
+    /**
+     * @return 各列的非终结符
+     */
+    public List<NonTerminal> nonTerminals() {
+        return nonTerminals;
+    }
+
+    private static int encode(Action action) {
+        return switch (action.getKind()) {
+            case Error -> ERROR;
+            case Accept -> ACCEPT;
+            case Shift -> action.getStatus().index() << 2 | SHIFT;
+            case Reduce -> action.getProduction().index() << 2 | REDUCE;
+        };
+    }
+
+    /**
+     * 将带标记的动作还原为 Action 对象
+     */
+    Action decode(int action) {
+        return switch (kindOf(action)) {
+            case SHIFT -> Action.shift(statuses[payloadOf(action)]);
+            case REDUCE -> Action.reduce(productions[payloadOf(action)]);
+            case ACCEPT -> Action.accept();
+            default -> Action.error();
+        };
+    }
+
+    private final List<TokenKind> terminals;
+    private final List<NonTerminal> nonTerminals;
+    private final int terminalCount;
+    private final int nonTerminalCount;
+    private final int initState;
+    private final int[] columnByCode;
+    // 稠密表与压缩表二者只存其一
+    private final int[] actions;
+    private final int[] gotos;
+    private final RowDisplacementTable comb;
+    private final double compressionRatio;
+    private final Status[] statuses;
+    private final Production[] productions;
+    private final int[] bodyLengths;
+    private final int[] headColumns;
+    // 由 withDefaultReductions 加入, 普通的表中为 null
+    private final int[] defaultActions;
+    private final int[] unitChains;
+    private final int[] chains;
+}
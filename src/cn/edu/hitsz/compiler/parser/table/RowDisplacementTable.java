@@ -0,0 +1,157 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * 以行位移 (comb vector) 法压缩的 ACTION 与 GOTO 表
+ * <br>
+ * 每个状态的 ACTION 行中出现次数最多的动作作为该状态的默认动作, 其余的项与所有非空的 GOTO 项一起, 以
+ * {@code 列号 (GOTO 列排在 ACTION 列之后)} 为偏移放入共享的 next/check 数组对中. 各状态的起始位置 base 选择为使其所有项都落在空位上的最小值,
+ * 于是不同状态的行可以像梳齿一样互相嵌套. 查表时若 {@code check[base[状态] + 列号]} 恰为该状态, 则 next 中即为所求;
+ * 否则 ACTION 取默认动作, GOTO 为空. 查表仍然只需常数次数组访问, 且结果与稠密表完全一致.
+ */
+final class RowDisplacementTable {
+    /**
+     * @param actions          稠密 ACTION 表
+     * @param gotos            稠密 GOTO 表, 空白处为 -1
+     * @param stateCount       状态数
+     * @param terminalCount    终结符数
+     * @param nonTerminalCount 非终结符数
+     */
+    RowDisplacementTable(int[] actions, int[] gotos, int stateCount, int terminalCount, int nonTerminalCount) {
+        this.terminalCount = terminalCount;
+        this.base = new int[stateCount];
+        this.defaults = new int[stateCount];
+
+        // 各状态需要存放的 (列号, 值) 对
+        final var rows = new ArrayList<int[]>(stateCount);
+        for (int state = 0; state < stateCount; state++) {
+            defaults[state] = mostFrequent(actions, state * terminalCount, terminalCount);
+
+            final var entries = new int[(terminalCount + nonTerminalCount) * 2];
+            var count = 0;
+            for (int column = 0; column < terminalCount; column++) {
+                final var action = actions[state * terminalCount + column];
+                if (action != defaults[state]) {
+                    entries[count++] = column;
+                    entries[count++] = action;
+                }
+            }
+            for (int column = 0; column < nonTerminalCount; column++) {
+                final var target = gotos[state * nonTerminalCount + column];
+                if (target >= 0) {
+                    entries[count++] = terminalCount + column;
+                    entries[count++] = target;
+                }
+            }
+            rows.add(Arrays.copyOf(entries, count));
+        }
+
+        // 项多的行先放, 项少的行更容易填进剩下的空隙
+        final var order = new ArrayList<Integer>(stateCount);
+        for (int state = 0; state < stateCount; state++) {
+            order.add(state);
+        }
+        order.sort(Comparator.comparingInt((Integer state) -> rows.get(state).length).reversed());
+
+        var next = new int[Math.max(16, terminalCount + nonTerminalCount)];
+        var check = new int[next.length];
+        Arrays.fill(check, -1);
+        var firstFree = 0;
+        var used = 0;
+
+        for (final var state : order) {
+            final var entries = rows.get(state);
+            if (entries.length == 0) {
+                // 没有任何项的状态永远不会在 check 中匹配, base 取何值都可以
+                continue;
+            }
+
+            var offset = Math.max(0, firstFree - entries[0]);
+            while (!fits(check, entries, offset)) {
+                offset++;
+            }
+
+            final var end = offset + entries[entries.length - 2] + 1;
+            if (end > next.length) {
+                final var capacity = Math.max(end, next.length * 2);
+                next = Arrays.copyOf(next, capacity);
+                final var oldLength = check.length;
+                check = Arrays.copyOf(check, capacity);
+                Arrays.fill(check, oldLength, capacity, -1);
+            }
+
+            base[state] = offset;
+            for (int i = 0; i < entries.length; i += 2) {
+                next[offset + entries[i]] = entries[i + 1];
+                check[offset + entries[i]] = state;
+            }
+            used = Math.max(used, end);
+            while (firstFree < check.length && check[firstFree] >= 0) {
+                firstFree++;
+            }
+        }
+
+        this.next = Arrays.copyOf(next, used);
+        this.check = Arrays.copyOf(check, used);
+    }
+
+    /**
+     * @return 带标记的动作
+     */
+    int action(int state, int terminalColumn) {
+        final var index = base[state] + terminalColumn;
+        return index < check.length && check[index] == state ? next[index] : defaults[state];
+    }
+
+    /**
+     * @return 转移到的状态; 没有时为 -1
+     */
+    int gotoOf(int state, int nonTerminalColumn) {
+        final var index = base[state] + terminalCount + nonTerminalColumn;
+        return index < check.length && check[index] == state ? next[index] : -1;
+    }
+
+    /**
+     * @return 压缩后占用的 int 数
+     */
+    int size() {
+        return base.length + defaults.length + next.length + check.length;
+    }
+
+    /**
+     * @return 从 start 开始 length 项中出现次数最多的值, 次数相同时取较小的值
+     */
+    private static int mostFrequent(int[] values, int start, int length) {
+        final var counts = new HashMap<Integer, Integer>();
+        var best = PackedLRTable.ERROR;
+        var bestCount = 0;
+        for (int i = start; i < start + length; i++) {
+            final int count = counts.merge(values[i], 1, Integer::sum);
+            if (count > bestCount || (count == bestCount && values[i] < best)) {
+                best = values[i];
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    private static boolean fits(int[] check, int[] entries, int offset) {
+        for (int i = 0; i < entries.length; i += 2) {
+            final var index = offset + entries[i];
+            if (index < check.length && check[index] >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private final int terminalCount;
+    private final int[] base;
+    private final int[] defaults;
+    private final int[] next;
+    private final int[] check;
+}
@@ -0,0 +1,249 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * LR 分析表的二进制缓存
+ * <br>
+ * 从 CSV 读取分析表需要逐格切分字符串, 并以产生式的文本查找每个规约动作, 每次启动都要重复一遍. 因此第一次读取 CSV 后,
+ * 分析表的稠密数组形式 ({@link PackedLRTable}) 会被写入缓存文件; 此后的启动直接以内存映射读入缓存, 不再解析任何文本.
+ * <br>
+ * 缓存文件头部记录了语法文件, 码点文件与 CSV 分析表三者内容的指纹. 三者之一有改动时指纹不再相符, 缓存会被自动丢弃并重建.
+ * 头部还记录了其后内容的字节数与校验值, 被截断或损坏的缓存同样会被丢弃并重建. 缓存只是一种优化: 写入缓存失败时
+ * (如目录只读或磁盘已满) 直接使用从 CSV 读取的分析表.
+ * <br>
+ * 缓存文件的格式 (均为大端序的 int):
+ * <pre>
+ * 魔数, 版本, 指纹, 内容字节数, 内容的 CRC32C
+ * (以下为内容) 终结符数 T, 非终结符数 N, 状态数 S, 行数 R, 起始状态
+ * T 个终结符的码点
+ * N 个非终结符的名字, 每个为 (字节数, UTF-8 字节), 字节数按 4 对齐
+ * S 个状态的编号 (按在表中出现的顺序)
+ * R * T 项 ACTION 表, R * N 项 GOTO 表
+ * </pre>
+ */
+public final class TableCache {
+    /**
+     * 读取分析表: 缓存有效时从缓存读取, 否则读取 CSV 并重建缓存
+     *
+     * @param csvPath   CSV 格式的分析表路径
+     * @param cachePath 缓存文件路径
+     * @return LRTable
+     */
+    public static LRTable load(String csvPath, String cachePath) {
+        final var fingerprint = fingerprint(csvPath);
+        if (isValid(cachePath, fingerprint)) {
+            try {
+                return read(cachePath);
+            } catch (RuntimeException e) {
+                // 缓存已损坏, 改为读取 CSV 并重建缓存
+            }
+        }
+
+        final var table = new TableLoader().load(csvPath);
+        try {
+            write(table, cachePath, fingerprint);
+        } catch (IOException e) {
+            // 写入缓存失败不影响本次分析, 下次启动时再尝试
+        }
+        return table;
+    }
+
+    /**
+     * 以默认路径读取分析表
+     *
+     * @return LRTable
+     */
+    public static LRTable load() {
+        return load(FilePathConfig.LR1_TABLE_PATH, FilePathConfig.LR1_TABLE_CACHE_PATH);
+    }
+
+    /**
+     * @return 语法文件, 码点文件与 CSV 分析表的内容指纹
+     */
+    private static int fingerprint(String csvPath) {
+        final var crc = new CRC32C();
+        for (final var path : List.of(FilePathConfig.GRAMMAR_PATH, FilePathConfig.CODING_MAP_PATH, csvPath)) {
+            final var bytes = FileUtils.readBytes(path);
+            crc.update(ByteBuffer.allocate(Integer.BYTES).putInt(0, bytes.length));
+            crc.update(bytes);
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * 只读取缓存文件的头部检查其是否有效. 过期的缓存不会被映射, 以便随后直接覆盖
+     *
+     * @return 缓存文件存在, 是本程序生成的缓存, 指纹相符, 且文件长度与头部记录的相符
+     */
+    private static boolean isValid(String cachePath, int fingerprint) {
+        final var path = Path.of(cachePath);
+        if (!Files.exists(path)) {
+            return false;
+        }
+
+        try (final var channel = Files.newByteChannel(path)) {
+            final var header = ByteBuffer.allocate(PREFIX_INTS * Integer.BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // 读满头部或读到文件末尾为止
+            }
+            return !header.hasRemaining()
+                && header.getInt(0) == MAGIC
+                && header.getInt(Integer.BYTES) == VERSION
+                && header.getInt(2 * Integer.BYTES) == fingerprint
+                && channel.size() == PREFIX_INTS * Integer.BYTES + (long) header.getInt(3 * Integer.BYTES);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 以内存映射的方式从有效的缓存文件中读取分析表
+     *
+     * @throws RuntimeException 内容的校验值与头部记录的不符, 或内容不完整
+     */
+    private static LRTable read(String cachePath) {
+        final var buffer = FileUtils.mapFile(cachePath);
+        final var crc = new CRC32C();
+        crc.update(buffer.slice(PREFIX_INTS * Integer.BYTES, buffer.limit() - PREFIX_INTS * Integer.BYTES));
+        if ((int) crc.getValue() != buffer.getInt(4 * Integer.BYTES)) {
+            throw new RuntimeException("Corrupted LR table cache " + cachePath);
+        }
+        buffer.position(PREFIX_INTS * Integer.BYTES);
+
+        final var terminalCount = buffer.getInt();
+        final var nonTerminalCount = buffer.getInt();
+        final var statusCount = buffer.getInt();
+        final var rowCount = buffer.getInt();
+        final var initState = buffer.getInt();
+
+        final var terminals = new ArrayList<TokenKind>(terminalCount);
+        for (int i = 0; i < terminalCount; i++) {
+            terminals.add(TokenKind.fromCode(buffer.getInt()));
+        }
+
+        final var nonTerminals = new ArrayList<NonTerminal>(nonTerminalCount);
+        for (int i = 0; i < nonTerminalCount; i++) {
+            final var name = new byte[buffer.getInt()];
+            buffer.get(name);
+            buffer.position(align(buffer.position()));
+            nonTerminals.add(new NonTerminal(new String(name, StandardCharsets.UTF_8)));
+        }
+
+        final var statuses = new ArrayList<Status>(statusCount);
+        final var statusByIndex = new Status[rowCount];
+        for (int i = 0; i < statusCount; i++) {
+            final var status = Status.create(buffer.getInt());
+            statuses.add(status);
+            statusByIndex[status.index()] = status;
+        }
+
+        final var ints = buffer.asIntBuffer();
+        final var actions = new int[rowCount * terminalCount];
+        final var gotos = new int[rowCount * nonTerminalCount];
+        ints.get(actions);
+        ints.get(gotos);
+
+        final var packed = new PackedLRTable(terminals, nonTerminals, statusByIndex, initState, actions, gotos, null);
+
+        // 观察者等仍通过 Status 对象查表, 因此按数组填充各状态的 action 与 goto; 空白格即为默认的错误动作, 无需填充
+        for (final var status : statuses) {
+            final var row = status.index();
+            for (int column = 0; column < terminalCount; column++) {
+                final var action = actions[row * terminalCount + column];
+                if (PackedLRTable.kindOf(action) != PackedLRTable.ERROR) {
+                    status.setAction(terminals.get(column), packed.decode(action));
+                }
+            }
+            for (int column = 0; column < nonTerminalCount; column++) {
+                final var target = gotos[row * nonTerminalCount + column];
+                if (target >= 0) {
+                    status.setGoto(nonTerminals.get(column), statusByIndex[target]);
+                }
+            }
+        }
+
+        return new LRTable(statuses, packed);
+    }
+
+    /**
+     * 将分析表写入缓存文件. 先写入同目录下一个新建的临时文件再原子地替换, 以免其它进程读到写了一半的缓存;
+     * 同时启动的多个进程各自使用不同的临时文件
+     */
+    private static void write(LRTable table, String cachePath, int fingerprint) throws IOException {
+        final var packed = table.pack();
+        final var statuses = table.getStatusInIndexOrder();
+        final var names = packed.nonTerminals().stream()
+            .map(nonTerminal -> nonTerminal.getTermName().getBytes(StandardCharsets.UTF_8))
+            .toList();
+
+        final var actions = packed.denseActions();
+        final var gotos = packed.denseGotos();
+        var size = (HEADER_INTS + packed.terminalCount() + statuses.size() + actions.length + gotos.length) * Integer.BYTES;
+        for (final var name : names) {
+            size += Integer.BYTES + align(name.length);
+        }
+
+        final var buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(fingerprint)
+            .putInt(size - PREFIX_INTS * Integer.BYTES).putInt(0)
+            .putInt(packed.terminalCount()).putInt(packed.nonTerminalCount())
+            .putInt(statuses.size()).putInt(packed.stateCount()).putInt(packed.initState());
+        for (final var terminal : packed.terminals()) {
+            buffer.putInt(terminal.getCode());
+        }
+        for (final var name : names) {
+            buffer.putInt(name.length).put(name);
+            buffer.position(align(buffer.position()));
+        }
+        for (final var status : statuses) {
+            buffer.putInt(status.index());
+        }
+        buffer.asIntBuffer().put(actions).put(gotos);
+
+        final var crc = new CRC32C();
+        crc.update(buffer.array(), PREFIX_INTS * Integer.BYTES, size - PREFIX_INTS * Integer.BYTES);
+        buffer.putInt(4 * Integer.BYTES, (int) crc.getValue());
+
+        final var target = Path.of(cachePath).toAbsolutePath();
+        final var temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, buffer.array());
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static int align(int offset) {
+        return (offset + Integer.BYTES - 1) & -Integer.BYTES;
+    }
+
+    private static final int MAGIC = 0x4C525442;
+    private static final int VERSION = 2;
+    /**
+     * 头部中不计入内容校验值的 int 数: 魔数, 版本, 指纹, 内容字节数与校验值
+     */
+    private static final int PREFIX_INTS = 5;
+    private static final int HEADER_INTS = 10;
+
+    private TableCache() {
+    }
+}
@@ -4,49 +4,154 @@ import cn.edu.hitsz.compiler.lexer.TokenKind;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * 根据语法文件构造 LR 分析表.
  * <br>
  * 此文件为非必需的框架文件, 用于提升整个编译器处理流程的统一性以及为学生提供 SLR(1) 分析表生成程序的参考. 正常情况下你不需要了解该文件.
+ * <br>
+ * 除 SLR(1) 外, 还可以构造规范 LR(1) 分析表与 LALR(1) 分析表 (见 {@link TableKind}). first, follow 与向前看符号集合均以
+ * {@link BitSet} 表示, 终结符 t 对应第 {@code t.getCode() + 1} 位 (于是 EOF 对应第 0 位).
+ * <br>
+ * 为了能处理几百条产生式的文法, 构造过程中项目以整数编号表示, 状态以其核 (见 {@link Kernel}) 判等.
+ * 项目集族按层构造: 同一层的各状态求闭包与后继的核互不相关, 可以并行 (见 {@link #runParallel(ForkJoinPool)});
+ * 随后再按顺序为新的核编号, 因此状态编号与顺序构造时完全相同.
  */
 public class TableGenerator {
+    /**
+     * 分析表的种类
+     */
+    public enum TableKind {
+        /**
+         * 以 LR(0) 项目集族为状态, 对 follow(A) 中的终结符规约 A
+         */
+        SLR,
+        /**
+         * 以 LR(0) 项目集族为状态, 向前看符号由 DeRemer-Pennello 算法在 LR(0) 自动机上传播得到.
+         * 状态数与 SLR(1) 相同, 但能处理更多的文法
+         */
+        LALR,
+        /**
+         * 以带向前看符号的 LR(1) 项目集族为状态. 能处理的文法最多, 但状态数可能远多于前两者
+         */
+        LR1
+    }
+
     public TableGenerator() {
-        this.productions = GrammarInfo.getProductionsInOrder();
+        this(TableKind.SLR);
+    }
+
+    /**
+     * @param kind 要构造的分析表的种类
+     */
+    public TableGenerator(TableKind kind) {
+        this(kind, GrammarInfo.getProductionsInOrder());
+    }
+
+    /**
+     * 为给定的文法构造分析表, 文法不必来自语法文件
+     *
+     * @param kind        要构造的分析表的种类
+     * @param productions 文法的所有产生式, 第一条须为增广文法的开始产生式
+     */
+    public TableGenerator(TableKind kind, List<Production> productions) {
+        this.kind = kind;
+        this.productions = productions;
         this.terminals = new HashSet<>(TokenKind.allAllowedTokenKinds().values());
-        this.nonTerminals = new HashSet<>(GrammarInfo.getNonTerminals().values());
+        this.nonTerminals = new HashSet<>();
 
         if (productions.get(0).body().size() != 1) {
             throw new RuntimeException("The first production in grammar file must like S -> S'");
         }
+
+        // 为所有项目编号: 第 p 条产生式点在 dot 处的项目编号为 itemBase[p] + dot
+        this.itemBase = new int[productions.size() + 1];
+        for (int p = 0; p < productions.size(); p++) {
+            itemBase[p + 1] = itemBase[p] + productions.get(p).body().size() + 1;
+        }
+        this.items = new Item[itemBase[productions.size()]];
+        this.afterDot = new Term[items.length];
+        for (int p = 0; p < productions.size(); p++) {
+            final var production = productions.get(p);
+            nonTerminals.add(production.head());
+            productionsByHead.computeIfAbsent(production.head(), key -> new ArrayList<>()).add(production);
+            startItems.merge(production.head(), new int[]{itemBase[p]}, TableGenerator::concat);
+
+            final var body = production.body();
+            for (int dot = 0; dot <= body.size(); dot++) {
+                items[itemBase[p] + dot] = new Item(production, dot);
+                afterDot[itemBase[p] + dot] = dot < body.size() ? body.get(dot) : null;
+                if (dot < body.size() && body.get(dot) instanceof NonTerminal nonTerminal) {
+                    nonTerminals.add(nonTerminal);
+                }
+            }
+        }
     }
 
     /**
      * 主体方法
      */
     public void run() {
+        run(null);
+    }
+
+    /**
+     * 与 {@link #run()} 相同, 但在 pool 中并行构造项目集族. 结果与 run 完全相同
+     *
+     * @param pool 线程池
+     */
+    public void runParallel(ForkJoinPool pool) {
+        run(pool);
+    }
+
+    private void run(ForkJoinPool pool) {
         calcFirst();
-        calcFollow();
-        constructDFA();
-        dumpItems();
+        if (kind == TableKind.SLR) {
+            calcFollow();
+        }
+        constructDFA(pool);
+        if (kind == TableKind.LALR) {
+            calcLalrLookaheads();
+        }
+        if (itemsPath != null) {
+            dumpItems();
+        }
         genTable();
     }
 
     /**
-     * 将该分析表生成的 LR(0) 规范集族打印到某个文件之中, 用于调试
+     * 设置 run 时打印规范项目集族的文件, 默认为 data/out/items.txt
+     *
+     * @param path 文件路径; 为 null 时不打印
+     */
+    public void setItemsPath(String path) {
+        this.itemsPath = path;
+    }
+
+    /**
+     * 将该分析表生成的规范项目集族打印到某个文件之中, 用于调试. 已求出向前看符号的项目会在其后列出向前看符号
      */
     public void dumpItems() {
         final var lines = new ArrayList<String>();
         for (final var status : allStatusInIndexOrder) {
             lines.add("%d: ".formatted(status.index()));
+            final var itemLookaheads = lookaheads.getOrDefault(status, Map.of());
             for (final var item : including.get(status)) {
-                lines.add("    " + item);
+                final var lookahead = itemLookaheads.get(item);
+                if (lookahead == null) {
+                    lines.add("    " + item);
+                } else {
+                    lines.add("    " + item + ", " + lookahead.stream()
+                        .mapToObj(TableGenerator::terminalOf).map(Term::toString)
+                        .collect(Collectors.joining("/")));
+                }
             }
         }
 
-        FileUtils.writeLines("data/out/items.txt", lines);
+        FileUtils.writeLines(itemsPath != null ? itemsPath : DEFAULT_ITEMS_PATH, lines);
     }
 
     /**
@@ -56,125 +161,128 @@ public class TableGenerator {
         return new LRTable(allStatusInIndexOrder, new ArrayList<>(terminals), new ArrayList<>(nonTerminals));
     }
 
+    /**
+     * @return 构造出的状态数
+     */
+    public int getStatusCount() {
+        return allStatusInIndexOrder.size();
+    }
+
+    private static final String DEFAULT_ITEMS_PATH = "data/out/items.txt";
+
+    private final TableKind kind;
     private final List<Production> productions;
     private final Set<TokenKind> terminals;
     private final Set<NonTerminal> nonTerminals;
+    private final Map<NonTerminal, List<Production>> productionsByHead = new HashMap<>();
+    private String itemsPath = DEFAULT_ITEMS_PATH;
 
-    private final Map<Term, Set<TokenKind>> first = new HashMap<>();
-    private final Map<Term, Set<TokenKind>> follow = new HashMap<>();
+    private final Map<NonTerminal, BitSet> first = new HashMap<>();
+    private final Map<NonTerminal, BitSet> follow = new HashMap<>();
+    private final Set<NonTerminal> nullable = new HashSet<>();
 
-    private final Set<Term> visited = new HashSet<>();
+    /**
+     * @return 终结符在 first, follow 与向前看符号集合中对应的位
+     */
+    private static int bitOf(TokenKind terminal) {
+        return terminal.getCode() + 1;
+    }
 
     /**
-     * 计算所有符号的 first 集合 <br>
-     * 终结符的 first 就是它自身, 非终结符的 first 则递归计算
+     * @return 集合中的一位对应的终结符
      */
-    private void calcFirst() {
-        for (final var terminal : terminals) {
-            first.put(terminal, Set.of(terminal));
-        }
+    private static TokenKind terminalOf(int bit) {
+        return TokenKind.fromCode(bit - 1);
+    }
 
+    /**
+     * 计算所有非终结符的 first 集合以及可以推导出空串的非终结符
+     * <br>
+     * 反复扫描所有产生式, 将每条产生式体的 first 并入其头部的 first, 直到一整遍都没有集合变大为止.
+     * 每一遍的代价与文法的总长度成正比, 遍数不超过非终结符的个数
+     */
+    private void calcFirst() {
         for (final var nonTerminal : nonTerminals) {
-            visited.clear();
-            calcFirst(nonTerminal);
+            first.put(nonTerminal, new BitSet());
         }
 
+        var changed = true;
+        while (changed) {
+            changed = false;
+            for (final var production : productions) {
+                final var head = production.head();
+                final var set = first.get(head);
+                final var before = set.cardinality();
+                final var bodyNullable = addFirst(production.body(), 0, set);
+                changed |= set.cardinality() != before;
+                changed |= bodyNullable && nullable.add(head);
+            }
+        }
     }
 
     /**
-     * 递归计算特定非终结符的 first
+     * 将 first(body[from:]) 并入 result
      *
-     * @param nonTerminal 非终结符
-     * @return 其 first 集合
+     * @return body[from:] 是否可以推导出空串
      */
-    private Set<TokenKind> calcFirst(Term nonTerminal) {
-        // 如果已经被计算, 则直接返回缓存的结果
-        if (first.containsKey(nonTerminal)) {
-            return first.get(nonTerminal);
-        }
-
-        final var result = new LinkedHashSet<TokenKind>();
-        for (final var production : productions) {
-            if (nonTerminal == production.head()) {
-                // 在文法中寻找以该非终结符为头的产生式
-                final var firstSymbol = production.body().get(0);
-                // 记录已经在栈中的递归过的非终结符, 防止直接或间接的左递归导致程序死循环
-                if (!visited.contains(firstSymbol)) {
-                    // 随后递归查找该产生式体的第一个文法符号的 first 集合
-                    // 它的 first 集合也是该非终结符的 first 集合
-                    visited.add(firstSymbol);
-                    result.addAll(calcFirst(firstSymbol));
-                }
+    private boolean addFirst(List<Term> body, int from, BitSet result) {
+        for (int i = from; i < body.size(); i++) {
+            final var term = body.get(i);
+            if (term instanceof TokenKind terminal) {
+                result.set(bitOf(terminal));
+                return false;
             }
-        }
 
-        first.put(nonTerminal, result);
-        return result;
+            final var nonTerminal = (NonTerminal) term;
+            result.or(first.get(nonTerminal));
+            if (!nullable.contains(nonTerminal)) {
+                return false;
+            }
+        }
+        return true;
     }
 
-
     /**
-     * 计算所有非终结符的 follow 集合
+     * @return 符号串 body[from:] 是否可以推导出空串
      */
-    private void calcFollow() {
-        for (final var nonTerminal : nonTerminals) {
-            visited.clear();
-            calcFollow(nonTerminal);
+    private boolean isNullable(List<Term> body, int from) {
+        for (int i = from; i < body.size(); i++) {
+            if (!(body.get(i) instanceof NonTerminal nonTerminal) || !nullable.contains(nonTerminal)) {
+                return false;
+            }
         }
-
-        // 对于找完所有产生式了都还没没有 follow 的非终结符
-        // 它必然是一个没有被使用的非终结符, 这意味着它的 follow 就是 EOF
-        nonTerminals.stream()
-            .map(follow::get).filter(Set::isEmpty)
-            .forEach(set -> set.add(TokenKind.eof()));
+        return true;
     }
 
     /**
-     * 递归计算给定非终结符的 follow 集合
-     *
-     * @param nonTerminal 给定的非终止符
-     * @return 其 follow 集合
+     * 计算所有非终结符的 follow 集合
+     * <br>
+     * 开始符号的 follow 为 EOF. 对每条产生式 B -> alpha A beta, first(beta) 属于 follow(A);
+     * 若 beta 可空, follow(B) 也属于 follow(A). 与 first 一样反复扫描直到不再变化
      */
-    private Set<TokenKind> calcFollow(NonTerminal nonTerminal) {
-        // 与 first 类似, 先查找缓存
-        if (follow.containsKey(nonTerminal)) {
-            return follow.get(nonTerminal);
+    private void calcFollow() {
+        for (final var nonTerminal : nonTerminals) {
+            follow.put(nonTerminal, new BitSet());
         }
-
-        final var result = new LinkedHashSet<TokenKind>();
-        for (final var production : productions) {
-            final var body = production.body();
-
-            // 对该非终结符在每条产生式体中的可能出现, 我们都要将紧跟在该出现后面的项的 first 加入其 follow 集合
-            // 我们直接枚举每条产生式体的每个项
-            for (int i = 0; i < body.size() - 1; i++) {
-                // 如果发现目前的 curr 的话, 后面跟着的符号的 first 就是它的 follow
-                final var symbol = body.get(i);
-                final var next = body.get(i + 1);
-
-                if (symbol.equals(nonTerminal)) {
-                    result.addAll(first.get(next));
-                }
-            }
-
-            // 如果该非终结符出现在产生式的末尾, 那么该产生式的头的 follow 集合也要加入其 follow 集合中
-            final var lastInBody = body.get(body.size() - 1);
-            if (lastInBody.equals(nonTerminal)) {
-                final var head = production.head();
-                if (visited.contains(head)) {
-                    // 如果该产生式头已经在栈中了, 那么意味着这个非终结符有可能一直展开自己
-                    // 这时候 EOF 也可能是它的 Follow
-                    result.add(TokenKind.eof());
-                } else {
-                    // 否则直接递归查找
-                    visited.add(head);
-                    result.addAll(calcFollow(head));
+        follow.get(productions.get(0).head()).set(bitOf(TokenKind.eof()));
+
+        var changed = true;
+        while (changed) {
+            changed = false;
+            for (final var production : productions) {
+                final var body = production.body();
+                for (int i = 0; i < body.size(); i++) {
+                    if (body.get(i) instanceof NonTerminal nonTerminal) {
+                        final var set = follow.get(nonTerminal);
+                        final var before = set.cardinality();
+                        if (addFirst(body, i + 1, set)) {
+                            set.or(follow.get(production.head()));
+                        }
+                        changed |= set.cardinality() != before;
+                    }
                 }
             }
         }
-
-        follow.put(nonTerminal, result);
-        return result;
     }
 
     /**
@@ -239,123 +347,457 @@ public class TableGenerator {
         }
     }
 
-    private final Map<Set<Item>, Status> belongTo = new HashMap<>();
     private final Map<Status, Set<Item>> including = new HashMap<>();
+    private final Map<Status, Map<Term, Status>> transitions = new HashMap<>();
+    private final Map<Status, Map<Item, BitSet>> lookaheads = new HashMap<>();
     private final List<Status> allStatusInIndexOrder = new ArrayList<>();
 
+    // 以编号表示的项目: 编号到项目, 项目的点后的符号 (点在末尾时为 null), 以及以各非终结符为头的点在开头的项目
+    private final int[] itemBase;
+    private final Item[] items;
+    private final Term[] afterDot;
+    private final Map<Term, int[]> startItems = new HashMap<>();
+
+    // 以编号表示的项目 A -> alpha . B beta 的 first(beta), 以及 beta 是否可空. 仅在构造 LR(1) 项目集族时使用
+    private BitSet[] restFirst;
+    private boolean[] restNullable;
+
+    /**
+     * 项目集的核: 按编号升序排列的项目, 以及构造 LR(1) 项目集族时各项目的向前看符号集合
+     * <br>
+     * 项目集的闭包由核唯一确定, 因此只需比较核就能判断两个项目集是否相同, 不必对整个项目集求哈希或逐项比较.
+     * 哈希值在构造时一次算好, 此后在散列表中查找核时不再重新计算.
+     */
+    private static final class Kernel {
+        Kernel(int[] items, BitSet[] lookaheads) {
+            this.items = items;
+            this.lookaheads = lookaheads;
+            this.hash = 31 * Arrays.hashCode(items) + Arrays.hashCode(lookaheads);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return this == obj || obj instanceof Kernel kernel
+                && hash == kernel.hash
+                && Arrays.equals(items, kernel.items)
+                && Arrays.equals(lookaheads, kernel.lookaheads);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        private final int[] items;
+        private final BitSet[] lookaheads;
+        private final int hash;
+    }
+
+    /**
+     * 一个项目集的闭包, 以及它在各文法符号上的后继项目集的核
+     *
+     * @param items      闭包中的项目, 核中的项目在前
+     * @param lookaheads 各项目的向前看符号集合, 仅构造 LR(1) 项目集族时不为 null
+     * @param symbols    有后继的文法符号
+     * @param successors 对应的后继项目集的核
+     */
+    private record Expansion(int[] items, BitSet[] lookaheads, Term[] symbols, Kernel[] successors) {
+    }
+
     /**
      * 构造出所有状态并维护状态与项集之间的对应关系
+     * <br>
+     * 按层展开: 每一层对所有新出现的核求闭包与后继 (pool 不为 null 时并行进行),
+     * 然后依次为后继中尚未出现过的核编号, 作为下一层. 这与逐个状态 BFS 得到的编号相同
      */
-    private void constructDFA() {
-        final var argumentProduction = productions.get(0);
-        final var initItem = new Item(argumentProduction, 0);
-        final var collections = constructCanonicalLRCollection(initItem);
+    private void constructDFA(ForkJoinPool pool) {
+        final var isLR1 = kind == TableKind.LR1;
+        if (isLR1) {
+            prepareLookaheads();
+        }
+
+        // 文法符号展开的顺序, 决定了后继状态的编号顺序
+        final var termOrder = new HashMap<Term, Integer>();
+        for (final var term : nonTerminals) {
+            termOrder.put(term, termOrder.size());
+        }
+        for (final var term : terminals) {
+            termOrder.put(term, termOrder.size());
+        }
 
-        for (int idx = 0; idx < collections.size(); idx++) {
-            final var status = Status.create(idx);
-            allStatusInIndexOrder.add(status);
+        final var initLookahead = new BitSet();
+        initLookahead.set(bitOf(TokenKind.eof()));
+        final var init = new Kernel(new int[]{itemBase[0]}, isLR1 ? new BitSet[]{initLookahead} : null);
+
+        final var kernels = new ArrayList<Kernel>();
+        final var indexOf = new HashMap<Kernel, Integer>();
+        final var expansions = new ArrayList<Expansion>();
+        final var edges = new ArrayList<int[]>();
+        kernels.add(init);
+        indexOf.put(init, 0);
+
+        while (expansions.size() < kernels.size()) {
+            final var frontier = kernels.subList(expansions.size(), kernels.size()).toArray(new Kernel[0]);
+            final var expanded = new Expansion[frontier.length];
+            if (pool == null || frontier.length < 2 * EXPAND_GRAIN) {
+                for (int i = 0; i < frontier.length; i++) {
+                    expanded[i] = expand(frontier[i], termOrder);
+                }
+            } else {
+                pool.invoke(new ExpandTask(frontier, 0, frontier.length, expanded, termOrder));
+            }
+
+            // 按顺序为新的核编号, 保证编号与是否并行无关
+            for (final var expansion : expanded) {
+                final var targets = new int[expansion.successors().length];
+                for (int i = 0; i < targets.length; i++) {
+                    targets[i] = indexOf.computeIfAbsent(expansion.successors()[i], kernel -> {
+                        kernels.add(kernel);
+                        return kernels.size() - 1;
+                    });
+                }
+                expansions.add(expansion);
+                edges.add(targets);
+            }
+        }
+
+        for (int idx = 0; idx < expansions.size(); idx++) {
+            allStatusInIndexOrder.add(Status.create(idx));
+        }
+        for (int idx = 0; idx < expansions.size(); idx++) {
+            final var status = allStatusInIndexOrder.get(idx);
+            final var expansion = expansions.get(idx);
+
+            final var itemSet = new LinkedHashSet<Item>();
+            for (final var item : expansion.items()) {
+                itemSet.add(items[item]);
+            }
+            including.put(status, itemSet);
+
+            if (isLR1) {
+                final var itemLookaheads = new HashMap<Item, BitSet>();
+                for (int i = 0; i < expansion.items().length; i++) {
+                    itemLookaheads.put(items[expansion.items()[i]], expansion.lookaheads()[i]);
+                }
+                lookaheads.put(status, itemLookaheads);
+            }
 
-            final var items = collections.get(idx);
-            including.put(status, items);
-            belongTo.put(items, status);
+            final var to = new LinkedHashMap<Term, Status>();
+            for (int i = 0; i < expansion.symbols().length; i++) {
+                to.put(expansion.symbols()[i], allStatusInIndexOrder.get(edges.get(idx)[i]));
+            }
+            transitions.put(status, to);
         }
     }
 
     /**
-     * @param head 头部符号
-     * @return 返回一个流, 其中的元素都是以 head 为头的产生式
+     * 为每个项目预先求出点后面第一个符号之后的符号串的 first 集合与是否可空, 用于 LR(1) 闭包
      */
-    private Stream<Production> getProductionsByHead(Term head) {
-        return productions.stream().filter(production -> production.head().equals(head));
+    private void prepareLookaheads() {
+        restFirst = new BitSet[items.length];
+        restNullable = new boolean[items.length];
+        for (int p = 0; p < productions.size(); p++) {
+            final var body = productions.get(p).body();
+            for (int dot = 0; dot < body.size(); dot++) {
+                final var set = new BitSet();
+                restNullable[itemBase[p] + dot] = addFirst(body, dot + 1, set);
+                restFirst[itemBase[p] + dot] = set;
+            }
+        }
     }
 
     /**
-     * 构造项集 {@code sourceItem} 的闭包, 相当于理论课中的 CLOSURE(I) 函数
+     * 求核的闭包 (相当于理论课中的 CLOSURE(I) 函数), 并按点后面的符号分组求出各后继项目集的核 (相当于 GO(I, X) 函数)
+     * <br>
+     * 构造 LR(1) 项目集族时, 同核的项目合并为一项, 对 [A -> alpha . B beta, L], 新项 [B -> . gamma] 的向前看符号为
+     * first(beta L). 某项的向前看符号集合变大后需要重新展开, 直到不再变化为止
      *
-     * @param sourceItem 项集 I
-     * @return 闭包
+     * @param kernel    核
+     * @param termOrder 文法符号的展开顺序
+     * @return 闭包与后继
      */
-    private Set<Item> constructClosure(Set<Item> sourceItem) {
-        // 采用 BFS 的方法来避免每次都检测集合的更改
-        final var result = new LinkedHashSet<>(sourceItem);
-        // 已经找到, 但是还未完全探索其能展开的项的项
-        // 类似于 BFS 的队列或者是 mark-and-sweep GC 算法里的灰色列表
-        final var unexpanded = new ArrayDeque<>(sourceItem);
+    private Expansion expand(Kernel kernel, Map<Term, Integer> termOrder) {
+        final var isLR1 = kernel.lookaheads != null;
+
+        // 闭包中的项目按加入的顺序存放, positionOf 记录各项目的位置, 不在闭包中时为 -1
+        var closure = Arrays.copyOf(kernel.items, Math.max(16, kernel.items.length * 2));
+        var closureLookaheads = isLR1 ? new BitSet[closure.length] : null;
+        var size = kernel.items.length;
+        final var positionOf = new HashMap<Integer, Integer>();
+        for (int i = 0; i < size; i++) {
+            positionOf.put(closure[i], i);
+            if (isLR1) {
+                closureLookaheads[i] = (BitSet) kernel.lookaheads[i].clone();
+            }
+        }
+
+        // 采用 BFS 的方法来避免每次都检测集合的更改; LR(1) 时向前看符号变大的项会重新入队
+        final var unexpanded = new ArrayDeque<Integer>();
+        for (int i = 0; i < size; i++) {
+            unexpanded.add(i);
+        }
+        final var queued = new BitSet();
+        queued.set(0, size);
 
         while (!unexpanded.isEmpty()) {
-            final var top = unexpanded.pollFirst();
-            // 获得当前项中点后面的符号
-            top.getAfterDot().ifPresent(afterDot ->
-                // 随后查找以该符号作为头部的产生式
-                getProductionsByHead(afterDot)
-                    // 构造点在对应产生式开头的新项
-                    .map(production -> new Item(production, 0))
-                    // 对于不在 result 中的新项
-                    .filter(item -> !result.contains(item))
-                    // 加入队列并加入结果中
-                    .peek(unexpanded::add)
-                    .forEach(result::add));
+            final int position = unexpanded.pollFirst();
+            queued.clear(position);
+            final var item = closure[position];
+            if (!(afterDot[item] instanceof NonTerminal nonTerminal)) {
+                continue;
+            }
+
+            BitSet lookahead = null;
+            if (isLR1) {
+                lookahead = (BitSet) restFirst[item].clone();
+                if (restNullable[item]) {
+                    lookahead.or(closureLookaheads[position]);
+                }
+            }
+
+            for (final var start : startItems.get(nonTerminal)) {
+                final var existing = positionOf.get(start);
+                if (existing == null) {
+                    if (size == closure.length) {
+                        closure = Arrays.copyOf(closure, size * 2);
+                        closureLookaheads = isLR1 ? Arrays.copyOf(closureLookaheads, size * 2) : null;
+                    }
+                    positionOf.put(start, size);
+                    closure[size] = start;
+                    if (isLR1) {
+                        closureLookaheads[size] = (BitSet) lookahead.clone();
+                    }
+                    unexpanded.add(size);
+                    queued.set(size);
+                    size++;
+                } else if (isLR1) {
+                    final var target = closureLookaheads[existing];
+                    final var before = target.cardinality();
+                    target.or(lookahead);
+                    if (target.cardinality() != before && !queued.get(existing)) {
+                        unexpanded.add(existing);
+                        queued.set(existing);
+                    }
+                }
+            }
+        }
+
+        // 按点后面的符号分组, 点后移一位即得各后继的核
+        final var groups = new HashMap<Term, List<Integer>>();
+        for (int i = 0; i < size; i++) {
+            final var symbol = afterDot[closure[i]];
+            if (symbol != null) {
+                groups.computeIfAbsent(symbol, key -> new ArrayList<>()).add(i);
+            }
+        }
+
+        final var symbols = groups.keySet().toArray(new Term[0]);
+        Arrays.sort(symbols, Comparator.comparing(termOrder::get));
+        final var successors = new Kernel[symbols.length];
+        for (int s = 0; s < symbols.length; s++) {
+            // 后继项目的编号即为原项目的编号 + 1, 按编号排序使同一个核只有一种表示
+            final var positions = groups.get(symbols[s]);
+            final var finalClosure = closure;
+            positions.sort(Comparator.comparingInt(position -> finalClosure[position]));
+
+            final var kernelItems = new int[positions.size()];
+            final var kernelLookaheads = isLR1 ? new BitSet[positions.size()] : null;
+            for (int i = 0; i < kernelItems.length; i++) {
+                kernelItems[i] = closure[positions.get(i)] + 1;
+                if (isLR1) {
+                    kernelLookaheads[i] = closureLookaheads[positions.get(i)];
+                }
+            }
+            successors[s] = new Kernel(kernelItems, kernelLookaheads);
         }
 
+        return new Expansion(Arrays.copyOf(closure, size),
+            isLR1 ? Arrays.copyOf(closureLookaheads, size) : null, symbols, successors);
+    }
+
+    /**
+     * 展开 [from, to) 范围内的核, 范围较大时对半拆分并行执行
+     */
+    private class ExpandTask extends RecursiveAction {
+        ExpandTask(Kernel[] frontier, int from, int to, Expansion[] results, Map<Term, Integer> termOrder) {
+            this.frontier = frontier;
+            this.from = from;
+            this.to = to;
+            this.results = results;
+            this.termOrder = termOrder;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > EXPAND_GRAIN) {
+                final var middle = (from + to) >>> 1;
+                invokeAll(new ExpandTask(frontier, from, middle, results, termOrder),
+                    new ExpandTask(frontier, middle, to, results, termOrder));
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                results[i] = expand(frontier[i], termOrder);
+            }
+        }
+
+        private static final long serialVersionUID = 1L;
+
+        private final Kernel[] frontier;
+        private final int from;
+        private final int to;
+        private final Expansion[] results;
+        private final Map<Term, Integer> termOrder;
+    }
+
+    /**
+     * 每个并行任务至少展开的核数
+     */
+    private static final int EXPAND_GRAIN = 8;
+
+    private static int[] concat(int[] a, int[] b) {
+        final var result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
         return result;
     }
 
     /**
-     * 相当于理论课中的 GO(I, X) 函数 (转移函数)
-     *
-     * @param items 当前项集 I
-     * @param term  文法符号 X
-     * @return I 关于 X 的后继项目集
+     * 以 DeRemer-Pennello 算法计算 LALR(1) 向前看符号
+     * <br>
+     * 对 LR(0) 自动机中每个非终结符上的转移 (p, A) 求出 Follow(p, A), 即在状态 p 归约出 A 之后可能遇到的终结符:
+     * <ul>
+     *     <li>DR(p, A): 转移后的状态 GO(p, A) 可以直接移入的终结符</li>
+     *     <li>(p, A) reads (r, C): r = GO(p, A) 且 C 可空, 于是 C 之后能读到的终结符也在 A 之后</li>
+     *     <li>(p, A) includes (p', B): 存在 B -> beta A gamma, gamma 可空且 p' 经 beta 到达 p, 于是 B 之后的终结符也在 A 之后</li>
+     * </ul>
+     * Read 为 DR 在 reads 关系上的闭包, Follow 为 Read 在 includes 关系上的闭包, 两次闭包均在关系图上以求强连通分量的方式一趟完成.
+     * 最后, 在状态 q 中以 A -> omega 规约时, 向前看符号为所有 lookback 到的 Follow(p, A) 之并, 其中 p 经 omega 到达 q.
      */
-    private Set<Item> constructGoto(Set<Item> items, Term term) {
-        final var kernelForGoto = items.stream()
-            // 先筛选出 I 中所有点后面是 term 的项
-            .filter(item -> item.getAfterDot().map(term::equals).orElse(false))
-            // 然后分别求出每一个项的后继项
-            // 这个项集就是后继项目集的核
-            .map(Item::getNextItem).flatMap(Optional::stream)
-            .collect(Collectors.toSet());
-
-        // 随后从后继项目集的核中构造闭包即可得到后继项目集
-        return constructClosure(kernelForGoto);
+    private void calcLalrLookaheads() {
+        final var argumentProduction = productions.get(0);
+        final var eofBit = bitOf(TokenKind.eof());
+
+        // 为每个非终结符上的转移编号
+        final var fromStatus = new ArrayList<Status>();
+        final var symbols = new ArrayList<NonTerminal>();
+        final var transitionIndex = new HashMap<Status, Map<NonTerminal, Integer>>();
+        for (final var status : allStatusInIndexOrder) {
+            final var indices = new HashMap<NonTerminal, Integer>();
+            for (final var term : transitions.get(status).keySet()) {
+                if (term instanceof NonTerminal nonTerminal) {
+                    indices.put(nonTerminal, fromStatus.size());
+                    fromStatus.add(status);
+                    symbols.add(nonTerminal);
+                }
+            }
+            transitionIndex.put(status, indices);
+        }
+
+        final var count = fromStatus.size();
+        final var directRead = new BitSet[count];
+        final var reads = new ArrayList<List<Integer>>(count);
+        final var includes = new ArrayList<List<Integer>>(count);
+        final var lookback = new HashMap<Status, Map<Production, List<Integer>>>();
+        for (int x = 0; x < count; x++) {
+            reads.add(new ArrayList<>());
+            includes.add(new ArrayList<>());
+        }
+
+        for (int x = 0; x < count; x++) {
+            final var status = fromStatus.get(x);
+            final var symbol = symbols.get(x);
+            final var target = transitions.get(status).get(symbol);
+
+            directRead[x] = new BitSet();
+            for (final var term : transitions.get(target).keySet()) {
+                if (term instanceof TokenKind terminal) {
+                    directRead[x].set(bitOf(terminal));
+                } else if (term instanceof NonTerminal nonTerminal && nullable.contains(nonTerminal)) {
+                    reads.get(x).add(transitionIndex.get(target).get(nonTerminal));
+                }
+            }
+            // 增广文法的开始项目 S -> . S' 以 EOF 为向前看符号, 于是在开始状态中 S' 之后可以遇到 EOF
+            if (including.get(status).contains(new Item(argumentProduction, 0))
+                && argumentProduction.body().get(0).equals(symbol)) {
+                directRead[x].set(eofBit);
+            }
+
+            // 沿每条以该非终结符为头的产生式从 status 出发走一遍, 顺路求出 includes 与 lookback
+            for (final var production : productionsByHead.get(symbol)) {
+                var current = status;
+                final var body = production.body();
+                for (int i = 0; i < body.size(); i++) {
+                    if (body.get(i) instanceof NonTerminal nonTerminal && isNullable(body, i + 1)) {
+                        includes.get(transitionIndex.get(current).get(nonTerminal)).add(x);
+                    }
+                    current = transitions.get(current).get(body.get(i));
+                }
+                lookback.computeIfAbsent(current, key -> new HashMap<>())
+                    .computeIfAbsent(production, key -> new ArrayList<>()).add(x);
+            }
+        }
+
+        final var read = digraph(directRead, reads);
+        final var follows = digraph(read, includes);
+
+        lookback.forEach((status, byProduction) -> {
+            final var itemLookaheads = lookaheads.computeIfAbsent(status, key -> new HashMap<>());
+            byProduction.forEach((production, xs) -> {
+                final var lookahead = new BitSet();
+                xs.forEach(x -> lookahead.or(follows[x]));
+                itemLookaheads.put(new Item(production, production.body().size()), lookahead);
+            });
+        });
     }
 
     /**
-     * 构造 LR(0) 规范项目集族
+     * 求 F(x) = initial(x) ∪ ∪{F(y) | x R y}, 即 initial 在关系 R 上的闭包.
+     * 同一强连通分量中的结点的结果相同, 因此在 Tarjan 算法找出分量时整体赋值即可, 每个结点与每条边都只处理一次
      *
-     * @param initItem 起始项目 S -> . S'
-     * @return 规范项目集族
+     * @param initial  各结点的初值
+     * @param relation 关系 R, 第 x 项为所有满足 x R y 的 y
+     * @return 各结点的闭包
      */
-    private List<Set<Item>> constructCanonicalLRCollection(Item initItem) {
-        // 先收集所有的文法符号备用
-        final var terms = new LinkedHashSet<Term>();
-        terms.addAll(nonTerminals);
-        terms.addAll(terminals);
+    private static BitSet[] digraph(BitSet[] initial, List<List<Integer>> relation) {
+        final var result = new BitSet[initial.length];
+        for (int x = 0; x < initial.length; x++) {
+            result[x] = (BitSet) initial[x].clone();
+        }
 
-        // 构造初始项目集族
-        final var initClosure = constructClosure(Set.of(initItem));
+        final var depth = new int[initial.length];
+        final var stack = new ArrayDeque<Integer>();
+        for (int x = 0; x < initial.length; x++) {
+            if (depth[x] == 0) {
+                traverse(x, relation, result, depth, stack);
+            }
+        }
+        return result;
+    }
 
-        // 同样以 BFS 形式搜索
-        final var result = new LinkedHashSet<>(Set.of(initClosure));
-        final var unexpanded = new ArrayDeque<>(Set.of(initClosure));
+    private static void traverse(int x, List<List<Integer>> relation, BitSet[] result, int[] depth, ArrayDeque<Integer> stack) {
+        stack.push(x);
+        final var d = stack.size();
+        depth[x] = d;
 
-        while (!unexpanded.isEmpty()) {
-            final var items = unexpanded.pollFirst();
-
-            // 对于每个未被探索的集族
-            for (final var term : terms) {
-                // 尝试对每一个文法符号都求一个后继项目集
-                final var to = constructGoto(items, term);
-                // 如果还没被加入到 result 中
-                if (!to.isEmpty() && !result.contains(to)) {
-                    // 就加入 result 和待探索列表中
-                    result.add(to);
-                    unexpanded.addLast(to);
-                }
+        for (final var y : relation.get(x)) {
+            if (depth[y] == 0) {
+                traverse(y, relation, result, depth, stack);
             }
+            depth[x] = Math.min(depth[x], depth[y]);
+            result[x].or(result[y]);
         }
 
-        return new ArrayList<>(result);
+        // x 是其强连通分量的根, 将分量中所有结点出栈并赋以相同的结果
+        if (depth[x] == d) {
+            while (true) {
+                final int top = stack.pop();
+                depth[top] = Integer.MAX_VALUE;
+                if (top == x) {
+                    break;
+                }
+                result[top] = (BitSet) result[x].clone();
+            }
+        }
     }
 
     /**
@@ -374,19 +816,24 @@ public class TableGenerator {
                         // S -> S' .
                         // 如果项目代表起始文法的末尾, 那么再遇到 EOF 就 accept 了
                         status.setAction(TokenKind.eof(), Action.accept());
-                    } else {
+                    } else if (kind == TableKind.SLR) {
                         // A -> alpha .
                         // 如果项目代表某个产生式的末尾, 那么再遇到对于任何位于 follow(A) 内的文法符号都应该规约 A
                         final var production = item.production();
                         final var head = production.head();
-                        for (final var a : follow.get(head)) {
-                            status.setAction(a, Action.reduce(production));
-                        }
+                        follow.get(head).stream()
+                            .forEach(bit -> status.setAction(terminalOf(bit), Action.reduce(production)));
+                    } else {
+                        // [A -> alpha ., L]
+                        // LR(1) 与 LALR(1) 只对该项目的向前看符号规约
+                        final var production = item.production();
+                        lookaheads.get(status).get(item).stream()
+                            .forEach(bit -> status.setAction(terminalOf(bit), Action.reduce(production)));
                     }
 
                 } else {
                     final var symbol = afterDotOpt.get();
-                    final var next = belongTo.get(constructGoto(including.get(status), symbol));
+                    final var next = transitions.get(status).get(symbol);
 
                     if (symbol instanceof TokenKind tokenKind) {
                         // A -> alpha . a beta
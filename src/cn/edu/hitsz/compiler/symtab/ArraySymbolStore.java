@@ -0,0 +1,76 @@
+package cn.edu.hitsz.compiler.symtab;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link SymbolTable} 默认的存储: 一张 {@link IdentifierInterner} 与以编号为下标的条目数组. 不是线程安全的.
+ */
+final class ArraySymbolStore implements SymbolStore {
+    @Override
+    public int lookup(String text) {
+        return interner.lookup(text);
+    }
+
+    @Override
+    public int lookup(ByteBuffer source, int offset, int length) {
+        return interner.lookup(source, offset, length);
+    }
+
+    @Override
+    public SymbolTableEntry get(int id) {
+        return id >= 0 && id < entries.length ? entries[id] : null;
+    }
+
+    @Override
+    public SymbolTableEntry add(String text) {
+        return retain(interner.intern(text));
+    }
+
+    @Override
+    public SymbolTableEntry add(ByteBuffer source, int offset, int length) {
+        return retain(interner.intern(source, offset, length));
+    }
+
+    @Override
+    public boolean release(int id) {
+        final var entry = get(id);
+        if (entry == null) {
+            throw new RuntimeException("Release unknown symbol #" + id);
+        }
+
+        if (entry.release() <= 0) {
+            entries[id] = null;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String nameOf(int id) {
+        return interner.name(id);
+    }
+
+    @Override
+    public List<SymbolTableEntry> entries() {
+        return Arrays.stream(entries, 0, interner.size()).filter(entry -> entry != null).toList();
+    }
+
+    private SymbolTableEntry retain(int id) {
+        if (id >= entries.length) {
+            entries = Arrays.copyOf(entries, Math.max(id + 1, entries.length * 2));
+        }
+
+        var entry = entries[id];
+        if (entry == null) {
+            entry = new SymbolTableEntry(id, interner.name(id));
+            entries[id] = entry;
+        }
+        entry.retain();
+        return entry;
+    }
+
+    private final IdentifierInterner interner = new IdentifierInterner();
+    private SymbolTableEntry[] entries = new SymbolTableEntry[32];
+}
@@ -0,0 +1,18 @@
+package cn.edu.hitsz.compiler.symtab;
+
+/**
+ * 可由多个线程同时加入与释放符号的符号表
+ * <br>
+ * 符号存放在按散列值分条带加锁的 {@link StripedSymbolStore} 中: 对同一符号的操作是原子的, 落在不同条带的符号之间互不阻塞,
+ * 只有编号的分配是一次原子自增. 加入时仍以源文件中的字节探查, 只在第一次遇到某个标识符时才构造字符串.
+ * <br>
+ * 并行词法分析的各个工作线程可以直接向其中加入标识符, 而不必先在块内记录再由一个线程依次加入.
+ * 编号按各线程实际加入的先后分配, 但 {@link #dumpTable} 仍按符号文本排序输出, 与加入的顺序无关.
+ * <br>
+ * 条目的类型只应在所有加入完成之后 (即语法分析时) 设置.
+ */
+public class ConcurrentSymbolTable extends SymbolTable {
+    public ConcurrentSymbolTable() {
+        super(new StripedSymbolStore());
+    }
+}
@@ -0,0 +1,188 @@
+package cn.edu.hitsz.compiler.symtab;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 标识符的驻留表: 为每个不同的标识符文本分配一个从 0 开始连续的编号
+ * <br>
+ * 词法分析直接以源文件缓冲区中的字节查找, 只在第一次遇到某个标识符时才构造其字符串; 此后的各个阶段都以编号代替文本,
+ * 可以用以编号为下标的数组代替以字符串为键的散列表. 编号一经分配便不再回收, 即使该标识符的符号表条目已被删除.
+ * <br>
+ * 散列值与 {@link String#hashCode()} 对 Latin-1 文本的结果相同, 因此以字节查找与以字符串查找落在同一个位置.
+ * 该类不是线程安全的.
+ */
+public final class IdentifierInterner {
+    /**
+     * 未找到时的编号
+     */
+    public static final int NONE = -1;
+
+    /**
+     * 查找源文件中的一段 ASCII 文本, 不存在时为其分配新的编号
+     *
+     * @return 该文本的编号
+     */
+    public int intern(ByteBuffer source, int offset, int length) {
+        return intern(hash(source, offset, length), source, offset, length);
+    }
+
+    /**
+     * 与 {@link #intern(ByteBuffer, int, int)} 相同, 但使用调用者已求得的散列值
+     */
+    int intern(int hash, ByteBuffer source, int offset, int length) {
+        final var slot = probe(hash, source, offset, length);
+        final var id = slots[slot] - 1;
+        return id >= 0 ? id : insert(slot, hash, new String(bytesOf(source, offset, length), StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * @return 源文件中一段 ASCII 文本的编号, 不存在时为 {@link #NONE}
+     */
+    public int lookup(ByteBuffer source, int offset, int length) {
+        return lookup(hash(source, offset, length), source, offset, length);
+    }
+
+    /**
+     * 与 {@link #lookup(ByteBuffer, int, int)} 相同, 但使用调用者已求得的散列值
+     */
+    int lookup(int hash, ByteBuffer source, int offset, int length) {
+        return slots[probe(hash, source, offset, length)] - 1;
+    }
+
+    /**
+     * 查找一个文本, 不存在时为其分配新的编号
+     *
+     * @return 该文本的编号
+     */
+    public int intern(String text) {
+        final var id = lookup(text);
+        if (id != NONE) {
+            return id;
+        }
+
+        final var hash = text.hashCode();
+        var slot = spread(hash) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        return insert(slot, hash, text);
+    }
+
+    /**
+     * @return 该文本的编号, 不存在时为 {@link #NONE}
+     */
+    public int lookup(String text) {
+        final var hash = text.hashCode();
+        var slot = spread(hash) & mask;
+        for (var id = slots[slot] - 1; id >= 0; id = slots[slot] - 1) {
+            if (hashes[id] == hash && names[id].equals(text)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NONE;
+    }
+
+    /**
+     * @return 编号为 id 的标识符的文本
+     */
+    public String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * @return 已分配的编号数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return 该文本所在的格, 不存在时为应插入的空格
+     */
+    private int probe(int hash, ByteBuffer source, int offset, int length) {
+        var slot = spread(hash) & mask;
+        for (var id = slots[slot] - 1; id >= 0; id = slots[slot] - 1) {
+            if (hashes[id] == hash && matches(names[id], source, offset, length)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int insert(int slot, int hash, String text) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+
+        final var id = size++;
+        names[id] = text;
+        hashes[id] = hash;
+        slots[slot] = id + 1;
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return id;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            var slot = spread(hashes[id]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    /**
+     * 短标识符的散列值的低位变化较少, 混入高位后再取模
+     */
+    private static int spread(int hash) {
+        return hash ^ hash >>> 16;
+    }
+
+    /**
+     * @return 源文件中一段 ASCII 文本的散列值, 与其字符串的 {@link String#hashCode()} 相同
+     */
+    static int hash(ByteBuffer source, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + (source.get(i) & 0xFF);
+        }
+        return hash;
+    }
+
+    private static boolean matches(String name, ByteBuffer source, int offset, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != (source.get(offset + i) & 0xFF)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] bytesOf(ByteBuffer source, int offset, int length) {
+        final var bytes = new byte[length];
+        source.get(offset, bytes);
+        return bytes;
+    }
+
+    /**
+     * 开放定址的散列表, 每格存放编号加一, 0 表示空
+     */
+    private int[] slots = new int[64];
+    private int mask = 63;
+    private String[] names = new String[32];
+    private int[] hashes = new int[32];
+    private int size = 0;
+}
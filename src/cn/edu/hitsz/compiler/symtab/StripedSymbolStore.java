@@ -0,0 +1,193 @@
+package cn.edu.hitsz.compiler.symtab;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@link ConcurrentSymbolTable} 的存储, 可由多个线程同时访问
+ * <br>
+ * 符号按散列值分到若干条带中, 每个条带各有一张 {@link IdentifierInterner} 与一把锁. 对同一符号的驻留, 新建, 增加与释放引用都在
+ * 其条带的锁中进行, 因此是原子的; 落在不同条带的符号之间互不阻塞. 编号由一个原子计数器分配, 编号对应的名字与条目存放在按页分配的
+ * 原子数组中, 以编号查询 ({@link #get(int)}, {@link #nameOf}) 不需要加锁. 加入时仍以源文件中的字节探查, 只在第一次遇到某个
+ * 标识符时才构造字符串.
+ */
+final class StripedSymbolStore implements SymbolStore {
+    StripedSymbolStore() {
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @Override
+    public SymbolTableEntry get(int id) {
+        return id >= 0 && id < nextId.get() ? entries.get(id) : null;
+    }
+
+    @Override
+    public SymbolTableEntry add(String text) {
+        final var hash = text.hashCode();
+        final var stripe = stripeOf(hash);
+        synchronized (stripe) {
+            final var local = stripe.interner.intern(text);
+            return retain(stripe, local);
+        }
+    }
+
+    @Override
+    public SymbolTableEntry add(ByteBuffer source, int offset, int length) {
+        final var hash = IdentifierInterner.hash(source, offset, length);
+        final var stripe = stripeOf(hash);
+        synchronized (stripe) {
+            final var local = stripe.interner.intern(hash, source, offset, length);
+            return retain(stripe, local);
+        }
+    }
+
+    @Override
+    public int lookup(String text) {
+        final var stripe = stripeOf(text.hashCode());
+        synchronized (stripe) {
+            return stripe.globalId(stripe.interner.lookup(text));
+        }
+    }
+
+    @Override
+    public int lookup(ByteBuffer source, int offset, int length) {
+        final var hash = IdentifierInterner.hash(source, offset, length);
+        final var stripe = stripeOf(hash);
+        synchronized (stripe) {
+            return stripe.globalId(stripe.interner.lookup(hash, source, offset, length));
+        }
+    }
+
+    @Override
+    public boolean release(int id) {
+        // 编号分配之后, 其名字发布之前, 该编号已小于计数器但名字仍为 null; 此时它还未被交给任何调用者, 同样视为不存在
+        final var name = id >= 0 && id < nextId.get() ? names.get(id) : null;
+        if (name == null) {
+            throw new RuntimeException("Release unknown symbol #" + id);
+        }
+
+        final var stripe = stripeOf(name.hashCode());
+        synchronized (stripe) {
+            final var entry = entries.get(id);
+            if (entry == null) {
+                throw new RuntimeException("Release unknown symbol #" + id);
+            }
+
+            if (entry.release() <= 0) {
+                entries.set(id, null);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @return 编号对应的文本; 编号尚在分配中时可能为 null
+     */
+    @Override
+    public String nameOf(int id) {
+        return names.get(id);
+    }
+
+    @Override
+    public List<SymbolTableEntry> entries() {
+        final var all = new ArrayList<SymbolTableEntry>();
+        final var size = nextId.get();
+        for (int id = 0; id < size; id++) {
+            final var entry = entries.get(id);
+            if (entry != null) {
+                all.add(entry);
+            }
+        }
+        return all;
+    }
+
+    /**
+     * 在持有条带的锁时调用: 必要时为条带内的新编号分配全局编号, 再为其条目增加一次引用
+     */
+    private SymbolTableEntry retain(Stripe stripe, int local) {
+        var id = stripe.globalId(local);
+        if (id == IdentifierInterner.NONE) {
+            id = nextId.getAndIncrement();
+            names.set(id, stripe.interner.name(local));
+            stripe.setGlobalId(local, id);
+        }
+
+        var entry = entries.get(id);
+        if (entry == null) {
+            entry = new SymbolTableEntry(id, names.get(id));
+            entries.set(id, entry);
+        }
+        entry.retain();
+        return entry;
+    }
+
+    private Stripe stripeOf(int hash) {
+        // 条带内的驻留表以散列值的低位定位, 这里取混合后的高位, 避免各条带内的分布变差
+        return stripes[(hash * 0x9E3779B9) >>> (Integer.SIZE - STRIPE_BITS)];
+    }
+
+    /**
+     * 一个条带: 驻留表中的编号只在条带内连续, 另行记录其全局编号
+     */
+    private static final class Stripe {
+        /**
+         * @return 条带内编号对应的全局编号, 尚未分配时为 {@link IdentifierInterner#NONE}
+         */
+        int globalId(int local) {
+            return local >= 0 && local < count ? globalIds[local] : IdentifierInterner.NONE;
+        }
+
+        /**
+         * 为驻留表新分配的条带内编号 (总是下一个) 记录其全局编号
+         */
+        void setGlobalId(int local, int id) {
+            if (local == globalIds.length) {
+                globalIds = Arrays.copyOf(globalIds, globalIds.length * 2);
+            }
+            globalIds[local] = id;
+            count = local + 1;
+        }
+
+        final IdentifierInterner interner = new IdentifierInterner();
+        int[] globalIds = new int[32];
+        int count = 0;
+    }
+
+    /**
+     * 以编号为下标的数组, 按页分配; 页在第一次写入时以 CAS 发布, 元素的读写都是 volatile 的
+     */
+    private static final class PagedArray<T> {
+        T get(int index) {
+            final var page = pages.get(index >>> PAGE_BITS);
+            return page == null ? null : page.get(index & PAGE_MASK);
+        }
+
+        void set(int index, T value) {
+            var page = pages.get(index >>> PAGE_BITS);
+            if (page == null) {
+                pages.compareAndSet(index >>> PAGE_BITS, null, new AtomicReferenceArray<>(1 << PAGE_BITS));
+                page = pages.get(index >>> PAGE_BITS);
+            }
+            page.set(index & PAGE_MASK, value);
+        }
+
+        private static final int PAGE_BITS = 16;
+        private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+        private final AtomicReferenceArray<AtomicReferenceArray<T>> pages =
+            new AtomicReferenceArray<>(1 << (Integer.SIZE - 1 - PAGE_BITS));
+    }
+
+    private static final int STRIPE_BITS = 6;
+
+    private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final PagedArray<String> names = new PagedArray<>();
+    private final PagedArray<SymbolTableEntry> entries = new PagedArray<>();
+}
@@ -0,0 +1,59 @@
+package cn.edu.hitsz.compiler.symtab;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * 符号表的存储: 为符号分配编号, 并按编号存放其条目与引用数
+ * <br>
+ * {@link SymbolTable} 的所有方法都经由它访问符号, 不同的符号表只是选用不同的存储, 见 {@link ArraySymbolStore} 与
+ * {@link StripedSymbolStore}.
+ */
+interface SymbolStore {
+    /**
+     * @return 该文本的编号, 从未加入过时为 {@link IdentifierInterner#NONE}
+     */
+    int lookup(String text);
+
+    /**
+     * @return 源文件中一段 ASCII 文本的编号, 从未加入过时为 {@link IdentifierInterner#NONE}
+     */
+    int lookup(ByteBuffer source, int offset, int length);
+
+    /**
+     * @return 编号为 id 的条目, 不存在时为 null
+     */
+    SymbolTableEntry get(int id);
+
+    /**
+     * 加入符号或为已有的符号增加一次引用
+     *
+     * @return 该符号的条目
+     */
+    SymbolTableEntry add(String text);
+
+    /**
+     * 以源文件中的一段 ASCII 文本加入符号或为已有的符号增加一次引用
+     *
+     * @return 该符号的条目
+     */
+    SymbolTableEntry add(ByteBuffer source, int offset, int length);
+
+    /**
+     * 释放符号的一次引用, 引用数降为 0 时删除其条目
+     *
+     * @return 条目是否因此被删除
+     * @throws RuntimeException 该符号不存在
+     */
+    boolean release(int id);
+
+    /**
+     * @return 编号对应的文本, 其条目被删除后仍然有效
+     */
+    String nameOf(int id);
+
+    /**
+     * @return 所有现存的条目, 顺序不定
+     */
+    List<SymbolTableEntry> entries();
+}
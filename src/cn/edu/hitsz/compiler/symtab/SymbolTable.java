@@ -3,10 +3,10 @@ package cn.edu.hitsz.compiler.symtab;
 import cn.edu.hitsz.compiler.NotImplementedException;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 /**
  * 符号表
@@ -14,10 +14,27 @@ import java.util.Map;
  * 由于源语言比较简易, 加之 Java 中具有非常好用的通用数据结构类型, 本项目其实并不一定需要一个集中的 "符号表" 来存储源语言中的
  * <b>所有符号的所有信息</b>. 但为了切合理论课程教学, 提高实验实践技能的通用性, 我们按照一般编译器项目中符号表的设计设计了该符号表.
  * 其在代码中的作用可能并不明显, 但我们希望同学们可以借此体验符号表的设计思想.
+ * <br>
+ * 每个符号在加入时由 {@link IdentifierInterner} 分配一个编号, 条目按编号存放在数组中. 词法分析之后的各阶段都可以以编号
+ * ({@link SymbolTableEntry#getId()}) 查询, 不必再对文本求散列. 以文本查询的各方法仍然可用.
+ * <br>
+ * 符号的编号, 条目与引用数都由 {@link SymbolStore} 保存, 本类的各方法都经由它访问符号; 子类只需选用不同的存储,
+ * 见 {@link ConcurrentSymbolTable}.
  */
 public class SymbolTable {
+    public SymbolTable() {
+        this(new ArraySymbolStore());
+    }
+
+    SymbolTable(SymbolStore store) {
+        this.store = store;
+    }
+
+    /**
+     * 每个符号表各自持有其存储, 同一进程中先后或同时进行的各次编译之间互不影响
+     */
+    private final SymbolStore store;
 
-    private static final Map<String, SymbolTableEntry> ENTRIES = new HashMap<>();
     /**
      * 获取符号表中已有的条目
      *
@@ -26,30 +43,77 @@ public class SymbolTable {
      * @throws RuntimeException 该符号在表中不存在
      */
     public SymbolTableEntry get(String text) {
-        return ENTRIES.get(text);
+        return get(store.lookup(text));
 //        throw new NotImplementedException();
     }
 
     /**
-     * 在符号表中新增条目
+     * @param id 符号的编号
+     * @return 该符号在符号表中的条目, 不存在时为 null
+     */
+    public SymbolTableEntry get(int id) {
+        return store.get(id);
+    }
+
+    /**
+     * 在符号表中新增条目, 或为已有的条目增加一次引用
+     * <br>
+     * 词法分析每识别出一次标识符就调用一次该方法, 因此条目的引用数即为该标识符在源程序中出现的次数
      *
      * @param text 待加入符号表中的新符号的文本表示
-     * @return 该符号在符号表中对应的新条目
-     * @throws RuntimeException 该符号已在表中存在
+     * @return 该符号在符号表中对应的条目
      */
     public SymbolTableEntry add(String text) {
-        SymbolTableEntry entry;
-        if(!ENTRIES.containsKey(text)){
-            entry = new SymbolTableEntry(text);
-            ENTRIES.put(text, entry);
-        }
-        else{
-            entry = ENTRIES.get(text);
-        }
-        return entry;
+        return store.add(text);
 //          throw new NotImplementedException();
     }
 
+    /**
+     * 以源文件中的一段 ASCII 文本加入符号, 与 {@link #add(String)} 相同, 但只在第一次遇到该符号时才构造字符串
+     *
+     * @return 该符号在符号表中对应的条目
+     */
+    public SymbolTableEntry add(ByteBuffer source, int offset, int length) {
+        return store.add(source, offset, length);
+    }
+
+    /**
+     * 查找源文件中的一段 ASCII 文本的编号, 不增加引用
+     *
+     * @return 该符号的编号, 从未加入过时为 {@link IdentifierInterner#NONE}
+     */
+    public int lookup(ByteBuffer source, int offset, int length) {
+        return store.lookup(source, offset, length);
+    }
+
+    /**
+     * 释放符号的一次引用, 引用数降为 0 时其条目将从表中删除
+     * <br>
+     * 用于增量词法分析: 被编辑掉的标识符释放引用, 从源程序中完全消失的标识符便不再留在表中
+     *
+     * @param text 符号的文本表示
+     * @return 条目是否因此被删除
+     * @throws RuntimeException 该符号在表中不存在
+     */
+    public boolean release(String text) {
+        final var id = store.lookup(text);
+        if (get(id) == null) {
+            throw new RuntimeException("Release unknown symbol: " + text);
+        }
+        return release(id);
+    }
+
+    /**
+     * 以编号释放符号的一次引用, 见 {@link #release(String)}
+     *
+     * @param id 符号的编号
+     * @return 条目是否因此被删除
+     * @throws RuntimeException 该符号在表中不存在
+     */
+    public boolean release(int id) {
+        return store.release(id);
+    }
+
     /**
      * 判断符号表中有无条目
      *
@@ -57,17 +121,33 @@ public class SymbolTable {
      * @return 该符号的条目是否位于符号表中
      */
     public boolean has(String text) {
-        return ENTRIES.containsKey(text);
+        return get(text) != null;
 //        throw new NotImplementedException();
     }
 
+    /**
+     * @param id 符号的编号
+     * @return 该符号的条目是否位于符号表中
+     */
+    public boolean has(int id) {
+        return get(id) != null;
+    }
+
+    /**
+     * @param id 符号的编号
+     * @return 该编号对应的文本, 其条目被删除后仍然有效
+     */
+    public String nameOf(int id) {
+        return store.nameOf(id);
+    }
+
     /**
      * 获得符号表的所有条目以供 {@code dumpTable} 使用
      *
      * @return 符号表的所有条目
      */
-    private Map<String, SymbolTableEntry> getAllEntries() {
-        return ENTRIES;
+    private List<SymbolTableEntry> getAllEntries() {
+        return store.entries();
 //        throw new NotImplementedException();
     }
 
@@ -77,7 +157,7 @@ public class SymbolTable {
      * @param path 输出文件路径
      */
     public void dumpTable(String path) {
-        final var entriesInOrder = new ArrayList<>(getAllEntries().values());
+        final var entriesInOrder = new ArrayList<>(getAllEntries());
         entriesInOrder.sort(Comparator.comparing(SymbolTableEntry::getText));
 
         final var lines = new ArrayList<String>();
@@ -89,4 +169,3 @@ public class SymbolTable {
         FileUtils.writeLines(path, lines);
     }
 }
-
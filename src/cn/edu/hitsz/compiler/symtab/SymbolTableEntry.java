@@ -8,10 +8,26 @@ public class SymbolTableEntry {
      * @param text 符号的文本表示. 对于标识符符号, 该参数应该为标识符文本.
      */
     public SymbolTableEntry(String text) {
+        this(IdentifierInterner.NONE, text);
+    }
+
+    /**
+     * @param id   符号在 {@link IdentifierInterner} 中的编号
+     * @param text 符号的文本表示
+     */
+    public SymbolTableEntry(int id, String text) {
+        this.id = id;
         this.text = text;
         this.type = null;
     }
 
+    /**
+     * @return 符号的编号, 不经由符号表构造的条目为 {@link IdentifierInterner#NONE}
+     */
+    public int getId() {
+        return id;
+    }
+
     /**
      * @return 符号的文本表示
      */
@@ -40,6 +56,23 @@ public class SymbolTableEntry {
         this.type = type;
     }
 
+    /**
+     * @return 该符号在源程序中被引用的次数
+     */
+    public int getReferenceCount() {
+        return references;
+    }
+
+    int retain() {
+        return ++references;
+    }
+
+    int release() {
+        return --references;
+    }
+
+    private final int id;
     private final String text;
     private SourceCodeType type;
+    private int references = 0;
 }
@@ -25,6 +25,16 @@ public final class FilePathConfig {
      */
     public final static String LR1_TABLE_PATH = "data/in/LR1_table.csv";
 
+    /**
+     * LR 分析表的二进制缓存, 由程序自动生成
+     */
+    public final static String LR1_TABLE_CACHE_PATH = "data/in/LR1_table.bin";
+
+    /**
+     * 语法制导翻译方案
+     */
+    public final static String TRANSLATION_SCHEME_PATH = "data/in/syntax_directed_translation_scheme.txt";
+
 
     //==================================== 输出文件 ========================================//
     /**
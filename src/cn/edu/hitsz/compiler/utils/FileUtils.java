@@ -1,10 +1,13 @@
 package cn.edu.hitsz.compiler.utils;
 
 import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.List;
 
@@ -36,6 +39,40 @@ public final class FileUtils {
         }
     }
 
+    /**
+     * 读取整个文件的原始字节
+     *
+     * @param path 文件路径
+     * @return 文件内容
+     */
+    public static byte[] readBytes(String path) {
+        try {
+            return Files.readAllBytes(Paths.get(path));
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+    }
+
+    /**
+     * 以只读方式将整个文件映射到内存中. 映射区域由操作系统的页缓存管理, 不占用 Java 堆
+     *
+     * @param path 文件路径
+     * @return 覆盖整个文件的只读映射缓冲区
+     * @throws RuntimeException 文件无法打开, 或文件大于单个映射区域所能容纳的 2 GiB
+     */
+    public static MappedByteBuffer mapFile(String path) {
+        try (final var channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            final var size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new RuntimeException("File too large to map: " + path);
+            }
+
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+    }
+
     /**
      * 将内容写入指定文件
      *
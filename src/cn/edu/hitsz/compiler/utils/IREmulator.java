@@ -3,11 +3,10 @@ package cn.edu.hitsz.compiler.utils;
 import cn.edu.hitsz.compiler.ir.IRImmediate;
 import cn.edu.hitsz.compiler.ir.IRValue;
 import cn.edu.hitsz.compiler.ir.IRVariable;
+import cn.edu.hitsz.compiler.ir.IRVariableIntMap;
 import cn.edu.hitsz.compiler.ir.Instruction;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -23,7 +22,11 @@ public class IREmulator {
             switch (instruction.getKind()) {
                 case MOV -> {
                     final var from = eval(instruction.getFrom());
-                    environment.put(instruction.getResult(), from);
+                    if (from == null) {
+                        environment.remove(instruction.getResult());
+                    } else {
+                        environment.put(instruction.getResult(), from);
+                    }
                 }
 
                 case ADD -> {
@@ -57,7 +60,7 @@ public class IREmulator {
         if (value instanceof IRImmediate immediate) {
             return immediate.getValue();
         } else if (value instanceof IRVariable variable) {
-            return environment.get(variable);
+            return environment.containsKey(variable) ? environment.get(variable) : null;
         } else {
             throw new RuntimeException("Unknown IR value type");
         }
@@ -65,11 +68,14 @@ public class IREmulator {
 
     private IREmulator(List<Instruction> instructions) {
         this.instructions = instructions;
-        this.environment = new HashMap<>();
+        this.environment = new IRVariableIntMap(0);
         this.returnValue = null;
     }
 
     private final List<Instruction> instructions;
-    private final Map<IRVariable, Integer> environment;
+    /**
+     * 各变量当前的值, 以变量的编号为下标, 不必对变量求散列
+     */
+    private final IRVariableIntMap environment;
     private Integer returnValue;
 }